@@ -0,0 +1,66 @@
+package gol;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * benchmarks of loading a board from a file, in each of the formats, over
+ * board size and density
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BoardLoaderBenchmark {
+
+	/** side length of the square board */
+	@Param({ "64", "256", "1024", "4096", "8192" })
+	public int size;
+
+	/** probability of each cell being alive */
+	@Param({ "0.1", "0.25", "0.5" })
+	public double density;
+
+	private File plain;
+	private File rle;
+	private File binary;
+
+	@Setup
+	public void writeFiles() throws IOException {
+		this.plain = GameBoardBenchmark.seededFile(this.size, this.density);
+		this.rle = GameBoardBenchmark.seededFile(this.size, this.density, BoardLoader.Format.RLE);
+		this.binary = GameBoardBenchmark.seededFile(this.size, this.density, BoardLoader.Format.BINARY);
+	}
+
+	@Benchmark
+	public GameBoard boardFromFile() {
+		return Main.boardFromFile(Optional.of(this.plain), -1, -1);
+	}
+
+	@Benchmark
+	public GameBoard loadRle() throws IOException {
+		return BoardLoader.load(this.rle);
+	}
+
+	@Benchmark
+	public GameBoard loadBinary() throws IOException {
+		return BoardLoader.load(this.binary);
+	}
+
+}
@@ -0,0 +1,165 @@
+package gol;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.LongBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * benchmarks of the GameBoard hot paths, parameterized over board size and
+ * density. Every engine change should be measured against these numbers.
+ * 
+ * <p>
+ * A soup settles as it steps, and the tiles that stop changing are skipped,
+ * so a board stepped through every iteration would time an ever emptier
+ * board. The board is seeded afresh before every iteration, and updateBoard
+ * restores the seed before each run of generations it times.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class GameBoardBenchmark {
+
+	private static final long SEED = 42;
+	/** generations each updateBoard invocation steps from the seed */
+	private static final int GENERATIONS = 64;
+
+	/** side length of the square board */
+	@Param({ "64", "256", "1024", "4096", "8192" })
+	public int size;
+
+	/** probability of each cell being alive at the start */
+	@Param({ "0.1", "0.25", "0.5" })
+	public double density;
+
+	/** the kernel the board steps with; -p kernel=SCALAR,VECTOR compares them */
+	@Param({ "SCALAR" })
+	public String kernel;
+
+	/** the rule the board steps by, in B/S notation */
+	@Param({ "B3/S23" })
+	public String rule;
+
+	private GameBoard board;
+	private long[] seed;
+	private int row;
+
+	/**
+	 * helper method to make a square board whose cells are alive with the
+	 * given probability, the same board for every run
+	 */
+	static GameBoard seededBoard(int size, double density) {
+		return new GameBoard(size, size, Topology.DEAD, density, SEED);
+	}
+
+	/**
+	 * helper method to write a seeded board to a temporary file laid out like
+	 * the seeds in src/board, with X and Y on lines of their own
+	 */
+	static File seededFile(int size, double density) throws IOException {
+		File file = File.createTempFile("board-" + size + "-", ".txt");
+		file.deleteOnExit();
+		GameBoard board = seededBoard(size, density);
+		try (BufferedWriter out = new BufferedWriter(new FileWriter(file))) {
+			out.write(size + "\n" + size + "\n");
+			for (int i = 0; i < size; ++i) {
+				for (int j = 0; j < size; ++j) {
+					out.write(board.isAlive(j, i) ? '1' : '0');
+					out.write(j == size - 1 ? '\n' : ' ');
+				}
+			}
+		}
+		return file;
+	}
+
+	/**
+	 * helper method to write a seeded board to a temporary file in the given
+	 * format
+	 */
+	static File seededFile(int size, double density, BoardLoader.Format format) throws IOException {
+		File file = File.createTempFile("board-" + size + "-", "." + format.name().toLowerCase());
+		file.deleteOnExit();
+		try (OutputStream out = new FileOutputStream(file)) {
+			BoardLoader.write(seededBoard(size, density), out, format);
+		}
+		return file;
+	}
+
+	@Setup(Level.Iteration)
+	public void seedBoard() {
+		this.board = seededBoard(this.size, this.density);
+		this.board.setKernel(Kernel.valueOf(this.kernel));
+		this.board.setRule(Rule.parse(this.rule));
+		this.seed = new long[this.board.numRows() * this.board.wordsPerRow()];
+		this.board.getWords(this.seed);
+		this.row = 0;
+	}
+
+	/**
+	 * steps GENERATIONS generations from the seed, reported per generation;
+	 * restoring the seed copies the cells once, a small fraction of a step
+	 */
+	@Benchmark
+	@OperationsPerInvocation(GENERATIONS)
+	public GameBoard updateBoard() {
+		this.board.putWords(0, LongBuffer.wrap(this.seed));
+		for (int i = 0; i < GENERATIONS; ++i) {
+			this.board.updateBoard();
+		}
+		return this.board;
+	}
+
+	/**
+	 * counts the neighbours of every cell of one row
+	 */
+	@Benchmark
+	public long countAliveAdjacent() {
+		long count = 0;
+		for (int j = 0; j < this.board.numColumns(); ++j) {
+			count += this.board.countAliveAdjacent(this.board.getCell(j, this.row));
+		}
+		this.row = (this.row + 1) % this.board.numRows();
+		return count;
+	}
+
+	/**
+	 * look caches its view until the board changes, so a cell is flipped
+	 * first to measure a fresh render
+	 */
+	@Benchmark
+	public String look() {
+		if (this.board.isAlive(0, 0)) {
+			this.board.kill(0, 0);
+		} else {
+			this.board.produce(0, 0);
+		}
+		return this.board.look();
+	}
+
+	@Benchmark
+	public GameBoard construct() {
+		return new GameBoard(this.size, this.size, Topology.DEAD, this.density, SEED);
+	}
+
+}
@@ -0,0 +1,311 @@
+package gol;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * a load test of the game servers: holds many client connections open at
+ * once against a server in this JVM, has every client look at the board,
+ * and reports look latency percentiles and what the connections cost the
+ * server in heap and platform threads.
+ * 
+ * <p>
+ * Every connection takes two file descriptors in this process, so 50000
+ * connections need "ulimit -n" above 100000. Clients bind to 127.0.0.2 and
+ * up, 20000 per address, to stay clear of the ephemeral port range.
+ */
+public class LoadTest {
+
+	private static final byte[] LOOK = "look\n".getBytes(StandardCharsets.US_ASCII);
+	private static final int CLIENTS_PER_ADDRESS = 20000;
+
+	private final int connections;
+	private final int clientThreads;
+	private final int rounds;
+	private final GameBoard board;
+	private final int viewLength;
+
+	/**
+	 * make a load test
+	 * 
+	 * @param connections
+	 *            number of clients connected at once
+	 * @param clientThreads
+	 *            number of threads driving the clients, each with its own
+	 *            share of them
+	 * @param rounds
+	 *            number of looks each client makes
+	 * @param size
+	 *            side length of the square board served
+	 */
+	public LoadTest(int connections, int clientThreads, int rounds, int size) {
+		this.connections = connections;
+		this.clientThreads = clientThreads;
+		this.rounds = rounds;
+		this.board = GameBoardBenchmark.seededBoard(size, 0.25);
+		this.viewLength = this.board.look().length();
+	}
+
+	/**
+	 * print the header matching the lines printed by run
+	 */
+	public static void printHeader() {
+		System.out.println(String.format("%-8s %8s %10s %10s %10s %10s %10s %8s", "mode", "conns", "connect ms",
+				"p50 us", "p99 us", "max us", "heap MB", "threads"));
+	}
+
+	/**
+	 * run the load test against a server of the given mode and print one
+	 * result line
+	 * 
+	 * @param mode
+	 *            how the server handles its connections
+	 * @throws Exception
+	 *             if the server or a client fails
+	 */
+	public void run(GameServer.Mode mode) throws Exception {
+		long heapBefore = usedHeap();
+		int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+		final int port;
+		Closeable server;
+		if (mode == GameServer.Mode.NIO) {
+			NioGameServer nio = new NioGameServer(0, this.board, Runtime.getRuntime().availableProcessors());
+			port = nio.port();
+			server = nio;
+			serveInBackground(nio);
+		} else {
+			GameServer threads = new GameServer(0, this.board, mode, this.connections);
+			port = threads.port();
+			server = threads;
+			serveInBackground(threads);
+		}
+
+		ExecutorService clients = Executors.newFixedThreadPool(this.clientThreads);
+		final Socket[] sockets = new Socket[this.connections];
+		try {
+			long start = System.nanoTime();
+			forEachShare(clients, new Share() {
+				public void run(int from, int to) throws IOException {
+					for (int i = from; i < to; ++i) {
+						sockets[i] = connect(i, port);
+						readLine(sockets[i].getInputStream());
+					}
+				}
+			});
+			long connectMillis = (System.nanoTime() - start) / 1000000;
+			long heap = usedHeap() - heapBefore;
+			int threads = ManagementFactory.getThreadMXBean().getThreadCount() - threadsBefore
+					- this.clientThreads;
+
+			final long[] latencies = new long[this.connections * this.rounds];
+			forEachShare(clients, new Share() {
+				public void run(int from, int to) throws IOException {
+					byte[] view = new byte[viewLength];
+					for (int round = 0; round < rounds; ++round) {
+						for (int i = from; i < to; ++i) {
+							long sent = System.nanoTime();
+							OutputStream out = sockets[i].getOutputStream();
+							out.write(LOOK);
+							out.flush();
+							readFully(sockets[i].getInputStream(), view);
+							latencies[round * connections + i] = System.nanoTime() - sent;
+						}
+					}
+				}
+			});
+			Arrays.sort(latencies);
+
+			System.out.println(String.format("%-8s %8d %10d %10.1f %10.1f %10.1f %10.1f %8d",
+					mode.name().toLowerCase(), this.connections, connectMillis,
+					latencies[latencies.length / 2] / 1e3, latencies[(int) (latencies.length * 0.99)] / 1e3,
+					latencies[latencies.length - 1] / 1e3, heap / 1e6, threads));
+		} finally {
+			for (Socket socket : sockets) {
+				if (socket != null) {
+					socket.close();
+				}
+			}
+			clients.shutdown();
+			server.close();
+		}
+	}
+
+	/**
+	 * work on one share of the clients, from index from to index to,
+	 * exclusive
+	 */
+	private interface Share {
+		void run(int from, int to) throws IOException;
+	}
+
+	/**
+	 * helper method to run a share of the clients on each client thread and
+	 * wait for all of them
+	 */
+	private void forEachShare(ExecutorService clients, final Share share) throws Exception {
+		List<Future<?>> done = new ArrayList<>();
+		for (int t = 0; t < this.clientThreads; ++t) {
+			final int from = (int) ((long) this.connections * t / this.clientThreads);
+			final int to = (int) ((long) this.connections * (t + 1) / this.clientThreads);
+			done.add(clients.submit(new Callable<Void>() {
+				public Void call() throws IOException {
+					share.run(from, to);
+					return null;
+				}
+			}));
+		}
+		for (Future<?> future : done) {
+			future.get();
+		}
+	}
+
+	/**
+	 * helper method to connect client i to the server on the local host
+	 */
+	private static Socket connect(int i, int port) throws IOException {
+		Socket socket = new Socket();
+		socket.bind(new InetSocketAddress("127.0.0." + (2 + i / CLIENTS_PER_ADDRESS), 0));
+		socket.connect(new InetSocketAddress("127.0.0.1", port));
+		return socket;
+	}
+
+	/**
+	 * helper method to read up to and including the next line end
+	 */
+	private static void readLine(InputStream in) throws IOException {
+		for (int c = in.read(); c != '\n'; c = in.read()) {
+			if (c < 0) {
+				throw new IOException("server closed the connection");
+			}
+		}
+	}
+
+	/**
+	 * helper method to fill buffer from in
+	 */
+	private static void readFully(InputStream in, byte[] buffer) throws IOException {
+		for (int read = 0; read < buffer.length;) {
+			int count = in.read(buffer, read, buffer.length - read);
+			if (count < 0) {
+				throw new IOException("server closed the connection");
+			}
+			read += count;
+		}
+	}
+
+	/**
+	 * helper method to measure the heap in use, after a collection
+	 */
+	private static long usedHeap() {
+		for (int i = 0; i < 3; ++i) {
+			System.gc();
+		}
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * helper method to run a server's serve loop on a daemon thread
+	 */
+	private static void serveInBackground(final Object server) {
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					if (server instanceof NioGameServer) {
+						((NioGameServer) server).serve();
+					} else {
+						((GameServer) server).serve();
+					}
+				} catch (IOException ioe) {
+					ioe.printStackTrace();
+				}
+			}
+		});
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * run the load test
+	 * 
+	 * <pre>
+	 *      gol.LoadTest [--modes MODE,...] [--connections N] [--client-threads N] [--rounds N] [--size SIZE]
+	 * </pre>
+	 * 
+	 * MODE is threads, virtual or nio; by default each of them is tested in
+	 * turn with 50000 connections driven by 64 client threads, each client
+	 * looking 3 times at a 32 by 32 board.
+	 * 
+	 * @param args
+	 *            arguments as described
+	 */
+	public static void main(String[] args) throws Exception {
+		List<GameServer.Mode> modes = Arrays.asList(GameServer.Mode.THREADS, GameServer.Mode.VIRTUAL,
+				GameServer.Mode.NIO);
+		int connections = 50000;
+		int clientThreads = 64;
+		int rounds = 3;
+		int size = 32;
+
+		Queue<String> arguments = new LinkedList<>(Arrays.asList(args));
+		try {
+			while (!arguments.isEmpty()) {
+				String flag = arguments.remove();
+				try {
+					if (flag.equals("--modes")) {
+						modes = new ArrayList<>();
+						for (String name : arguments.remove().split(",")) {
+							try {
+								modes.add(GameServer.Mode.valueOf(name.toUpperCase()));
+							} catch (IllegalArgumentException iae) {
+								throw new IllegalArgumentException("unknown mode: \"" + name + "\"");
+							}
+						}
+					} else if (flag.equals("--connections")) {
+						connections = Integer.parseInt(arguments.remove());
+					} else if (flag.equals("--client-threads")) {
+						clientThreads = Integer.parseInt(arguments.remove());
+					} else if (flag.equals("--rounds")) {
+						rounds = Integer.parseInt(arguments.remove());
+					} else if (flag.equals("--size")) {
+						size = Integer.parseInt(arguments.remove());
+					} else {
+						throw new IllegalArgumentException("unknown option: \"" + flag + "\"");
+					}
+				} catch (NoSuchElementException nsee) {
+					throw new IllegalArgumentException("missing argument for " + flag);
+				} catch (NumberFormatException nfe) {
+					throw new IllegalArgumentException("unable to parse number for " + flag);
+				}
+			}
+		} catch (IllegalArgumentException iae) {
+			System.err.println(iae.getMessage());
+			System.err.println("usage: LoadTest [--modes MODE,...] [--connections N] [--client-threads N] "
+					+ "[--rounds N] [--size SIZE]");
+			return;
+		}
+
+		LoadTest test = new LoadTest(connections, clientThreads, rounds, size);
+		printHeader();
+		for (GameServer.Mode mode : modes) {
+			test.run(mode);
+		}
+	}
+
+}
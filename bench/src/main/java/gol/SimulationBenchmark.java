@@ -0,0 +1,76 @@
+package gol;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * benchmarks of a simulation serving its board, with metrics on and off, to
+ * measure what recording them costs
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SimulationBenchmark {
+
+	/** side length of the square board */
+	@Param({ "64", "256", "1024", "4096" })
+	public int size;
+
+	/** probability of each cell being alive at the start */
+	@Param({ "0.25" })
+	public double density;
+
+	/** whether the simulation records metrics */
+	@Param({ "true", "false" })
+	public boolean metered;
+
+	private Simulation simulation;
+	private int ops;
+
+	@Setup(Level.Iteration)
+	public void seedSimulation() {
+		this.simulation = new Simulation(GameBoardBenchmark.seededBoard(this.size, this.density));
+		this.simulation.metrics().setEnabled(this.metered);
+	}
+
+	@TearDown(Level.Iteration)
+	public void closeSimulation() {
+		this.simulation.close();
+	}
+
+	/**
+	 * steps, renders and publishes one generation
+	 */
+	@Benchmark
+	public long tick() {
+		this.simulation.tick();
+		return this.simulation.generation();
+	}
+
+	/**
+	 * answers one command, a look then a produce in turn
+	 */
+	@Benchmark
+	public ByteBuffer respond() {
+		String command = (this.ops++ & 1) == 0 ? "look" : "produce 1 1";
+		return GameServer.respond(this.simulation, command).get();
+	}
+
+}
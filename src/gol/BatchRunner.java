@@ -0,0 +1,421 @@
+package gol;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * runs boards headless, as fast as they step: no timer and no frame printed
+ * unless asked for. A run steps a board up to a number of generations, or
+ * until it dies out or settles into a cycle, and reports how long it took.
+ */
+public class BatchRunner {
+
+	/** longest period of a cycle a run can stop at */
+	public static final int MAX_PERIOD = 64;
+	private static final long DEFAULT_GENERATIONS = 1000;
+	/** columns of the lines written by --stats */
+	static final String STATS_HEADER = "seed,generations,population,stopped,stable_generation,period,wall_ms,"
+			+ "generations_per_second";
+
+	/**
+	 * when a run stops before its last generation
+	 */
+	public enum Until {
+
+		/** never; it runs every generation */
+		LIMIT,
+
+		/** once no cell is alive */
+		EXTINCT,
+
+		/**
+		 * once the board repeats a generation at most MAX_PERIOD back: a
+		 * still life, an oscillator, or no cells at all
+		 */
+		STABLE
+	}
+
+	/**
+	 * an immutable summary of one run
+	 */
+	public static class Result {
+
+		private final long generations;
+		private final long population;
+		private final Until stopped;
+		private final long stableGeneration;
+		private final int period;
+		private final long wallNanos;
+
+		/*
+		 * AF(generations, population, stopped, stableGeneration, period,
+		 * wallNanos) = a run that stepped generations times in wallNanos and
+		 * ended with population live cells, having stopped for reason
+		 * stopped, or LIMIT if it ran every generation. If the board settled,
+		 * its generation stableGeneration is the first that repeats, every
+		 * period generations; otherwise stableGeneration is -1 and period 0.
+		 */
+
+		Result(long generations, long population, Until stopped, long stableGeneration, int period,
+				long wallNanos) {
+			this.generations = generations;
+			this.population = population;
+			this.stopped = stopped;
+			this.stableGeneration = stableGeneration;
+			this.period = period;
+			this.wallNanos = wallNanos;
+		}
+
+		/**
+		 * number of generations stepped
+		 * 
+		 * @return steps taken by the run
+		 */
+		public long generations() {
+			return this.generations;
+		}
+
+		/**
+		 * live cells at the end of the run
+		 * 
+		 * @return population of the last generation
+		 */
+		public long population() {
+			return this.population;
+		}
+
+		/**
+		 * why the run stopped
+		 * 
+		 * @return LIMIT if it ran every generation, EXTINCT if every cell
+		 *         died, STABLE if the board settled into a cycle
+		 */
+		public Until stopped() {
+			return this.stopped;
+		}
+
+		/**
+		 * first generation of the cycle the board settled into
+		 * 
+		 * @return generation, or -1 if it was not seen to settle
+		 */
+		public long stableGeneration() {
+			return this.stableGeneration;
+		}
+
+		/**
+		 * period of the cycle the board settled into
+		 * 
+		 * @return 1 for a still life or an empty board, the period of an
+		 *         oscillator, or 0 if it was not seen to settle
+		 */
+		public int period() {
+			return this.period;
+		}
+
+		/**
+		 * time the run took
+		 * 
+		 * @return nanoseconds from the first step to the last, frames
+		 *         included
+		 */
+		public long wallNanos() {
+			return this.wallNanos;
+		}
+
+		/**
+		 * speed of the run
+		 * 
+		 * @return generations per second of wall time
+		 */
+		public double generationsPerSecond() {
+			return this.wallNanos == 0 ? 0 : this.generations * 1e9 / this.wallNanos;
+		}
+	}
+
+	/**
+	 * step a board as fast as it goes
+	 * 
+	 * @param board
+	 *            board to step
+	 * @param generations
+	 *            most generations to step, requires generations >= 0
+	 * @param until
+	 *            when to stop early; EXTINCT counts the live cells and STABLE
+	 *            hashes the cells every generation
+	 * @param every
+	 *            write every this many generations to frames, counted from
+	 *            the start of the run, which is written first; requires
+	 *            every > 0 if frames is not null
+	 * @param frames
+	 *            stream to write frames to, each the line "generation N"
+	 *            followed by the view of look(), or null for none
+	 * @return summary of the run
+	 * @throws IOException
+	 *             if writing a frame fails
+	 */
+	public static Result run(GameBoard board, long generations, Until until, int every, OutputStream frames)
+			throws IOException {
+		// hashes[g % MAX_PERIOD] is the hash of step g of the run, for the
+		// last MAX_PERIOD steps
+		long[] hashes = new long[MAX_PERIOD];
+		long first = board.generation();
+		long start = System.nanoTime();
+		if (until == Until.STABLE) {
+			hashes[0] = board.cellsHash();
+		}
+		if (frames != null) {
+			writeFrame(board, frames);
+		}
+
+		Until stopped = Until.LIMIT;
+		long stableGeneration = -1;
+		int period = 0;
+		long step = 0;
+		while (step < generations && stopped == Until.LIMIT) {
+			board.updateBoard();
+			step += 1;
+			if (frames != null && step % every == 0) {
+				writeFrame(board, frames);
+			}
+			if (until == Until.EXTINCT && board.population() == 0) {
+				stopped = Until.EXTINCT;
+				stableGeneration = board.generation();
+				period = 1;
+			} else if (until == Until.STABLE) {
+				long hash = board.cellsHash();
+				// the shortest period wins, so the cycle is found at its first
+				// repeat
+				for (int back = 1; back <= Math.min(step, MAX_PERIOD); ++back) {
+					if (hashes[(int) ((step - back) % MAX_PERIOD)] == hash) {
+						period = back;
+						stableGeneration = first + step - back;
+						stopped = board.population() == 0 ? Until.EXTINCT : Until.STABLE;
+						break;
+					}
+				}
+				hashes[(int) (step % MAX_PERIOD)] = hash;
+			}
+		}
+		if (frames != null) {
+			frames.flush();
+		}
+		return new Result(step, board.population(), stopped, stableGeneration, period, System.nanoTime() - start);
+	}
+
+	/**
+	 * helper method to write one frame of a board
+	 */
+	private static void writeFrame(GameBoard board, OutputStream frames) throws IOException {
+		frames.write(("generation " + board.generation() + "\n").getBytes(StandardCharsets.US_ASCII));
+		board.writeTo(frames);
+	}
+
+	/**
+	 * one line of --stats output for a run, in the columns of STATS_HEADER
+	 * 
+	 * @param seed
+	 *            name of the seed the run started from
+	 * @param result
+	 *            summary of the run
+	 * @return line of comma separated values, without a line end
+	 */
+	static String statsLine(String seed, Result result) {
+		return String.format(Locale.ROOT, "%s,%d,%d,%s,%d,%d,%.3f,%.1f", seed.replace(',', '_'),
+				result.generations(), result.population(), result.stopped().name().toLowerCase(Locale.ROOT),
+				result.stableGeneration(), result.period(), result.wallNanos() / 1e6, result.generationsPerSecond());
+	}
+
+	/**
+	 * run seeds headless and report how fast they ran
+	 * 
+	 * <pre>
+	 *      gol.BatchRunner [--file FILE]... [--size SIZE_X,SIZE_Y] [--generations N]
+	 *                      [--until extinct|stable] [--every K] [--frames FILE] [--stats FILE]
+	 *                      [--rule RULE] [--threads N] [--random-seed SEED] [--density DENSITY]
+	 * </pre>
+	 * 
+	 * Each FILE is a seed loaded as by Main.boardFromFile; --file may be
+	 * given any number of times, and the seeds run one after another. Without
+	 * one, a random board of SIZE_X by SIZE_Y runs, by default 20 by 20,
+	 * drawn from SEED, by default a random one, with cells alive with
+	 * probability DENSITY, by default 0.25. Each
+	 * run steps N generations, by default 1000, or stops early once the board
+	 * dies out or, with stable, repeats a generation up to 64 back.
+	 * 
+	 * <p>
+	 * With --frames, every K-th generation, by default every one, is written
+	 * to FILE as "generation N" and the view of look(). With --stats, a line
+	 * of comma separated values per run is written to FILE, after a header
+	 * line. A line per run and the totals are printed either way: wall time
+	 * and generations/sec. RULE overrides the rule of every seed, and N
+	 * threads step each board, by default 1.
+	 * 
+	 * @param args
+	 *            arguments as described
+	 */
+	public static void main(String[] args) {
+		List<File> files = new ArrayList<>();
+		int sizeX = -1;
+		int sizeY = -1;
+		long generations = DEFAULT_GENERATIONS;
+		Until until = Until.LIMIT;
+		int every = 0;
+		Optional<File> framesFile = Optional.empty();
+		Optional<File> statsFile = Optional.empty();
+		Optional<Rule> rule = Optional.empty();
+		int threads = 1;
+		long randomSeed = ThreadLocalRandom.current().nextLong();
+		double density = GameBoard.DEFAULT_DENSITY;
+
+		Queue<String> arguments = new LinkedList<>(Arrays.asList(args));
+		try {
+			while (!arguments.isEmpty()) {
+				String flag = arguments.remove();
+				try {
+					if (flag.equals("--file")) {
+						File file = new File(arguments.remove());
+						if (!file.isFile()) {
+							throw new IllegalArgumentException("file not found: \"" + file + "\"");
+						}
+						files.add(file);
+					} else if (flag.equals("--size")) {
+						String[] sizes = arguments.remove().split(",");
+						sizeX = Integer.parseInt(sizes[0]);
+						sizeY = Integer.parseInt(sizes[1]);
+					} else if (flag.equals("--generations")) {
+						generations = Long.parseLong(arguments.remove());
+						if (generations < 0) {
+							throw new IllegalArgumentException("--generations must not be negative");
+						}
+					} else if (flag.equals("--until")) {
+						String name = arguments.remove();
+						if (name.equals("extinct")) {
+							until = Until.EXTINCT;
+						} else if (name.equals("stable")) {
+							until = Until.STABLE;
+						} else {
+							throw new IllegalArgumentException("unknown stop condition: \"" + name + "\"");
+						}
+					} else if (flag.equals("--every")) {
+						every = Integer.parseInt(arguments.remove());
+						if (every < 1) {
+							throw new IllegalArgumentException("--every must be positive");
+						}
+					} else if (flag.equals("--frames")) {
+						framesFile = Optional.of(new File(arguments.remove()));
+					} else if (flag.equals("--stats")) {
+						statsFile = Optional.of(new File(arguments.remove()));
+					} else if (flag.equals("--rule")) {
+						rule = Optional.of(Rule.parse(arguments.remove()));
+					} else if (flag.equals("--threads")) {
+						threads = Integer.parseInt(arguments.remove());
+						if (threads < 1) {
+							throw new IllegalArgumentException("--threads must be positive");
+						}
+					} else if (flag.equals("--random-seed")) {
+						randomSeed = Long.parseLong(arguments.remove());
+					} else if (flag.equals("--density")) {
+						density = Double.parseDouble(arguments.remove());
+						if (!(density >= 0 && density <= 1)) {
+							throw new IllegalArgumentException("--density must be between 0 and 1");
+						}
+					} else {
+						throw new IllegalArgumentException("unknown option: \"" + flag + "\"");
+					}
+				} catch (NoSuchElementException nsee) {
+					throw new IllegalArgumentException("missing argument for " + flag);
+				} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+					throw new IllegalArgumentException("unable to parse number for " + flag);
+				}
+			}
+			if (every > 0 && !framesFile.isPresent()) {
+				throw new IllegalArgumentException("--every needs --frames");
+			}
+		} catch (IllegalArgumentException iae) {
+			System.err.println(iae.getMessage());
+			System.err.println("usage: BatchRunner [--file FILE]... [--size SIZE_X,SIZE_Y] [--generations N] "
+					+ "[--until extinct|stable] [--every K] [--frames FILE] [--stats FILE] [--rule RULE] "
+					+ "[--threads N] [--random-seed SEED] [--density DENSITY]");
+			return;
+		}
+
+		List<Optional<File>> seeds = new ArrayList<>();
+		for (File file : files) {
+			seeds.add(Optional.of(file));
+		}
+		if (seeds.isEmpty()) {
+			seeds.add(Optional.<File> empty());
+		}
+		try (OutputStream frames = framesFile.isPresent()
+				? new BufferedOutputStream(new FileOutputStream(framesFile.get())) : null;
+				PrintStream stats = statsFile.isPresent()
+						? new PrintStream(new FileOutputStream(statsFile.get()), false, "US-ASCII") : null) {
+			if (stats != null) {
+				stats.println(STATS_HEADER);
+			}
+			long totalGenerations = 0;
+			long totalNanos = 0;
+			for (Optional<File> seed : seeds) {
+				String name = seed.isPresent() ? seed.get().getPath() : "random:" + randomSeed;
+				GameBoard board = Main.boardFromFile(seed, seed.isPresent() ? -1 : sizeX, seed.isPresent() ? -1 : sizeY,
+						randomSeed, density);
+				if (rule.isPresent()) {
+					board.setRule(rule.get());
+				}
+				board.setParallelism(threads);
+				if (frames != null) {
+					frames.write(("seed " + name + "\n").getBytes(StandardCharsets.US_ASCII));
+				}
+				Result result = run(board, generations, until, Math.max(every, 1), frames);
+				board.setParallelism(1);
+
+				System.out.println(String.format(Locale.ROOT, "%s: %d generations in %.1f ms, %.1f gen/sec, "
+						+ "population %d, %s", name, result.generations(), result.wallNanos() / 1e6,
+						result.generationsPerSecond(), result.population(), describe(result)));
+				if (stats != null) {
+					stats.println(statsLine(name, result));
+				}
+				totalGenerations += result.generations();
+				totalNanos += result.wallNanos();
+			}
+			if (seeds.size() > 1) {
+				System.out.println(String.format(Locale.ROOT, "%d seeds: %d generations in %.1f ms, %.1f gen/sec",
+						seeds.size(), totalGenerations, totalNanos / 1e6,
+						totalNanos == 0 ? 0 : totalGenerations * 1e9 / totalNanos));
+			}
+		} catch (IOException ioe) {
+			throw new UncheckedIOException(ioe);
+		}
+	}
+
+	/**
+	 * helper method to say how a run ended
+	 */
+	private static String describe(Result result) {
+		switch (result.stopped()) {
+		case EXTINCT:
+			return "extinct from generation " + result.stableGeneration();
+		case STABLE:
+			return "stable from generation " + result.stableGeneration() + " with period " + result.period();
+		default:
+			return "ran to the limit";
+		}
+	}
+
+}
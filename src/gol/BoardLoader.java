@@ -0,0 +1,641 @@
+package gol;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * reads and writes GameBoard seeds. A seed is streamed through once, straight
+ * into the board's bit-packed rows, so loading takes time linear in the size
+ * of the file and makes no objects per cell.
+ */
+public class BoardLoader {
+
+	/** size of the read buffer */
+	private static final int BUFFER_SIZE = 1 << 16;
+	/** first four bytes of a BINARY seed, "GOLB" in ASCII */
+	private static final int BINARY_MAGIC = 0x474F4C42;
+	/** version of the BINARY layout written by write */
+	private static final int BINARY_VERSION = 1;
+	/** longest line of RLE that write produces, as the RLE convention asks */
+	private static final int RLE_LINE_LENGTH = 70;
+	/** header line of an RLE seed */
+	private static final Pattern RLE_HEADER = Pattern
+			.compile("\\s*x\\s*=\\s*(\\d+)\\s*,\\s*y\\s*=\\s*(\\d+)\\s*(?:,\\s*rule\\s*=\\s*(\\S+)\\s*)?");
+
+	/**
+	 * an immutable data type representing a seed file format
+	 */
+	public enum Format {
+
+		/**
+		 * the board file format of Main and GameServer, whitespace separated:
+		 * 
+		 * <pre>
+		 *      FILE ::= X Y VALUE{X * Y}
+		 *      VALUE ::= "0" | "1"
+		 * </pre>
+		 * 
+		 * X is the number of columns and Y the number of rows; the VALUEs
+		 * list the rows top to bottom, 1 for a live cell and 0 for a dead
+		 * one. Anything after the last VALUE is ignored.
+		 */
+		PLAIN,
+
+		/**
+		 * the run length encoded format read by most Life programs: lines of
+		 * comments starting with '#', a header "x = X, y = Y" with an
+		 * optional rule in B/S notation, like ", rule = B36/S23", then runs
+		 * like "3o2b$" ended by '!'. Only the RLE format keeps the rule of a
+		 * board; the others load with Conway's.
+		 */
+		RLE,
+
+		/**
+		 * the board's own bit-packed rows: the bytes "GOLB", then as big
+		 * endian ints the layout version 1, X and Y, then for each row top
+		 * to bottom (X + 63) / 64 big endian longs, with column x at bit
+		 * (x % 64) of long (x / 64)
+		 */
+		BINARY
+	}
+
+	private BoardLoader() {
+		// only static methods
+	}
+
+	/**
+	 * load a board from a seed file in any of the formats
+	 * 
+	 * @param file
+	 *            seed to load
+	 * @return new board holding the seed, with dead edges
+	 * @throws IOException
+	 *             if the file cannot be read or is not a well formed seed
+	 */
+	public static GameBoard load(File file) throws IOException {
+		try (InputStream in = new FileInputStream(file)) {
+			return load(in);
+		}
+	}
+
+	/**
+	 * load a board from a seed in any of the formats, telling the format from
+	 * its first bytes
+	 * 
+	 * @param in
+	 *            stream holding the seed; it is read to the end of the seed
+	 *            but not closed
+	 * @return new board holding the seed, with dead edges
+	 * @throws IOException
+	 *             if in cannot be read or does not hold a well formed seed
+	 */
+	public static GameBoard load(InputStream in) throws IOException {
+		BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+		buffered.mark(4);
+		int magic = 0;
+		int length = 0;
+		for (int b; length < 4 && (b = buffered.read()) >= 0; ++length) {
+			magic = (magic << 8) | b;
+		}
+		buffered.reset();
+		if (length == 4 && magic == BINARY_MAGIC) {
+			return readBinary(buffered);
+		}
+
+		Input input = new Input(buffered);
+		int first = input.skipWhitespace();
+		if (first == '#' || first == 'x') {
+			return readRle(input);
+		}
+		return readPlain(input);
+	}
+
+	/**
+	 * load a board from a seed in the given format
+	 * 
+	 * @param in
+	 *            stream holding the seed; it is read to the end of the seed
+	 *            but not closed
+	 * @param format
+	 *            format of the seed
+	 * @return new board holding the seed, with dead edges
+	 * @throws IOException
+	 *             if in cannot be read or does not hold a well formed seed
+	 */
+	public static GameBoard load(InputStream in, Format format) throws IOException {
+		switch (format) {
+		case BINARY:
+			return readBinary(new BufferedInputStream(in, BUFFER_SIZE));
+		case RLE:
+			return readRle(new Input(in));
+		default:
+			return readPlain(new Input(in));
+		}
+	}
+
+	/**
+	 * load a pattern from the runs of an RLE seed without its header, such
+	 * as "bo$2bo$3o!" for a glider. The board is just large enough to hold
+	 * every live cell, with the first run at its north west corner.
+	 * 
+	 * @param runs
+	 *            runs of the pattern, in the RLE format
+	 * @param maxColumns
+	 *            most columns the pattern may have
+	 * @param maxRows
+	 *            most rows the pattern may have
+	 * @return new board holding the pattern, at least 1 by 1
+	 * @throws IOException
+	 *             if runs is not well formed, or the pattern is larger than
+	 *             maxColumns by maxRows
+	 */
+	public static GameBoard pattern(String runs, int maxColumns, int maxRows) throws IOException {
+		// measure the pattern first, as the reader needs the size up front
+		long columns = 1;
+		long rows = 1;
+		long x = 0;
+		long y = 0;
+		long count = 0;
+		for (int i = 0; i < runs.length() && runs.charAt(i) != '!'; ++i) {
+			char c = runs.charAt(i);
+			if (c >= '0' && c <= '9') {
+				count = Math.min(count * 10 + (c - '0'), Integer.MAX_VALUE);
+				continue;
+			}
+			long run = count == 0 ? 1 : count;
+			count = 0;
+			if (c == '$') {
+				y += run;
+				x = 0;
+			} else if (c == 'b' || c == '.') {
+				x += run;
+			} else if (Character.isLetter(c)) {
+				x += run;
+				columns = Math.max(columns, x);
+				rows = Math.max(rows, y + 1);
+			}
+		}
+		if (columns > maxColumns || rows > maxRows) {
+			throw new IOException("pattern larger than " + maxColumns + " by " + maxRows);
+		}
+		String seed = "x = " + columns + ", y = " + rows + "\n" + runs;
+		return readRle(new Input(new ByteArrayInputStream(seed.getBytes(StandardCharsets.US_ASCII))));
+	}
+
+	/**
+	 * write a board as a seed that load reads back into the same cells
+	 * 
+	 * @param board
+	 *            board to write
+	 * @param out
+	 *            stream to write the seed to; it is flushed but not closed
+	 * @param format
+	 *            format to write the seed in
+	 * @throws IOException
+	 *             if writing to out fails
+	 */
+	public static void write(GameBoard board, OutputStream out, Format format) throws IOException {
+		BufferedOutputStream buffered = new BufferedOutputStream(out, BUFFER_SIZE);
+		switch (format) {
+		case BINARY:
+			writeBinary(board, buffered);
+			break;
+		case RLE:
+			writeRle(board, buffered);
+			break;
+		default:
+			writePlain(board, buffered);
+			break;
+		}
+		buffered.flush();
+	}
+
+	/**
+	 * helper method to read a PLAIN seed, 64 cells to a word
+	 */
+	private static GameBoard readPlain(Input input) throws IOException {
+		int columns = input.readInt("X");
+		int rows = input.readInt("Y");
+		GameBoard board = newBoard(rows, columns, input);
+		int words = board.wordsPerRow();
+		for (int i = 0; i < rows; ++i) {
+			for (int w = 0; w < words; ++w) {
+				int width = Math.min(64, columns - (w << 6));
+				long bits = 0;
+				for (int b = 0; b < width; ++b) {
+					int c = input.skipWhitespace();
+					if (c == '1') {
+						bits |= 1L << b;
+					} else if (c != '0') {
+						throw input.error(c < 0 ? "expected " + ((long) rows * columns) + " values, found fewer"
+								: "expected 0 or 1, found '" + (char) c + "'");
+					}
+					input.read();
+				}
+				if (bits != 0) {
+					board.setWord(i, w, bits);
+				}
+			}
+		}
+		return board;
+	}
+
+	/**
+	 * helper method to read an RLE seed, gathering each row in its words
+	 * before it is stored
+	 */
+	private static GameBoard readRle(Input input) throws IOException {
+		String header;
+		for (header = input.readLine(); header != null; header = input.readLine()) {
+			if (!header.trim().isEmpty() && !header.trim().startsWith("#")) {
+				break;
+			}
+		}
+		if (header == null) {
+			throw input.error("missing RLE header");
+		}
+		Matcher matcher = RLE_HEADER.matcher(header);
+		if (!matcher.matches()) {
+			throw input.error("malformed RLE header \"" + header.trim() + "\"");
+		}
+		Rule rule = Rule.CONWAY;
+		if (matcher.group(3) != null) {
+			try {
+				rule = Rule.parse(matcher.group(3));
+			} catch (IllegalArgumentException iae) {
+				throw input.error("unsupported rule \"" + matcher.group(3) + "\"");
+			}
+		}
+		int columns;
+		int rows;
+		try {
+			columns = Integer.parseInt(matcher.group(1));
+			rows = Integer.parseInt(matcher.group(2));
+		} catch (NumberFormatException nfe) {
+			throw input.error("board size out of range");
+		}
+		GameBoard board = newBoard(rows, columns, input);
+		board.setRule(rule);
+
+		long[] row = new long[board.wordsPerRow()];
+		int x = 0;
+		int y = 0;
+		int count = 0;
+		for (int c = input.read(); c >= 0 && c != '!'; c = input.read()) {
+			if (c >= '0' && c <= '9') {
+				if (count > (Integer.MAX_VALUE - 9) / 10) {
+					throw input.error("run count out of range");
+				}
+				count = count * 10 + (c - '0');
+				continue;
+			}
+			if (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+				continue;
+			}
+			int run = count == 0 ? 1 : count;
+			count = 0;
+			if (c == '$') {
+				storeRow(board, y, row);
+				y = (int) Math.min((long) y + run, Integer.MAX_VALUE);
+				x = 0;
+			} else if (c == 'b' || c == '.') {
+				x = (int) Math.min((long) x + run, Integer.MAX_VALUE);
+			} else if (Character.isLetter(c)) {
+				// every state other than b is alive in a two state rule
+				if (y >= rows || (long) x + run > columns) {
+					throw input.error("live cells past the " + columns + " by " + rows + " board");
+				}
+				setRange(row, x, x + run);
+				x += run;
+			} else {
+				throw input.error("unexpected '" + (char) c + "' in RLE");
+			}
+		}
+		storeRow(board, y, row);
+		return board;
+	}
+
+	/**
+	 * helper method to store a row gathered by readRle on the board, if it
+	 * is on the board, and clear it for the next row
+	 */
+	private static void storeRow(GameBoard board, int y, long[] row) {
+		for (int w = 0; w < row.length; ++w) {
+			if (row[w] != 0) {
+				if (y < board.numRows()) {
+					board.setWord(y, w, row[w]);
+				}
+				row[w] = 0;
+			}
+		}
+	}
+
+	/**
+	 * helper method to set the bits of columns [from, to) of a row of words
+	 */
+	private static void setRange(long[] row, int from, int to) {
+		for (int w = from >>> 6; w <= (to - 1) >>> 6 && from < to; ++w) {
+			long bits = -1L;
+			if (w == from >>> 6) {
+				bits &= -1L << from;
+			}
+			if (w == (to - 1) >>> 6 && (to & 63) != 0) {
+				bits &= (1L << to) - 1;
+			}
+			row[w] |= bits;
+		}
+	}
+
+	/**
+	 * helper method to read a BINARY seed a row of words at a time
+	 */
+	private static GameBoard readBinary(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		if (data.readInt() != BINARY_MAGIC) {
+			throw new IOException("not a binary board");
+		}
+		int version = data.readInt();
+		if (version != BINARY_VERSION) {
+			throw new IOException("unsupported binary board version " + version);
+		}
+		int columns = data.readInt();
+		int rows = data.readInt();
+		GameBoard board = newBoard(rows, columns, null);
+
+		int words = board.wordsPerRow();
+		byte[] bytes = new byte[words * Long.BYTES];
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		for (int i = 0; i < rows; ++i) {
+			data.readFully(bytes);
+			for (int w = 0; w < words; ++w) {
+				long bits = buffer.getLong(w * Long.BYTES);
+				if (bits != 0) {
+					board.setWord(i, w, bits);
+				}
+			}
+		}
+		return board;
+	}
+
+	/**
+	 * helper method to make the empty board a seed is read into, checking its
+	 * size; input is null for a BINARY seed
+	 */
+	private static GameBoard newBoard(int rows, int columns, Input input) throws IOException {
+		String problem = null;
+		if (rows <= 0 || columns <= 0) {
+			problem = "board size must be positive: " + columns + " by " + rows;
+		} else if ((long) rows * ((columns + 63) >>> 6) > Integer.MAX_VALUE - 8) {
+			problem = "board too large: " + columns + " by " + rows;
+		}
+		if (problem != null) {
+			throw input == null ? new IOException(problem) : input.error(problem);
+		}
+		return new GameBoard(rows, columns, false);
+	}
+
+	/**
+	 * helper method to write a PLAIN seed, one line per row
+	 */
+	private static void writePlain(GameBoard board, OutputStream out) throws IOException {
+		int columns = board.numColumns();
+		out.write((columns + " " + board.numRows() + "\n").getBytes(StandardCharsets.US_ASCII));
+		byte[] line = new byte[2 * columns];
+		for (int i = 0; i < board.numRows(); ++i) {
+			for (int j = 0; j < columns; ++j) {
+				line[2 * j] = board.isAlive(j, i) ? (byte) '1' : (byte) '0';
+				line[2 * j + 1] = j == columns - 1 ? (byte) '\n' : (byte) ' ';
+			}
+			out.write(line);
+		}
+	}
+
+	/**
+	 * helper method to write an RLE seed. Dead cells at the end of a row are
+	 * left out, and runs of empty rows share one '$'.
+	 */
+	private static void writeRle(GameBoard board, OutputStream out) throws IOException {
+		int columns = board.numColumns();
+		out.write(("x = " + columns + ", y = " + board.numRows() + ", rule = " + board.rule() + "\n")
+				.getBytes(StandardCharsets.US_ASCII));
+		RleLine line = new RleLine(out);
+		int rowEnds = 0;
+		for (int i = 0; i < board.numRows(); ++i) {
+			int alive = nextCell(board, i, 0, true);
+			if (alive == columns) {
+				rowEnds += 1;
+				continue;
+			}
+			line.run(rowEnds, '$');
+			for (int x = 0; alive < columns; alive = nextCell(board, i, x, true)) {
+				line.run(alive - x, 'b');
+				x = nextCell(board, i, alive, false);
+				line.run(x - alive, 'o');
+			}
+			rowEnds = 1;
+		}
+		line.run(1, '!');
+		out.write('\n');
+	}
+
+	/**
+	 * helper method to find the first column at or after from of row y whose
+	 * cell is alive, or dead if alive is false; numColumns() if there is none
+	 */
+	private static int nextCell(GameBoard board, int y, int from, boolean alive) {
+		int columns = board.numColumns();
+		for (int w = from >>> 6; w < board.wordsPerRow(); ++w) {
+			long word = alive ? board.getWord(y, w) : ~board.getWord(y, w);
+			if (w == from >>> 6) {
+				word &= -1L << from;
+			}
+			if (word != 0) {
+				return Math.min(columns, (w << 6) + Long.numberOfTrailingZeros(word));
+			}
+		}
+		return columns;
+	}
+
+	/**
+	 * the body of an RLE seed being written, wrapped before lines grow past
+	 * RLE_LINE_LENGTH
+	 */
+	private static class RleLine {
+
+		private final OutputStream out;
+		private int length;
+
+		RleLine(OutputStream out) {
+			this.out = out;
+		}
+
+		/**
+		 * append a run of count tags, nothing if count is 0
+		 */
+		void run(int count, char tag) throws IOException {
+			if (count == 0) {
+				return;
+			}
+			String token = count == 1 ? String.valueOf(tag) : count + String.valueOf(tag);
+			if (this.length + token.length() > RLE_LINE_LENGTH) {
+				this.out.write('\n');
+				this.length = 0;
+			}
+			this.out.write(token.getBytes(StandardCharsets.US_ASCII));
+			this.length += token.length();
+		}
+	}
+
+	/**
+	 * helper method to write a BINARY seed a row of words at a time
+	 */
+	private static void writeBinary(GameBoard board, OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(BINARY_MAGIC);
+		data.writeInt(BINARY_VERSION);
+		data.writeInt(board.numColumns());
+		data.writeInt(board.numRows());
+		int words = board.wordsPerRow();
+		byte[] bytes = new byte[words * Long.BYTES];
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		for (int i = 0; i < board.numRows(); ++i) {
+			for (int w = 0; w < words; ++w) {
+				buffer.putLong(w * Long.BYTES, board.getWord(i, w));
+			}
+			data.write(bytes);
+		}
+		data.flush();
+	}
+
+	/**
+	 * a text seed being read a byte at a time from a buffer, keeping count of
+	 * the line for error messages
+	 */
+	private static class Input {
+
+		private final InputStream in;
+		private final byte[] buffer = new byte[BUFFER_SIZE];
+		private int position;
+		private int limit;
+		private int line = 1;
+
+		Input(InputStream in) {
+			this.in = in;
+		}
+
+		/**
+		 * the next byte, without consuming it
+		 * 
+		 * @return next byte as 0 to 255, or -1 at the end of the stream
+		 */
+		int peek() throws IOException {
+			if (this.position == this.limit) {
+				int read;
+				do {
+					read = this.in.read(this.buffer, 0, this.buffer.length);
+				} while (read == 0);
+				if (read < 0) {
+					return -1;
+				}
+				this.position = 0;
+				this.limit = read;
+			}
+			return this.buffer[this.position] & 0xFF;
+		}
+
+		/**
+		 * consume the next byte
+		 * 
+		 * @return next byte as 0 to 255, or -1 at the end of the stream
+		 */
+		int read() throws IOException {
+			int c = peek();
+			if (c >= 0) {
+				this.position += 1;
+				if (c == '\n') {
+					this.line += 1;
+				}
+			}
+			return c;
+		}
+
+		/**
+		 * consume whitespace
+		 * 
+		 * @return the byte after it, not consumed, or -1 at the end
+		 */
+		int skipWhitespace() throws IOException {
+			int c = peek();
+			while (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+				read();
+				c = peek();
+			}
+			return c;
+		}
+
+		/**
+		 * consume whitespace and then a non-negative decimal int
+		 * 
+		 * @param name
+		 *            what the int is, for error messages
+		 * @return the int
+		 */
+		int readInt(String name) throws IOException {
+			int c = skipWhitespace();
+			if (c < '0' || c > '9') {
+				throw error("expected " + name);
+			}
+			long value = 0;
+			for (; c >= '0' && c <= '9'; c = peek()) {
+				value = value * 10 + (c - '0');
+				if (value > Integer.MAX_VALUE) {
+					throw error(name + " out of range");
+				}
+				read();
+			}
+			return (int) value;
+		}
+
+		/**
+		 * consume the rest of the line, with its line end
+		 * 
+		 * @return the line without its line end, or null at the end
+		 */
+		String readLine() throws IOException {
+			if (peek() < 0) {
+				return null;
+			}
+			StringBuilder line = new StringBuilder();
+			for (int c = read(); c >= 0 && c != '\n'; c = read()) {
+				if (c != '\r') {
+					line.append((char) c);
+				}
+			}
+			return line.toString();
+		}
+
+		/**
+		 * make an exception for malformed input at the current line
+		 * 
+		 * @param message
+		 *            what is wrong
+		 * @return exception to throw
+		 */
+		IOException error(String message) {
+			return new IOException("line " + this.line + ": " + message);
+		}
+	}
+
+}
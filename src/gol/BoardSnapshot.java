@@ -0,0 +1,167 @@
+package gol;
+
+import java.nio.LongBuffer;
+
+/**
+ * an immutable data type representing the cells of a GameBoard at one
+ * generation, taken by GameBoard.snapshot()
+ */
+public class BoardSnapshot {
+
+	private final int numRows;
+	private final int numColumns;
+	private final Topology topology;
+	private final Rule rule;
+	private final long generation;
+	private final long[] words;
+
+	/*
+	 * AF(numRows, numColumns, topology, rule, generation, words) = the numRows
+	 * by numColumns board with the given topology and rule at the given
+	 * generation, whose cell (x, y) is alive iff bit (x & 63) of
+	 * words[y * wordsPerRow + (x >>> 6)] is set, where
+	 * wordsPerRow = (numColumns + 63) / 64
+	 * 
+	 * rep invariant: words.length == numRows * wordsPerRow and the bits of the
+	 * last word of each row past numColumns are zero
+	 * 
+	 * safety from rep exposure: all fields are private final and words is
+	 * never handed out of the package; GameBoard gives up its copy of words
+	 * to the constructor
+	 */
+
+	/**
+	 * make a snapshot, taking ownership of words
+	 * 
+	 * @param rows
+	 *            number of rows of the board
+	 * @param columns
+	 *            number of columns of the board
+	 * @param topology
+	 *            what lies past the edges of the board
+	 * @param rule
+	 *            rule the board steps by
+	 * @param generation
+	 *            generation of the board
+	 * @param words
+	 *            the board's cells, bit-packed as in GameBoard; must not be
+	 *            changed after this call
+	 */
+	BoardSnapshot(int rows, int columns, Topology topology, Rule rule, long generation, long[] words) {
+		this.numRows = rows;
+		this.numColumns = columns;
+		this.topology = topology;
+		this.rule = rule;
+		this.generation = generation;
+		this.words = words;
+	}
+
+	/**
+	 * number of rows in the board
+	 * 
+	 * @return number of rows in this snapshot
+	 */
+	public int numRows() {
+		return this.numRows;
+	}
+
+	/**
+	 * number of columns in the board
+	 * 
+	 * @return number of columns in this snapshot
+	 */
+	public int numColumns() {
+		return this.numColumns;
+	}
+
+	/**
+	 * what lies past the edges of the board
+	 * 
+	 * @return topology of the board
+	 */
+	public Topology topology() {
+		return this.topology;
+	}
+
+	/**
+	 * rule the board steps by
+	 * 
+	 * @return rule of the board
+	 */
+	public Rule rule() {
+		return this.rule;
+	}
+
+	/**
+	 * generation the snapshot was taken at
+	 * 
+	 * @return GameBoard.generation() when the snapshot was taken
+	 */
+	public long generation() {
+		return this.generation;
+	}
+
+	/**
+	 * whether the given cell was alive
+	 * 
+	 * @param x
+	 *            x coordinate of the cell, requires 0 <= x < numColumns()
+	 * @param y
+	 *            y coordinate of the cell, requires 0 <= y < numRows()
+	 * @return true iff the cell at (x, y) was alive
+	 */
+	public boolean isAlive(int x, int y) {
+		return (this.words[y * ((this.numColumns + 63) >>> 6) + (x >>> 6)] & (1L << x)) != 0;
+	}
+
+	/**
+	 * number of live cells
+	 * 
+	 * @return cells alive in this snapshot
+	 */
+	public long population() {
+		long population = 0;
+		for (long word : this.words) {
+			population += Long.bitCount(word);
+		}
+		return population;
+	}
+
+	/**
+	 * make a new board holding the snapshot's cells, rule and generation
+	 * 
+	 * @return board that steps on from the snapshot
+	 */
+	public GameBoard toGameBoard() {
+		GameBoard board = new GameBoard(this.numRows, this.numColumns, false, this.topology);
+		board.setRule(this.rule);
+		board.putWords(0, LongBuffer.wrap(this.words));
+		board.setGeneration(this.generation);
+		return board;
+	}
+
+	/**
+	 * render the whole board into a buffer, in the format of
+	 * GameBoard.look()
+	 * 
+	 * @param dst
+	 *            buffer to render into, requires dst.length - offset >=
+	 *            GameBoard.viewLength(numRows(), numColumns())
+	 * @param offset
+	 *            index in dst of the first byte of the view
+	 */
+	void render(byte[] dst, int offset) {
+		GameBoard.render(this.words, this.numRows, this.numColumns, 0, 0, this.numRows, this.numColumns, dst,
+				offset);
+	}
+
+	/**
+	 * the bit-packed cells, for use inside the package only
+	 * 
+	 * @return the words of the snapshot, which must not be changed
+	 */
+	long[] words() {
+		return this.words;
+	}
+
+}
@@ -0,0 +1,137 @@
+package gol;
+
+import java.nio.ByteBuffer;
+
+/**
+ * one generation of a Simulation, encoded for the binary watch stream. Each
+ * message of the stream is a 21 byte header and a payload, big endian:
+ * 
+ * <pre>
+ *      MESSAGE ::= TYPE:byte GENERATION:long ROWS:int COLUMNS:int LENGTH:int PAYLOAD:byte{LENGTH}
+ * </pre>
+ * 
+ * TYPE is 0 for a keyframe, whose PAYLOAD is the board's words deflated by
+ * WordCodec, and 1 for a delta, whose PAYLOAD is the words deflated as the
+ * XOR against the board of the message before it, as in a GenerationJournal.
+ * That board is usually of generation GENERATION - 1, but is of the same
+ * generation when the board was edited in between.
+ * 
+ * <p>
+ * The delta is encoded once, by the tick thread, and the keyframe at most
+ * once, by whichever watcher needs it first; every watcher of the
+ * generation shares the same bytes.
+ */
+class DeltaFrame {
+
+	/** a watcher gets a keyframe at least every this many states */
+	static final int KEYFRAME_INTERVAL = 64;
+	static final byte KEYFRAME = 0;
+	static final byte DELTA = 1;
+	static final int HEADER_BYTES = 21;
+
+	private final long serial;
+	private final long baseSerial;
+	private final long generation;
+	private final int numRows;
+	private final int numColumns;
+	private final long[] words;
+	private final ByteBuffer delta;
+	private final WordCodec keyframeCodec;
+	private ByteBuffer keyframe;
+
+	/*
+	 * AF(serial, baseSerial, generation, numRows, numColumns, words, delta,
+	 * keyframe) = state number serial of a simulation, generation number
+	 * generation of a numRows by numColumns board with the cells of words,
+	 * encoded as delta against state number baseSerial, if delta is not
+	 * null, and as keyframe, once it is not null
+	 * 
+	 * thread safety: words is never written after construction; the keyframe
+	 * is encoded holding this object's monitor, and keyframeCodec, shared by
+	 * the frames of one simulation, holding its own
+	 */
+
+	/**
+	 * make the frame of a state of a simulation
+	 * 
+	 * @param serial
+	 *            number of the state, counting every step and batch of edits
+	 *            published by the simulation
+	 * @param snapshot
+	 *            the board in this state
+	 * @param base
+	 *            frame of the state before to encode a delta against, or null
+	 *            for a frame with a keyframe only
+	 * @param codec
+	 *            codec to deflate the delta with
+	 * @param keyframeCodec
+	 *            codec to deflate the keyframe with, used holding its monitor
+	 */
+	DeltaFrame(long serial, BoardSnapshot snapshot, DeltaFrame base, WordCodec codec, WordCodec keyframeCodec) {
+		this.serial = serial;
+		this.baseSerial = base == null ? -1 : base.serial;
+		this.generation = snapshot.generation();
+		this.numRows = snapshot.numRows();
+		this.numColumns = snapshot.numColumns();
+		this.words = snapshot.words();
+		this.keyframeCodec = keyframeCodec;
+		if (base == null) {
+			this.delta = null;
+		} else {
+			int length = codec.deflate(this.words, base.words);
+			this.delta = message(DELTA, codec.output(), length);
+		}
+	}
+
+	/**
+	 * number of the state of this frame
+	 * 
+	 * @return serial of the state
+	 */
+	long serial() {
+		return this.serial;
+	}
+
+	/**
+	 * the message to send a watcher for this frame
+	 * 
+	 * @param sent
+	 *            serial of the last frame sent to the watcher, or -1 if none
+	 *            was
+	 * @return read-only buffer of a delta, if the watcher has the state this
+	 *         frame's delta is against and is not due a keyframe, or of a
+	 *         keyframe otherwise
+	 */
+	ByteBuffer after(long sent) {
+		if (this.delta != null && sent >= 0 && sent == this.baseSerial
+				&& this.serial % KEYFRAME_INTERVAL != 0) {
+			return this.delta.duplicate();
+		}
+		return keyframe();
+	}
+
+	/**
+	 * helper method to get the keyframe message, encoding it the first time
+	 */
+	private synchronized ByteBuffer keyframe() {
+		if (this.keyframe == null) {
+			synchronized (this.keyframeCodec) {
+				int length = this.keyframeCodec.deflate(this.words, null);
+				this.keyframe = message(KEYFRAME, this.keyframeCodec.output(), length);
+			}
+		}
+		return this.keyframe.duplicate();
+	}
+
+	/**
+	 * helper method to make a message of this frame around a payload
+	 */
+	private ByteBuffer message(byte type, byte[] payload, int length) {
+		ByteBuffer message = ByteBuffer.allocate(HEADER_BYTES + length);
+		message.put(type).putLong(this.generation).putInt(this.numRows).putInt(this.numColumns).putInt(length);
+		message.put(payload, 0, length);
+		message.flip();
+		return message.asReadOnlyBuffer();
+	}
+
+}
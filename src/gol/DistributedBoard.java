@@ -0,0 +1,456 @@
+package gol;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.ProcessBuilder.Redirect;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * a mutable board of Conway's Game of Life, or another rule, split across
+ * DistributedWorkers, each usually a process of its own, for boards too
+ * large for one JVM. The board is cut into horizontal strips of whole rows,
+ * one per worker; before each step every worker trades the first and last
+ * row of its strip with the workers to its north and south, directly over
+ * loopback sockets, and the coordinator keeps all workers on the same
+ * generation by waiting for every one of them to finish each call to step.
+ * 
+ * <p>
+ * The coordinator times each step, and the workers time how long they spend
+ * stepping their strips against how long they spend exchanging halo rows,
+ * including waiting for slower neighbours.
+ */
+public class DistributedBoard implements Closeable {
+
+	private static final long EXIT_WAIT_MILLIS = 5000;
+
+	private final int numRows;
+	private final int numColumns;
+	private final int wordsPerRow;
+	private final int[] firstRows;
+	private final Socket[] sockets;
+	private final DataInputStream[] ins;
+	private final DataOutputStream[] outs;
+	private final List<Process> processes;
+	private long generation;
+	private long computeNanos;
+	private long haloNanos;
+	private long wallNanos;
+
+	/*
+	 * AF(numRows, numColumns, firstRows, sockets) = the numRows by numColumns
+	 * board whose rows [firstRows[i], firstRows[i + 1]) are held by the worker
+	 * at the other end of sockets[i]
+	 * 
+	 * rep invariant: firstRows is strictly increasing from 0 to numRows and
+	 * has one more element than sockets, ins and outs, which are the
+	 * connections to the workers and their streams; every worker is at
+	 * generation; computeNanos and haloNanos are the sums over the workers of
+	 * their time spent stepping and exchanging halos in calls to step, and
+	 * wallNanos the time those calls took
+	 * 
+	 * thread safety: not thread safe
+	 */
+
+	/**
+	 * make a board of dead cells across workers already listening, such as
+	 * DistributedWorkers serving on threads of this JVM
+	 * 
+	 * @param ports
+	 *            loopback ports the workers listen on, one worker per strip,
+	 *            from the top of the board down
+	 * @param rows
+	 *            number of rows, requires rows >= ports.length
+	 * @param columns
+	 *            number of columns, requires columns > 0
+	 * @param topology
+	 *            what lies past the edges of the board
+	 * @param rule
+	 *            rule to step the board by
+	 * @throws IOException
+	 *             if a worker cannot be reached or set up
+	 */
+	public DistributedBoard(int[] ports, int rows, int columns, Topology topology, Rule rule) throws IOException {
+		this(ports, rows, columns, topology, rule, Collections.<Process> emptyList());
+	}
+
+	/**
+	 * helper constructor that also owns the worker processes, if any
+	 */
+	private DistributedBoard(int[] ports, int rows, int columns, Topology topology, Rule rule,
+			List<Process> processes) throws IOException {
+		if (ports.length == 0 || rows < ports.length || columns <= 0) {
+			throw new IllegalArgumentException(
+					"need 1 to " + rows + " workers for " + rows + " rows, got " + ports.length);
+		}
+		int workers = ports.length;
+		this.numRows = rows;
+		this.numColumns = columns;
+		this.wordsPerRow = (columns + 63) >>> 6;
+		this.firstRows = new int[workers + 1];
+		for (int i = 0; i <= workers; ++i) {
+			this.firstRows[i] = (int) ((long) rows * i / workers);
+		}
+		this.sockets = new Socket[workers];
+		this.ins = new DataInputStream[workers];
+		this.outs = new DataOutputStream[workers];
+		this.processes = processes;
+
+		try {
+			for (int i = 0; i < workers; ++i) {
+				this.sockets[i] = new Socket(InetAddress.getLoopbackAddress(), ports[i]);
+				this.sockets[i].setTcpNoDelay(true);
+				this.ins[i] = new DataInputStream(new BufferedInputStream(this.sockets[i].getInputStream()));
+				this.outs[i] = new DataOutputStream(new BufferedOutputStream(this.sockets[i].getOutputStream()));
+			}
+			// every worker must be told its strip before any can finish
+			// linking up with its neighbours
+			for (int i = 0; i < workers; ++i) {
+				DataOutputStream out = this.outs[i];
+				out.writeByte(DistributedWorker.SETUP);
+				out.writeInt(rows);
+				out.writeInt(columns);
+				out.writeByte(topology.ordinal());
+				out.writeShort(rule.birth());
+				out.writeShort(rule.survival());
+				out.writeInt(this.firstRows[i]);
+				out.writeInt(this.firstRows[i + 1]);
+				out.writeInt(ports[(i + 1) % workers]);
+				out.flush();
+			}
+			for (int i = 0; i < workers; ++i) {
+				done(i);
+			}
+		} catch (IOException | RuntimeException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * make a board of dead cells across new worker processes, each a JVM
+	 * running DistributedWorker with the class path of this one
+	 * 
+	 * @param rows
+	 *            number of rows, requires rows >= workers
+	 * @param columns
+	 *            number of columns, requires columns > 0
+	 * @param topology
+	 *            what lies past the edges of the board
+	 * @param rule
+	 *            rule to step the board by
+	 * @param workers
+	 *            number of worker processes, requires workers > 0
+	 * @param jvmOptions
+	 *            options for each worker JVM, such as "-Xmx8g"
+	 * @return the board, which stops the processes when closed
+	 * @throws IOException
+	 *             if a worker cannot be started, reached or set up
+	 */
+	public static DistributedBoard launch(int rows, int columns, Topology topology, Rule rule, int workers,
+			String... jvmOptions) throws IOException {
+		if (workers <= 0 || rows < workers) {
+			throw new IllegalArgumentException("need 1 to " + rows + " workers for " + rows + " rows, got " + workers);
+		}
+		List<String> command = new ArrayList<>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		command.addAll(Arrays.asList(jvmOptions));
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(DistributedWorker.class.getName());
+
+		List<Process> processes = new ArrayList<>();
+		try {
+			for (int i = 0; i < workers; ++i) {
+				processes.add(new ProcessBuilder(command).redirectError(Redirect.INHERIT).start());
+			}
+			int[] ports = new int[workers];
+			for (int i = 0; i < workers; ++i) {
+				BufferedReader reader = new BufferedReader(
+						new InputStreamReader(processes.get(i).getInputStream(), StandardCharsets.US_ASCII));
+				String line = reader.readLine();
+				if (line == null || !line.startsWith(DistributedWorker.LISTENING)) {
+					throw new IOException("worker " + i + " failed to start");
+				}
+				ports[i] = Integer.parseInt(line.substring(DistributedWorker.LISTENING.length()).trim());
+			}
+			return new DistributedBoard(ports, rows, columns, topology, rule, processes);
+		} catch (IOException | RuntimeException e) {
+			for (Process process : processes) {
+				process.destroy();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * number of rows of the board
+	 * 
+	 * @return rows
+	 */
+	public int numRows() {
+		return this.numRows;
+	}
+
+	/**
+	 * number of columns of the board
+	 * 
+	 * @return columns
+	 */
+	public int numColumns() {
+		return this.numColumns;
+	}
+
+	/**
+	 * number of workers the board is split across
+	 * 
+	 * @return workers
+	 */
+	public int workers() {
+		return this.sockets.length;
+	}
+
+	/**
+	 * number of the current generation
+	 * 
+	 * @return generations stepped so far
+	 */
+	public long generation() {
+		return this.generation;
+	}
+
+	/**
+	 * step the board, with every worker in lockstep
+	 * 
+	 * @param generations
+	 *            number of generations to step, requires generations >= 0
+	 * @throws IOException
+	 *             if a worker fails, or the workers fall out of step
+	 */
+	public void step(int generations) throws IOException {
+		long start = System.nanoTime();
+		for (DataOutputStream out : this.outs) {
+			out.writeByte(DistributedWorker.STEP);
+			out.writeInt(generations);
+			out.flush();
+		}
+		long reached = this.generation + generations;
+		for (int i = 0; i < this.ins.length; ++i) {
+			long generation = this.ins[i].readLong();
+			this.computeNanos += this.ins[i].readLong();
+			this.haloNanos += this.ins[i].readLong();
+			if (generation != reached) {
+				throw new IOException("worker " + i + " reached generation " + generation + ", not " + reached);
+			}
+		}
+		this.generation = reached;
+		this.wallNanos += System.nanoTime() - start;
+	}
+
+	/**
+	 * copy the cells of a board of the same size onto this one
+	 * 
+	 * @param board
+	 *            board whose cells to copy, requires the same number of rows
+	 *            and columns as this board
+	 * @throws IOException
+	 *             if a worker fails
+	 */
+	public void put(GameBoard board) throws IOException {
+		if (board.numRows() != this.numRows || board.numColumns() != this.numColumns) {
+			throw new IllegalArgumentException("board is " + board.numRows() + " by " + board.numColumns());
+		}
+		for (int i = 0; i < this.outs.length; ++i) {
+			DataOutputStream out = this.outs[i];
+			out.writeByte(DistributedWorker.PUT_ROWS);
+			out.writeInt(this.firstRows[i]);
+			out.writeInt(this.firstRows[i + 1] - this.firstRows[i]);
+			for (int y = this.firstRows[i]; y < this.firstRows[i + 1]; ++y) {
+				for (int w = 0; w < this.wordsPerRow; ++w) {
+					out.writeLong(board.getWord(y, w));
+				}
+			}
+			out.flush();
+		}
+		for (int i = 0; i < this.ins.length; ++i) {
+			done(i);
+		}
+	}
+
+	/**
+	 * make every cell of the board alive with a given probability; the same
+	 * seed gives the same cells as GameBoard(rows, columns, topology,
+	 * density, seed), however many workers the board is split across
+	 * 
+	 * @param seed
+	 *            seed of the random cells
+	 * @param density
+	 *            probability of each cell being alive, requires 0 <= density
+	 *            <= 1
+	 * @throws IOException
+	 *             if a worker fails
+	 */
+	public void randomize(long seed, double density) throws IOException {
+		if (!(density >= 0 && density <= 1)) {
+			throw new IllegalArgumentException("density must be between 0 and 1: " + density);
+		}
+		for (DataOutputStream out : this.outs) {
+			out.writeByte(DistributedWorker.RANDOMIZE);
+			out.writeLong(seed);
+			out.writeDouble(density);
+			out.flush();
+		}
+		for (int i = 0; i < this.ins.length; ++i) {
+			done(i);
+		}
+	}
+
+	/**
+	 * a view of the whole board, as GameBoard.look
+	 * 
+	 * @return string of numRows lines of numColumns characters each
+	 * @throws IOException
+	 *             if a worker fails
+	 */
+	public String look() throws IOException {
+		return look(0, 0, this.numRows, this.numColumns);
+	}
+
+	/**
+	 * a view of a window of the board, gathered from the workers holding its
+	 * rows, as GameBoard.look
+	 * 
+	 * @param x
+	 *            column of the window's top left corner
+	 * @param y
+	 *            row of the window's top left corner
+	 * @param rows
+	 *            number of rows of the window, requires rows >= 0
+	 * @param columns
+	 *            number of columns of the window, requires columns >= 0
+	 * @return string of rows lines of columns characters each, with cells off
+	 *         the board shown dead
+	 * @throws IOException
+	 *             if a worker fails
+	 */
+	public String look(int x, int y, int rows, int columns) throws IOException {
+		byte[] view = new byte[GameBoard.viewLength(rows, columns)];
+		// rows off the board stay dead
+		Arrays.fill(view, (byte) ' ');
+		for (int i = 0; i < rows; ++i) {
+			view[i * (columns + 1) + columns] = '\n';
+		}
+		for (int i = 0; i < this.outs.length; ++i) {
+			int from = Math.max(y, this.firstRows[i]);
+			int to = (int) Math.min((long) y + rows, this.firstRows[i + 1]);
+			if (from < to) {
+				DataOutputStream out = this.outs[i];
+				out.writeByte(DistributedWorker.LOOK);
+				out.writeInt(x);
+				out.writeInt(from);
+				out.writeInt(to - from);
+				out.writeInt(columns);
+				out.flush();
+			}
+		}
+		for (int i = 0; i < this.ins.length; ++i) {
+			int from = Math.max(y, this.firstRows[i]);
+			int to = (int) Math.min((long) y + rows, this.firstRows[i + 1]);
+			if (from < to) {
+				int length = this.ins[i].readInt();
+				if (length != GameBoard.viewLength(to - from, columns)) {
+					throw new IOException("worker " + i + " sent a view of " + length + " bytes");
+				}
+				this.ins[i].readFully(view, GameBoard.viewLength(from - y, columns), length);
+			}
+		}
+		return new String(view, StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * time the workers spent stepping their strips
+	 * 
+	 * @return nanoseconds summed over all workers and calls to step
+	 */
+	public long computeNanos() {
+		return this.computeNanos;
+	}
+
+	/**
+	 * time the workers spent exchanging halo rows, including waiting for
+	 * their neighbours
+	 * 
+	 * @return nanoseconds summed over all workers and calls to step
+	 */
+	public long haloNanos() {
+		return this.haloNanos;
+	}
+
+	/**
+	 * time the calls to step took, as seen by the coordinator
+	 * 
+	 * @return nanoseconds summed over all calls to step
+	 */
+	public long wallNanos() {
+		return this.wallNanos;
+	}
+
+	/**
+	 * close the workers, and wait for the worker processes this board
+	 * launched to exit
+	 */
+	@Override
+	public void close() {
+		for (int i = 0; i < this.sockets.length; ++i) {
+			if (this.sockets[i] == null) {
+				continue;
+			}
+			try {
+				this.outs[i].writeByte(DistributedWorker.CLOSE);
+				this.outs[i].flush();
+				this.ins[i].read();
+			} catch (IOException ioe) {
+				// the worker is gone already
+			}
+			try {
+				this.sockets[i].close();
+			} catch (IOException ioe) {
+				// nothing more to do with it
+			}
+		}
+		for (Process process : this.processes) {
+			try {
+				if (!process.waitFor(EXIT_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+					process.destroy();
+				}
+			} catch (InterruptedException ie) {
+				process.destroy();
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * helper method to read a worker's answer to a command that returns
+	 * nothing
+	 */
+	private void done(int worker) throws IOException {
+		if (this.ins[worker].readByte() != DistributedWorker.DONE) {
+			throw new IOException("worker " + worker + " failed");
+		}
+	}
+
+}
@@ -0,0 +1,79 @@
+package gol;
+
+import java.io.IOException;
+
+/**
+ * reports how fast a large random DistributedBoard steps as the number of
+ * worker processes doubles, and how each worker's time splits between
+ * stepping its strip and exchanging halo rows
+ */
+public class DistributedReport {
+
+	private static final int DEFAULT_SIZE = 4096;
+	private static final int DEFAULT_GENERATIONS = 200;
+	private static final int WARMUP_GENERATIONS = 50;
+	private static final long SEED = 21;
+	private static final double DENSITY = 0.25;
+
+	/**
+	 * print generations/sec, and milliseconds per generation spent by the
+	 * mean worker stepping and exchanging halos, for 1, 2, 4, ... workers
+	 * 
+	 * <pre>
+	 *      gol.DistributedReport [SIZE [GENERATIONS [WORKERS]]]
+	 * </pre>
+	 * 
+	 * @param args
+	 *            optional side length of the square board (default 4096),
+	 *            number of generations to time per worker count (default 200)
+	 *            and most workers to try (default the number of available
+	 *            processors)
+	 * @throws IOException
+	 *             if a worker fails
+	 */
+	public static void main(String[] args) throws IOException {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SIZE;
+		int generations = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_GENERATIONS;
+		int maxWorkers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+		System.out.println("board " + size + " x " + size + ", " + generations + " generations, up to "
+				+ maxWorkers + " workers");
+		System.out.println("workers\tgen/sec\tspeedup\tcompute ms\thalo ms\thalo %");
+
+		double serial = 0;
+		for (int workers = 1; workers <= maxWorkers; workers = nextWorkerCount(workers, maxWorkers)) {
+			try (DistributedBoard board = DistributedBoard.launch(size, size, Topology.TORUS, Rule.CONWAY,
+					workers)) {
+				board.randomize(SEED, DENSITY);
+				board.step(WARMUP_GENERATIONS);
+				long compute = board.computeNanos();
+				long halo = board.haloNanos();
+				long wall = board.wallNanos();
+				board.step(generations);
+				compute = board.computeNanos() - compute;
+				halo = board.haloNanos() - halo;
+				wall = board.wallNanos() - wall;
+
+				double perSecond = generations / (wall / 1e9);
+				if (workers == 1) {
+					serial = perSecond;
+				}
+				double perGeneration = 1e6 * workers * generations;
+				System.out.println(String.format("%d\t%.1f\t%.2fx\t%.3f\t%.3f\t%.1f%%", workers, perSecond,
+						perSecond / serial, compute / perGeneration, halo / perGeneration,
+						100.0 * halo / (compute + halo)));
+			}
+		}
+	}
+
+	/**
+	 * helper method to double the worker count, ending on exactly maxWorkers
+	 */
+	private static int nextWorkerCount(int workers, int maxWorkers) {
+		if (workers == maxWorkers) {
+			return maxWorkers + 1;
+		}
+		return Math.min(workers * 2, maxWorkers);
+	}
+
+}
@@ -0,0 +1,417 @@
+package gol;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * one worker of a DistributedBoard. It holds a horizontal strip of the
+ * board's rows as a GameBoard of its own, with one extra halo row at the top
+ * and at the bottom, and before every step fills the halo rows with the
+ * rows just past its strip: it trades its first and last rows with the
+ * workers holding the strips to the north and south over a socket to each,
+ * or copies them from its own strip where the board's topology maps them
+ * there.
+ * 
+ * <p>
+ * A worker listens on a loopback port and serves one coordinator, which
+ * sends it commands over its connection and waits for each to be answered.
+ * The neighbouring workers connect to the same port once the coordinator
+ * has told them where their strips lie.
+ */
+public class DistributedWorker implements Closeable {
+
+	/** the coordinator's commands; all ints and longs are big endian */
+	static final byte SETUP = 1;
+	static final byte STEP = 2;
+	static final byte PUT_ROWS = 3;
+	static final byte RANDOMIZE = 4;
+	static final byte LOOK = 5;
+	static final byte CLOSE = 6;
+	/** answer to a command that returns nothing */
+	static final byte DONE = 0;
+	/** start of the line a worker process prints once it listens */
+	static final String LISTENING = "listening on port ";
+
+	private final ServerSocketChannel server;
+	private final ExecutorService sender = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "gol-halo-sender");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	private GameBoard strip;
+	private int numRows;
+	private int fromRow;
+	private int toRow;
+	private int northHalo;
+	private int southHalo;
+	private SocketChannel north;
+	private SocketChannel south;
+	private ByteBuffer northIn;
+	private ByteBuffer southIn;
+	private ByteBuffer northOut;
+	private ByteBuffer southOut;
+	private long[] halo;
+
+	/*
+	 * AF(strip, fromRow, toRow) = rows [fromRow, toRow) of a board of
+	 * numRows rows, as rows 1 to toRow - fromRow of strip
+	 * 
+	 * rep invariant: once set up, strip has toRow - fromRow + 2 rows; row 0
+	 * of strip is the north halo and its last row the south halo. northHalo
+	 * and southHalo are the rows of the board the halos stand for, or -1 if
+	 * those are dead. north is the link to the worker holding northHalo iff
+	 * that is another worker's row, and null otherwise; the same for south.
+	 * northIn, southIn, northOut and southOut hold one row of words each
+	 * 
+	 * thread safety: the sender thread only ever writes northOut and
+	 * southOut to north and south, while the serving thread waits for it;
+	 * everything else is confined to the serving thread
+	 */
+
+	/**
+	 * make a worker listening on a free loopback port
+	 * 
+	 * @throws IOException
+	 *             if no port can be opened
+	 */
+	public DistributedWorker() throws IOException {
+		this.server = ServerSocketChannel.open();
+		this.server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+	}
+
+	/**
+	 * the port the worker listens on
+	 * 
+	 * @return loopback port for the coordinator and the neighbouring workers
+	 */
+	public int port() {
+		return this.server.socket().getLocalPort();
+	}
+
+	/**
+	 * serve one coordinator until it closes the worker or disconnects
+	 * 
+	 * @throws IOException
+	 *             if a connection fails, or the coordinator sends a malformed
+	 *             command
+	 */
+	public void serve() throws IOException {
+		try (SocketChannel channel = this.server.accept()) {
+			Socket socket = channel.socket();
+			socket.setTcpNoDelay(true);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			for (int command = in.read(); command >= 0 && command != CLOSE; command = in.read()) {
+				switch (command) {
+				case SETUP:
+					setup(in);
+					out.writeByte(DONE);
+					break;
+				case STEP:
+					step(in.readInt(), out);
+					break;
+				case PUT_ROWS:
+					putRows(in);
+					out.writeByte(DONE);
+					break;
+				case RANDOMIZE:
+					randomize(in.readLong(), in.readDouble());
+					out.writeByte(DONE);
+					break;
+				case LOOK:
+					look(in.readInt(), in.readInt(), in.readInt(), in.readInt(), out);
+					break;
+				default:
+					throw new IOException("unknown command " + command);
+				}
+				out.flush();
+			}
+			out.writeByte(DONE);
+			out.flush();
+		}
+	}
+
+	/**
+	 * stop listening and drop the links to the neighbouring workers
+	 */
+	@Override
+	public void close() {
+		this.sender.shutdownNow();
+		closeQuietly(this.server);
+		closeQuietly(this.north);
+		closeQuietly(this.south);
+	}
+
+	/**
+	 * helper method to take the strip this worker holds, as SETUP: the
+	 * board's rows and columns as ints, its topology as a byte, the birth
+	 * and survival masks of its rule as shorts, the first row of the strip
+	 * and the row past its end as ints, and the port of the worker holding
+	 * the strip to the south as an int. Links to the neighbouring workers
+	 * are made here: each worker connects to its south neighbour and accepts
+	 * its north neighbour.
+	 */
+	private void setup(DataInputStream in) throws IOException {
+		this.numRows = in.readInt();
+		int columns = in.readInt();
+		int topologyIndex = in.readByte();
+		int birth = in.readShort();
+		int survival = in.readShort();
+		this.fromRow = in.readInt();
+		this.toRow = in.readInt();
+		int southPort = in.readInt();
+		if (topologyIndex < 0 || topologyIndex >= Topology.values().length || this.fromRow < 0
+				|| this.fromRow >= this.toRow || this.toRow > this.numRows || columns <= 0) {
+			throw new IOException("malformed setup");
+		}
+		Topology topology = Topology.values()[topologyIndex];
+		this.strip = new GameBoard(this.toRow - this.fromRow + 2, columns, false, topology);
+		try {
+			this.strip.setRule(Rule.of(birth, survival));
+		} catch (IllegalArgumentException iae) {
+			throw new IOException("unsupported rule", iae);
+		}
+		this.northHalo = topology.neighbour(this.fromRow - 1, this.numRows);
+		this.southHalo = topology.neighbour(this.toRow, this.numRows);
+
+		// connect first: the connection completes in the neighbour's backlog
+		// before it accepts, so no worker waits on another to accept
+		if (isRemote(this.southHalo)) {
+			this.south = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), southPort));
+			this.south.socket().setTcpNoDelay(true);
+		}
+		if (isRemote(this.northHalo)) {
+			this.north = this.server.accept();
+			this.north.socket().setTcpNoDelay(true);
+		}
+		int bytes = this.strip.wordsPerRow() * Long.BYTES;
+		this.northIn = ByteBuffer.allocate(bytes);
+		this.southIn = ByteBuffer.allocate(bytes);
+		this.northOut = ByteBuffer.allocate(bytes);
+		this.southOut = ByteBuffer.allocate(bytes);
+		this.halo = new long[this.strip.wordsPerRow()];
+	}
+
+	/**
+	 * helper method to step the strip some generations, as STEP: the number
+	 * of generations as an int, answered with the generation reached, the
+	 * nanoseconds spent stepping and the nanoseconds spent filling the
+	 * halos, which includes waiting for the neighbours, as longs
+	 */
+	private void step(int generations, DataOutputStream out) throws IOException {
+		long compute = 0;
+		long halos = 0;
+		for (int i = 0; i < generations; ++i) {
+			long start = System.nanoTime();
+			exchangeHalos();
+			long exchanged = System.nanoTime();
+			this.strip.updateBoard();
+			long stepped = System.nanoTime();
+			halos += exchanged - start;
+			compute += stepped - exchanged;
+		}
+		out.writeLong(this.strip.generation());
+		out.writeLong(compute);
+		out.writeLong(halos);
+	}
+
+	/**
+	 * helper method to fill both halo rows with the current rows they stand
+	 * for. The rows going out are written on the sender thread while the
+	 * rows coming in are read here, so two neighbours never both wait to
+	 * write.
+	 */
+	private void exchangeHalos() throws IOException {
+		int last = this.toRow - this.fromRow;
+		Future<Void> sent = null;
+		if (this.north != null || this.south != null) {
+			fill(this.northOut, 1);
+			fill(this.southOut, last);
+			sent = this.sender.submit(new Callable<Void>() {
+				public Void call() throws IOException {
+					if (north != null) {
+						writeFully(north, northOut);
+					}
+					if (south != null) {
+						writeFully(south, southOut);
+					}
+					return null;
+				}
+			});
+		}
+		fillHalo(0, this.northHalo, this.north, this.northIn);
+		fillHalo(last + 1, this.southHalo, this.south, this.southIn);
+		if (sent != null) {
+			try {
+				sent.get();
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("interrupted sending halos");
+			} catch (ExecutionException ee) {
+				throw new IOException("failed to send halos", ee.getCause());
+			}
+		}
+	}
+
+	/**
+	 * helper method to fill one halo row of the strip with row row of the
+	 * board, read from link if that row is another worker's
+	 */
+	private void fillHalo(int haloRow, int row, SocketChannel link, ByteBuffer in) throws IOException {
+		int words = this.strip.wordsPerRow();
+		if (row < 0) {
+			Arrays.fill(this.halo, 0);
+		} else if (link == null) {
+			int local = row - this.fromRow + 1;
+			for (int w = 0; w < words; ++w) {
+				this.halo[w] = this.strip.getWord(local, w);
+			}
+		} else {
+			in.clear();
+			while (in.hasRemaining()) {
+				if (link.read(in) < 0) {
+					throw new EOFException("neighbouring worker closed its link");
+				}
+			}
+			in.flip();
+			in.asLongBuffer().get(this.halo);
+		}
+		for (int w = 0; w < words; ++w) {
+			this.strip.setWord(haloRow, w, this.halo[w]);
+		}
+	}
+
+	/**
+	 * helper method to copy row row of the strip into a buffer, ready to be
+	 * written
+	 */
+	private void fill(ByteBuffer out, int row) {
+		out.clear();
+		for (int w = 0; w < this.strip.wordsPerRow(); ++w) {
+			out.putLong(this.strip.getWord(row, w));
+		}
+		out.flip();
+	}
+
+	/**
+	 * helper method to overwrite rows of the strip, as PUT_ROWS: the first
+	 * row of the board to overwrite and the number of rows as ints, then
+	 * every word of those rows, bit-packed as in GameBoard, as longs
+	 */
+	private void putRows(DataInputStream in) throws IOException {
+		int first = in.readInt();
+		int count = in.readInt();
+		if (first < this.fromRow || count < 0 || (long) first + count > this.toRow) {
+			throw new IOException("rows outside the strip");
+		}
+		for (int y = first; y < first + count; ++y) {
+			for (int w = 0; w < this.strip.wordsPerRow(); ++w) {
+				this.strip.setWord(y - this.fromRow + 1, w, in.readLong());
+			}
+		}
+	}
+
+	/**
+	 * helper method to make every cell of the strip alive with a given
+	 * probability, as RANDOMIZE: a seed as a long and the probability as a
+	 * double. The strip gets the rows of the board
+	 * GameBoard(rows, columns, topology, density, seed) makes, so the board
+	 * comes out the same however it is split.
+	 */
+	private void randomize(long seed, double density) {
+		long[] words = new long[(this.toRow - this.fromRow) * this.strip.wordsPerRow()];
+		GameBoard.randomRows(this.strip.numColumns(), density, seed, this.fromRow, this.toRow, words, 0);
+		// the strip's first row is the north halo
+		this.strip.putWords(this.strip.wordsPerRow(), LongBuffer.wrap(words));
+	}
+
+	/**
+	 * helper method to render a window of the strip, as LOOK: the window's
+	 * x and y on the board, its rows and its columns as ints, answered with
+	 * the length of the view as an int and then the view in the format of
+	 * GameBoard.look
+	 */
+	private void look(int x, int y, int rows, int columns, DataOutputStream out) throws IOException {
+		if (y < this.fromRow || rows < 0 || columns < 0 || (long) y + rows > this.toRow) {
+			throw new IOException("window outside the strip");
+		}
+		byte[] view = new byte[GameBoard.viewLength(rows, columns)];
+		this.strip.render(x, y - this.fromRow + 1, rows, columns, view, 0);
+		out.writeInt(view.length);
+		out.write(view);
+	}
+
+	/**
+	 * helper method to tell whether a row of the board is another worker's
+	 */
+	private boolean isRemote(int row) {
+		return row >= 0 && (row < this.fromRow || row >= this.toRow);
+	}
+
+	/**
+	 * helper method to write all of a buffer to a blocking channel
+	 */
+	private static void writeFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * helper method to close a channel, if any, ignoring failures
+	 */
+	private static void closeQuietly(Closeable channel) {
+		if (channel == null) {
+			return;
+		}
+		try {
+			channel.close();
+		} catch (IOException ioe) {
+			// nothing more to do with it
+		}
+	}
+
+	/**
+	 * run a worker process: print the line "listening on port PORT" and
+	 * serve a coordinator
+	 * 
+	 * <pre>
+	 *      gol.DistributedWorker
+	 * </pre>
+	 * 
+	 * @param args
+	 *            unused
+	 * @throws IOException
+	 *             if serving fails
+	 */
+	public static void main(String[] args) throws IOException {
+		try (DistributedWorker worker = new DistributedWorker()) {
+			System.out.println(LISTENING + worker.port());
+			System.out.flush();
+			worker.serve();
+		}
+	}
+
+}
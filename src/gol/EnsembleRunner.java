@@ -0,0 +1,330 @@
+package gol;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * runs an ensemble of random boards, one per seed of a range, each until it
+ * settles or runs out of generations, on a work-stealing pool, and writes a
+ * summary line per run as it finishes: its final population, the generation
+ * it settled at and the period it settled into.
+ * 
+ * <p>
+ * A run shares nothing with the others: it draws its board from a generator
+ * seeded by its own seed alone, so the same seed gives the same run on any
+ * number of threads, and steps it on one thread. The only shared state is
+ * the sink, which takes one finished line per run.
+ */
+public class EnsembleRunner {
+
+	/**
+	 * the format of the summary lines
+	 */
+	public enum Format {
+
+		/** comma separated values, after a header line */
+		CSV,
+
+		/** one JSON object per line */
+		JSONL
+	}
+
+	/** columns of a CSV summary */
+	static final String CSV_HEADER = "seed,rows,columns,density,generations,population,stopped,stable_generation,"
+			+ "period,wall_ms";
+
+	private final int rows;
+	private final int columns;
+	private final double density;
+	private final long generations;
+	private final Optional<Rule> rule;
+	private final Format format;
+	private final Writer sink;
+	private final LongAdder steps = new LongAdder();
+
+	/*
+	 * AF(rows, columns, density, generations, rule, format, sink) = an
+	 * ensemble of rows by columns boards whose cells are alive with
+	 * probability density, each stepped by rule, or B3/S23 if none, for up to
+	 * generations generations and summed up in format to sink; steps counts
+	 * the generations stepped by all runs so far
+	 * 
+	 * thread safety: the fields are final and immutable but for sink and
+	 * steps. Each line is written to sink with a single call, and Writers
+	 * lock around each call; steps is a LongAdder
+	 */
+
+	/**
+	 * make an ensemble
+	 * 
+	 * @param rows
+	 *            rows of each board, requires rows > 0
+	 * @param columns
+	 *            columns of each board, requires columns > 0
+	 * @param density
+	 *            probability of each cell being alive at the start
+	 * @param generations
+	 *            most generations to step each board, requires generations >=
+	 *            0
+	 * @param rule
+	 *            if rule.isPresent(), the rule to step the boards by, instead
+	 *            of B3/S23
+	 * @param format
+	 *            format of the summary lines
+	 * @param sink
+	 *            writer to write the summary lines to, which must lock around
+	 *            each write, as Writers do
+	 */
+	public EnsembleRunner(int rows, int columns, double density, long generations, Optional<Rule> rule,
+			Format format, Writer sink) {
+		this.rows = rows;
+		this.columns = columns;
+		this.density = density;
+		this.generations = generations;
+		this.rule = rule;
+		this.format = format;
+		this.sink = sink;
+	}
+
+	/**
+	 * run one board per seed, in parallel, writing a summary line for each
+	 * as it finishes, in the order they finish
+	 * 
+	 * @param firstSeed
+	 *            seed of the first run
+	 * @param runs
+	 *            number of runs, with seeds firstSeed, firstSeed + 1, ...
+	 * @param threads
+	 *            threads to run on, requires threads > 0
+	 * @return generations stepped by all the runs
+	 * @throws IOException
+	 *             if writing to the sink fails
+	 */
+	public long run(long firstSeed, long runs, int threads) throws IOException {
+		long before = this.steps.sum();
+		if (this.format == Format.CSV) {
+			this.sink.write(CSV_HEADER + "\n");
+		}
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			pool.invoke(new Runs(firstSeed, firstSeed + runs));
+		} catch (UncheckedIOException uioe) {
+			throw uioe.getCause();
+		} finally {
+			pool.shutdown();
+		}
+		this.sink.flush();
+		return this.steps.sum() - before;
+	}
+
+	/**
+	 * the runs of a range of seeds, split in half until one is left, so idle
+	 * threads steal whole halves of what is left
+	 */
+	private class Runs extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long from;
+		private final long to;
+
+		Runs(long from, long to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from <= 1) {
+				if (this.from < this.to) {
+					runOne(this.from);
+				}
+				return;
+			}
+			long middle = this.from + (this.to - this.from) / 2;
+			invokeAll(new Runs(this.from, middle), new Runs(middle, this.to));
+		}
+	}
+
+	/**
+	 * helper method to run the board of one seed and write its summary
+	 */
+	private void runOne(long seed) {
+		GameBoard board = randomBoard(this.rows, this.columns, this.density, seed);
+		if (this.rule.isPresent()) {
+			board.setRule(this.rule.get());
+		}
+		BatchRunner.Result result;
+		try {
+			result = BatchRunner.run(board, this.generations, BatchRunner.Until.STABLE, 1, null);
+			this.steps.add(result.generations());
+			this.sink.write(line(seed, result));
+		} catch (IOException ioe) {
+			throw new UncheckedIOException(ioe);
+		}
+	}
+
+	/**
+	 * helper method to format the summary line of one run, line end included
+	 */
+	private String line(long seed, BatchRunner.Result result) {
+		String stopped = result.stopped().name().toLowerCase(Locale.ROOT);
+		if (this.format == Format.CSV) {
+			return String.format(Locale.ROOT, "%d,%d,%d,%s,%d,%d,%s,%d,%d,%.3f\n", seed, this.rows, this.columns,
+					this.density, result.generations(), result.population(), stopped, result.stableGeneration(),
+					result.period(), result.wallNanos() / 1e6);
+		}
+		return String.format(Locale.ROOT, "{\"seed\":%d,\"rows\":%d,\"columns\":%d,\"density\":%s,"
+				+ "\"generations\":%d,\"population\":%d,\"stopped\":\"%s\",\"stable_generation\":%d,"
+				+ "\"period\":%d,\"wall_ms\":%.3f}\n", seed, this.rows, this.columns, this.density,
+				result.generations(), result.population(), stopped, result.stableGeneration(), result.period(),
+				result.wallNanos() / 1e6);
+	}
+
+	/**
+	 * make a board whose cells are alive with a given probability, drawn
+	 * from a generator seeded by seed alone
+	 * 
+	 * @param rows
+	 *            rows of the board, requires rows > 0
+	 * @param columns
+	 *            columns of the board, requires columns > 0
+	 * @param density
+	 *            probability of each cell being alive
+	 * @param seed
+	 *            seed of the generator; the same seed gives the same board
+	 * @return the board
+	 */
+	static GameBoard randomBoard(int rows, int columns, double density, long seed) {
+		return new GameBoard(rows, columns, Topology.DEAD, density, seed);
+	}
+
+	/**
+	 * run an ensemble and write its summaries
+	 * 
+	 * <pre>
+	 *      gol.EnsembleRunner [--first-seed SEED] [--runs N] [--size SIZE_X,SIZE_Y] [--density DENSITY]
+	 *                         [--generations N] [--threads N] [--rule RULE] [--out FILE]
+	 *                         [--format csv|jsonl]
+	 * </pre>
+	 * 
+	 * Runs N boards, by default 1000, with seeds SEED, SEED + 1, ..., by
+	 * default from 0, each SIZE_X by SIZE_Y, by default 64 by 64, with cells
+	 * alive with probability DENSITY, by default 0.25, for up to N
+	 * generations, by default 1000, or until they settle into a cycle of
+	 * period up to 64. The runs go on N threads, by default one per
+	 * available processor. The summaries go to FILE, or standard output, as
+	 * CSV unless FILE ends in .jsonl or the format is given; the throughput of
+	 * the whole ensemble goes to standard error.
+	 * 
+	 * @param args
+	 *            arguments as described
+	 */
+	public static void main(String[] args) {
+		long firstSeed = 0;
+		long runs = 1000;
+		int sizeX = 64;
+		int sizeY = 64;
+		double density = 0.25;
+		long generations = 1000;
+		int threads = Runtime.getRuntime().availableProcessors();
+		Optional<Rule> rule = Optional.empty();
+		Optional<String> out = Optional.empty();
+		Optional<Format> format = Optional.empty();
+
+		Queue<String> arguments = new LinkedList<>(Arrays.asList(args));
+		try {
+			while (!arguments.isEmpty()) {
+				String flag = arguments.remove();
+				try {
+					if (flag.equals("--first-seed")) {
+						firstSeed = Long.parseLong(arguments.remove());
+					} else if (flag.equals("--runs")) {
+						runs = Long.parseLong(arguments.remove());
+						if (runs < 0) {
+							throw new IllegalArgumentException("--runs must not be negative");
+						}
+					} else if (flag.equals("--size")) {
+						String[] sizes = arguments.remove().split(",");
+						sizeX = Integer.parseInt(sizes[0]);
+						sizeY = Integer.parseInt(sizes[1]);
+						if (sizeX < 1 || sizeY < 1) {
+							throw new IllegalArgumentException("--size must be positive");
+						}
+					} else if (flag.equals("--density")) {
+						density = Double.parseDouble(arguments.remove());
+						if (!(density >= 0 && density <= 1)) {
+							throw new IllegalArgumentException("--density must be between 0 and 1");
+						}
+					} else if (flag.equals("--generations")) {
+						generations = Long.parseLong(arguments.remove());
+						if (generations < 0) {
+							throw new IllegalArgumentException("--generations must not be negative");
+						}
+					} else if (flag.equals("--threads")) {
+						threads = Integer.parseInt(arguments.remove());
+						if (threads < 1) {
+							throw new IllegalArgumentException("--threads must be positive");
+						}
+					} else if (flag.equals("--rule")) {
+						rule = Optional.of(Rule.parse(arguments.remove()));
+					} else if (flag.equals("--out")) {
+						out = Optional.of(arguments.remove());
+					} else if (flag.equals("--format")) {
+						String name = arguments.remove();
+						if (name.equals("csv")) {
+							format = Optional.of(Format.CSV);
+						} else if (name.equals("jsonl")) {
+							format = Optional.of(Format.JSONL);
+						} else {
+							throw new IllegalArgumentException("unknown format: \"" + name + "\"");
+						}
+					} else {
+						throw new IllegalArgumentException("unknown option: \"" + flag + "\"");
+					}
+				} catch (NoSuchElementException nsee) {
+					throw new IllegalArgumentException("missing argument for " + flag);
+				} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+					throw new IllegalArgumentException("unable to parse number for " + flag);
+				}
+			}
+		} catch (IllegalArgumentException iae) {
+			System.err.println(iae.getMessage());
+			System.err.println("usage: EnsembleRunner [--first-seed SEED] [--runs N] [--size SIZE_X,SIZE_Y] "
+					+ "[--density DENSITY] [--generations N] [--threads N] [--rule RULE] [--out FILE] "
+					+ "[--format csv|jsonl]");
+			return;
+		}
+		if (!format.isPresent()) {
+			format = Optional.of(out.isPresent() && out.get().endsWith(".jsonl") ? Format.JSONL : Format.CSV);
+		}
+
+		try (Writer sink = new BufferedWriter(new OutputStreamWriter(
+				out.isPresent() ? new FileOutputStream(out.get()) : System.out, StandardCharsets.US_ASCII))) {
+			EnsembleRunner ensemble = new EnsembleRunner(sizeY, sizeX, density, generations, rule, format.get(),
+					sink);
+			long start = System.nanoTime();
+			long stepped = ensemble.run(firstSeed, runs, threads);
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.err.println(String.format(Locale.ROOT, "%d runs on %d threads in %.2f s: %.1f runs/sec, "
+					+ "%.1f gen/sec", runs, threads, seconds, runs / seconds, stepped / seconds));
+		} catch (IOException ioe) {
+			throw new UncheckedIOException(ioe);
+		}
+	}
+
+}
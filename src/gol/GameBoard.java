@@ -1,21 +1,109 @@
-
 package gol;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 /**
- * a mutable thread-safe data type representing a Game of Life GameBoard
+ * a mutable data type representing a Game of Life GameBoard. A board is not
+ * thread-safe: hand it to a Simulation to step it while other threads read
+ * it, through the immutable snapshots the simulation publishes.
  */
 public class GameBoard {
 
+	/** bands of tile rows to split a step into per thread, for load balancing */
+	private static final int BANDS_PER_THREAD = 4;
+	/** rows in a tile; a tile is one word, 64 columns, wide */
+	private static final int TILE_ROWS = 64;
+	/** words per row below which the VECTOR kernel steps tiles like SCALAR */
+	private static final int VECTOR_MIN_WORDS = 8;
+	/** the kernel boards start out with, VECTOR wherever it is available */
+	private static final Kernel DEFAULT_KERNEL = Kernel.VECTOR.isAvailable() ? Kernel.VECTOR : Kernel.SCALAR;
+	/** probability of a cell being alive on a random board by default */
+	public static final double DEFAULT_DENSITY = 0.25;
+	/** bits of a random board's density used, so it is a multiple of 2^-16 */
+	private static final int DENSITY_BITS = 16;
+	/** words of a random board from which it is filled in parallel */
+	private static final int PARALLEL_FILL_WORDS = 1 << 16;
+
 	private final int numRows;
 	private final int numColumns;
-	private List<List<Cell>> board;
+	private final int wordsPerRow;
+	private final long lastWordMask;
+	private final Topology topology;
+	private final long[] emptyRow;
+	private long[] cells;
+	private long[] nextCells;
+	private final int tileRows;
+	private boolean[] changed;
+	private boolean[] nextChanged;
+	private final boolean[] edited;
+	private boolean anyEdited;
+	private final boolean[] active;
+	private final boolean[] tileRowActive;
+	private int activeTiles;
+	private Kernel kernel;
+	private Rule rule = Rule.CONWAY;
+	private final long[] rowDiff;
+	private ForkJoinPool pool;
+	private long generation;
+	private long version;
+	private volatile View view;
+
+	/*
+	 * REP: cells is bit-packed, one bit per cell. Row y occupies the words
+	 * cells[y * wordsPerRow .. (y + 1) * wordsPerRow - 1] and column x of that
+	 * row is bit (x & 63) of word (x >>> 6); a set bit means the cell is alive.
+	 * 
+	 * nextCells is a second buffer of the same shape that the next generation
+	 * is written into; the two are swapped after every step so that stepping
+	 * allocates nothing.
+	 * 
+	 * emptyRow is one all-dead row, read in place of the rows past the top and
+	 * bottom edges when the topology has no cells there.
+	 * 
+	 * rep invariant: cells.length == nextCells.length == numRows * wordsPerRow,
+	 * cells != nextCells, and the bits of the last word of every row of cells
+	 * that lie past numColumns are always zero, emptyRow.length == wordsPerRow
+	 * and every word of emptyRow is zero
+	 * 
+	 * The board is also split into tiles of TILE_ROWS rows by one word. Tile
+	 * (r, w) is at index r * wordsPerRow + w of changed, nextChanged, edited
+	 * and active. changed[t] is false only if tile t of cells is the same as
+	 * two generations ago and nextCells holds the generation computed from
+	 * that. A step recomputes just the active tiles, those with a changed tile
+	 * among themselves and their neighbours: every other tile sits in a
+	 * neighbourhood of still lifes and period 2 oscillators, so it would come
+	 * out as it already is in nextCells. edited[t] is true if an edit
+	 * touched tile t since the last step, which keeps it changed for the two
+	 * steps after, and anyEdited iff some edited[t] is true. tileRowActive[r]
+	 * is true iff some tile of tile row r is active, and activeTiles counts
+	 * the active tiles of the last step.
+	 * 
+	 * rule is the rule the board steps by; the kernels count neighbours with
+	 * the adders of stepWord, and apply Conway's rule with them directly and
+	 * any other through Rule.next. kernel is the loop that computes the
+	 * active tiles, available in this JVM, and rowDiff is scratch space of wordsPerRow words for the
+	 * VECTOR kernel on the calling thread. pool is null when the board is
+	 * stepped on the calling thread only.
+	 * 
+	 * generation counts the calls to updateBoard, and version counts every
+	 * step and edit, so the cells are the same whenever version is. view is
+	 * the last rendered view of the whole board, current iff its version is
+	 * version.
+	 */
 
 	/**
 	 * initialize a GameBoard instance
@@ -27,52 +115,189 @@ public class GameBoard {
 	 *            number of columns in board
 	 * @param random
 	 *            whether to randomly assign living cells with probability
-	 *            0.25/cell
+	 *            0.25/cell, from a seed of its own
 	 */
 	public GameBoard(int rows, int columns, boolean random) {
+		this(rows, columns, random, Topology.DEAD);
+	}
+
+	/**
+	 * initialize a GameBoard instance with the given edges
+	 * 
+	 * @param rows
+	 *            number of rows in board
+	 * @param columns
+	 *            number of columns in board
+	 * @param random
+	 *            whether to randomly assign living cells with probability
+	 *            0.25/cell, from a seed of its own
+	 * @param topology
+	 *            what lies past the edges of the board
+	 */
+	public GameBoard(int rows, int columns, boolean random, Topology topology) {
 		this.numRows = rows;
 		this.numColumns = columns;
+		this.wordsPerRow = (columns + 63) >>> 6;
+		this.lastWordMask = (columns & 63) == 0 ? -1L : (1L << (columns & 63)) - 1;
+		this.topology = topology;
+		this.emptyRow = new long[wordsPerRow];
 
-		board = new ArrayList<>();
+		cells = new long[rows * wordsPerRow];
+		nextCells = new long[rows * wordsPerRow];
+
+		// nextCells does not hold a previous generation yet, so every tile
+		// starts out as if it had just been edited
+		tileRows = (rows + TILE_ROWS - 1) / TILE_ROWS;
+		changed = new boolean[tileRows * wordsPerRow];
+		nextChanged = new boolean[tileRows * wordsPerRow];
+		edited = new boolean[tileRows * wordsPerRow];
+		active = new boolean[tileRows * wordsPerRow];
+		tileRowActive = new boolean[tileRows];
+		kernel = DEFAULT_KERNEL;
+		rowDiff = new long[wordsPerRow];
+		Arrays.fill(changed, true);
+		Arrays.fill(edited, true);
+		anyEdited = true;
 
 		if (random) {
-			for (int i = 0; i < rows; ++i) {
-				List<Cell> rowArray = new ArrayList<Cell>();
-				for (int j = 0; j < columns; ++j) {
-					rowArray.add(new Cell(j, i, randomAlive()));
-				}
-				board.add(rowArray);
-			}
+			fillRandom(DEFAULT_DENSITY, ThreadLocalRandom.current().nextLong());
 		}
 
-		else {
-			for (int i = 0; i < rows; ++i) {
-				List<Cell> rowArray = new ArrayList<Cell>();
-				for (int j = 0; j < columns; ++j) {
-					rowArray.add(new Cell(j, i, false));
-				}
-				board.add(rowArray);
-			}
+	}
+
+	/**
+	 * initialize a random GameBoard instance, the same one for the same
+	 * seed
+	 * 
+	 * @param rows
+	 *            number of rows in board
+	 * @param columns
+	 *            number of columns in board
+	 * @param topology
+	 *            what lies past the edges of the board
+	 * @param density
+	 *            probability of each cell being alive, requires 0 <= density
+	 *            <= 1; it is rounded to a multiple of 2^-16
+	 * @param seed
+	 *            seed of the random cells
+	 */
+	public GameBoard(int rows, int columns, Topology topology, double density, long seed) {
+		this(rows, columns, false, topology);
+		if (!(density >= 0 && density <= 1)) {
+			throw new IllegalArgumentException("density must be between 0 and 1: " + density);
 		}
+		fillRandom(density, seed);
+	}
 
+	/**
+	 * helper method to make every cell alive with probability density, drawn
+	 * from a generator seeded by seed. Each band of TILE_ROWS rows draws from
+	 * a stream split off the generator in turn, so the bands can be filled in
+	 * parallel and still come out the same for the same seed.
+	 */
+	private void fillRandom(double density, long seed) {
+		final int threshold = densityThreshold(density);
+		SplittableRandom root = new SplittableRandom(seed);
+		final SplittableRandom[] randoms = new SplittableRandom[this.tileRows];
+		for (int band = 0; band < this.tileRows; ++band) {
+			randoms[band] = root.split();
+		}
+		IntStream bands = IntStream.range(0, this.tileRows);
+		if (this.cells.length >= PARALLEL_FILL_WORDS) {
+			bands = bands.parallel();
+		}
+		bands.forEach(new IntConsumer() {
+			public void accept(int band) {
+				int from = band * TILE_ROWS * wordsPerRow;
+				int to = Math.min(numRows, (band + 1) * TILE_ROWS) * wordsPerRow;
+				fillWords(randoms[band], threshold, wordsPerRow, lastWordMask, cells, from, to);
+			}
+		});
 	}
 
 	/**
-	 * helper method to randomly decide whether to have the cell
+	 * fill some rows with the cells those rows have on the board made by
+	 * GameBoard(rows, columns, topology, density, seed), without making the
+	 * rest of the board, so a board split into strips can be filled a strip
+	 * at a time
 	 * 
-	 * @return true == alive ; false == dead
+	 * @param columns
+	 *            number of columns of the board
+	 * @param density
+	 *            probability of each cell being alive, requires 0 <= density
+	 *            <= 1
+	 * @param seed
+	 *            seed of the random cells
+	 * @param fromRow
+	 *            first row to fill, requires fromRow >= 0
+	 * @param toRow
+	 *            row after the last to fill, requires toRow >= fromRow
+	 * @param dst
+	 *            array to fill, bit-packed as in the rep with row fromRow
+	 *            starting at offset; requires dst.length - offset >= (toRow -
+	 *            fromRow) * ((columns + 63) / 64)
+	 * @param offset
+	 *            index in dst of the first word of row fromRow
 	 */
-	public boolean randomAlive() {
+	static void randomRows(int columns, double density, long seed, int fromRow, int toRow, long[] dst, int offset) {
+		int wordsPerRow = (columns + 63) >>> 6;
+		long lastWordMask = (columns & 63) == 0 ? -1L : (1L << (columns & 63)) - 1;
+		int threshold = densityThreshold(density);
+		int draws = threshold == 0 || threshold >= 1 << DENSITY_BITS ? 0
+				: DENSITY_BITS - Integer.numberOfTrailingZeros(threshold);
+		SplittableRandom root = new SplittableRandom(seed);
+		for (int band = 0; band * TILE_ROWS < toRow; ++band) {
+			// split every band's stream in turn, as fillRandom does
+			SplittableRandom random = root.split();
+			int from = Math.max(fromRow, band * TILE_ROWS);
+			int to = Math.min(toRow, (band + 1) * TILE_ROWS);
+			if (from >= to) {
+				continue;
+			}
+			// skip what the rows of the band above fromRow draw
+			for (long skip = (long) (from - band * TILE_ROWS) * wordsPerRow * draws; skip > 0; --skip) {
+				random.nextLong();
+			}
+			fillWords(random, threshold, wordsPerRow, lastWordMask, dst, offset + (from - fromRow) * wordsPerRow,
+					offset + (to - fromRow) * wordsPerRow);
+		}
+	}
 
-		List<Integer> randomList = new ArrayList<>();
-		randomList.addAll(Arrays.asList(1, 2, 3, 4));
-		Random randomizer = new Random();
+	/**
+	 * helper method to round a density to the threshold fillWords takes
+	 */
+	private static int densityThreshold(double density) {
+		return (int) Math.round(density * (1 << DENSITY_BITS));
+	}
 
-		if (randomList.get(randomizer.nextInt(4)) == 1) {
-			return true;
+	/**
+	 * helper method to fill whole rows of words with random cells, each
+	 * alive with probability threshold / 2^DENSITY_BITS, where from is the
+	 * first word of a row
+	 */
+	private static void fillWords(SplittableRandom random, int threshold, int wordsPerRow, long lastWordMask,
+			long[] dst, int from, int to) {
+		// a bit is set with the probability of the binary fraction of
+		// threshold, taking random words from its lowest set bit up: OR with
+		// a random word for a one, which halves the chance of a clear bit,
+		// and AND for a zero, which halves the chance of a set bit
+		int lowest = Integer.numberOfTrailingZeros(threshold);
+		for (int i = from; i < to; ++i) {
+			long bits;
+			if (threshold >= 1 << DENSITY_BITS) {
+				bits = -1L;
+			} else {
+				bits = 0;
+				for (int b = lowest; b < DENSITY_BITS; ++b) {
+					long word = random.nextLong();
+					bits = ((threshold >>> b) & 1) != 0 ? bits | word : bits & word;
+				}
+			}
+			if ((i - from + 1) % wordsPerRow == 0) {
+				bits &= lastWordMask;
+			}
+			dst[i] = bits;
 		}
-		return false;
-
 	}
 
 	/**
@@ -95,13 +320,32 @@ public class GameBoard {
 	}
 
 	/**
-	 * get the board associated with this minesweeper instance
+	 * what lies past the edges of the board
 	 * 
-	 * @return board of this minesweeper
+	 * @return topology of this board
+	 */
+	public Topology topology() {
+		return this.topology;
+	}
+
+	/**
+	 * get a copy of the board as rows of Cells. The board itself is stored
+	 * bit-packed, so changes made to the returned lists are not reflected in
+	 * this GameBoard; use produce and kill instead.
+	 * 
+	 * @return board.get(y).get(x) is the Cell at column x and row y
 	 */
 
 	public List<List<Cell>> getBoard() {
-		return this.board;
+		List<List<Cell>> board = new ArrayList<>(this.numRows);
+		for (int i = 0; i < this.numRows; ++i) {
+			List<Cell> rowArray = new ArrayList<Cell>(this.numColumns);
+			for (int j = 0; j < this.numColumns; ++j) {
+				rowArray.add(new Cell(j, i, isAlive(j, i)));
+			}
+			board.add(rowArray);
+		}
+		return board;
 	}
 
 	/**
@@ -111,100 +355,197 @@ public class GameBoard {
 	 *            x coordinate of given cell
 	 * @param y
 	 *            y coordinate of given cell
-	 * @return set of valid adjacent cells
+	 * @return set of valid adjacent cells; past the edges these are the cells
+	 *         that stand in for the neighbours under this board's topology
 	 */
 	public Set<Cell> adjacentCells(int x, int y) {
 		Set<Cell> adjacentCells = new HashSet<>();
 
-		try {
-			Cell topCell = this.board.get(y - 1).get(x);
-			adjacentCells.add(topCell);
-		} catch (IndexOutOfBoundsException e) {
-
-		}
-		try {
-			Cell bottomCell = this.board.get(y + 1).get(x);
-			adjacentCells.add(bottomCell);
-		} catch (IndexOutOfBoundsException e) {
-
-		}
-		try {
-			Cell leftCell = this.board.get(y).get(x - 1);
-			adjacentCells.add(leftCell);
-		} catch (IndexOutOfBoundsException e) {
-
-		}
-		try {
-			Cell rightCell = this.board.get(y).get(x + 1);
-			adjacentCells.add(rightCell);
-		} catch (IndexOutOfBoundsException e) {
-
-		}
-		try {
-			Cell upperLeftDiagonal = this.board.get(y - 1).get(x - 1);
-			adjacentCells.add(upperLeftDiagonal);
-		} catch (IndexOutOfBoundsException e) {
-
-		}
-		try {
-			Cell lowerRightDiagonal = this.board.get(y + 1).get(x + 1);
-			adjacentCells.add(lowerRightDiagonal);
-		} catch (IndexOutOfBoundsException e) {
-
+		for (int dy = -1; dy <= 1; ++dy) {
+			for (int dx = -1; dx <= 1; ++dx) {
+				int nx = this.topology.neighbour(x + dx, this.numColumns);
+				int ny = this.topology.neighbour(y + dy, this.numRows);
+				if ((dx != 0 || dy != 0) && nx >= 0 && ny >= 0) {
+					adjacentCells.add(new Cell(nx, ny, isAlive(nx, ny)));
+				}
+			}
 		}
-		try {
-			Cell upperRightDiagonal = this.board.get(y - 1).get(x + 1);
-			adjacentCells.add(upperRightDiagonal);
-		} catch (IndexOutOfBoundsException e) {
 
-		}
-		try {
-			Cell lowerLeftDiagonal = this.board.get(y + 1).get(x - 1);
-			adjacentCells.add(lowerLeftDiagonal);
-		} catch (IndexOutOfBoundsException e) {
+		return adjacentCells;
+	}
 
+	/**
+	 * return a viewable representation of GameBoard: one line per row, top
+	 * to bottom, with '#' for a live cell and ' ' for a dead one, each line
+	 * ending in '\n'. The view is rendered at most once per generation and
+	 * edit, so repeated calls between steps return the same String.
+	 * 
+	 * @return view of the current GameBoard
+	 */
+	public String look() {
+		View view = fullView();
+		if (view.string == null) {
+			view.string = new String(view.bytes, 0, view.length, StandardCharsets.ISO_8859_1);
 		}
+		return view.string;
+	}
 
-		return adjacentCells;
+	/**
+	 * return a viewable representation of a window of the GameBoard, in the
+	 * format of look(); cells of the window past the edges of the board are
+	 * shown dead
+	 * 
+	 * @param x
+	 *            x coordinate of the window's top left cell
+	 * @param y
+	 *            y coordinate of the window's top left cell
+	 * @param rows
+	 *            height of the window, requires rows >= 0
+	 * @param columns
+	 *            width of the window, requires columns >= 0
+	 * @return view of the window
+	 */
+	public String look(int x, int y, int rows, int columns) {
+		byte[] bytes = new byte[viewLength(rows, columns)];
+		render(x, y, rows, columns, bytes, 0);
+		return new String(bytes, StandardCharsets.ISO_8859_1);
 	}
 
 	/**
-	 * return a viewable representation of GameBoard according to the specs of
-	 * @return view of the current GameBoard
+	 * write the view of look() to a stream, without making a String of it
+	 * 
+	 * @param out
+	 *            stream to write the view to
+	 * @throws IOException
+	 *             if writing to out fails
 	 */
+	public void writeTo(OutputStream out) throws IOException {
+		View view = fullView();
+		out.write(view.bytes, 0, view.length);
+	}
 
-	public String look() {
+	/**
+	 * number of bytes in the view of a window
+	 * 
+	 * @param rows
+	 *            height of the window
+	 * @param columns
+	 *            width of the window
+	 * @return length of look(x, y, rows, columns) for any x and y
+	 */
+	public static int viewLength(int rows, int columns) {
+		return rows * (columns + 1);
+	}
 
-		String boardView = "";
-		for (int i = 0; i < this.numRows; ++i) {
+	/**
+	 * render a window of the GameBoard into a buffer as ASCII bytes, in the
+	 * format of look(x, y, rows, columns). Rendering allocates nothing, so a
+	 * viewer can reuse one buffer for every frame.
+	 * 
+	 * @param x
+	 *            x coordinate of the window's top left cell
+	 * @param y
+	 *            y coordinate of the window's top left cell
+	 * @param rows
+	 *            height of the window, requires rows >= 0
+	 * @param columns
+	 *            width of the window, requires columns >= 0
+	 * @param dst
+	 *            buffer to render into, requires dst.length - offset >=
+	 *            viewLength(rows, columns)
+	 * @param offset
+	 *            index in dst of the first byte of the view
+	 * @return number of bytes written, viewLength(rows, columns)
+	 */
+	public int render(int x, int y, int rows, int columns, byte[] dst, int offset) {
+		return render(this.cells, this.numRows, this.numColumns, x, y, rows, columns, dst, offset);
+	}
 
-			String rowView = "";
+	/**
+	 * render a window of a board's bit-packed words into a buffer, as by
+	 * render(x, y, rows, columns, dst, offset)
+	 * 
+	 * @param cells
+	 *            words of a numRows by numColumns board, laid out as in the
+	 *            rep
+	 * @param numRows
+	 *            number of rows of the board
+	 * @param numColumns
+	 *            number of columns of the board
+	 * @return number of bytes written, viewLength(rows, columns)
+	 */
+	static int render(long[] cells, int numRows, int numColumns, int x, int y, int rows, int columns, byte[] dst,
+			int offset) {
+		int wordsPerRow = (numColumns + 63) >>> 6;
+		int lineLength = columns + 1;
+		int length = viewLength(rows, columns);
+		// the columns of the window that lie on the board, as board columns
+		int fromColumn = Math.max(x, 0);
+		int toColumn = (int) Math.min((long) x + columns, numColumns);
 
-			for (int j = 0; j < this.numColumns; ++j) {
-				Cell thisCell = this.board.get(i).get(j);
-				String cellView = "";
+		for (int i = 0; i < rows; ++i) {
+			int line = offset + i * lineLength;
+			Arrays.fill(dst, line, line + columns, (byte) ' ');
+			dst[line + columns] = '\n';
 
-				if (thisCell.isAlive()) {
-					cellView = "#";
+			long row = (long) y + i;
+			if (row < 0 || row >= numRows || fromColumn >= toColumn) {
+				continue;
+			}
+			int rowStart = (int) row * wordsPerRow;
+			for (int w = fromColumn >>> 6; w <= (toColumn - 1) >>> 6; ++w) {
+				long word = cells[rowStart + w];
+				if (w == fromColumn >>> 6) {
+					word &= -1L << fromColumn;
 				}
-
-				if (!(thisCell.isAlive())) {
-					cellView = " ";
+				if (w == (toColumn - 1) >>> 6 && (toColumn & 63) != 0) {
+					word &= (1L << toColumn) - 1;
 				}
-
-				if (j == this.numColumns - 1) {
-					rowView += cellView;
-				} else {
-					rowView += cellView + "";
+				// only the live cells are visited
+				while (word != 0) {
+					int column = (w << 6) + Long.numberOfTrailingZeros(word);
+					dst[line + column - x] = '#';
+					word &= word - 1;
 				}
-
 			}
+		}
+		return length;
+	}
 
-			boardView += rowView + "\n";
-
+	/**
+	 * helper method to get the view of the whole board, rendering it if the
+	 * board changed since it was last rendered
+	 */
+	private View fullView() {
+		View view = this.view;
+		if (view != null && view.version == this.version) {
+			return view;
 		}
+		int length = viewLength(this.numRows, this.numColumns);
+		byte[] bytes = new byte[length];
+		render(0, 0, this.numRows, this.numColumns, bytes, 0);
+		view = new View(this.version, bytes, length);
+		this.view = view;
+		return view;
+	}
 
-		return boardView;
+	/**
+	 * the rendered view of one version of the board; bytes is never written
+	 * after construction, so a View can be shared by every viewer of that
+	 * version
+	 */
+	private static class View {
+
+		final long version;
+		final byte[] bytes;
+		final int length;
+		String string;
+
+		View(long version, byte[] bytes, int length) {
+			this.version = version;
+			this.bytes = bytes;
+			this.length = length;
+		}
 	}
 
 	/**
@@ -216,9 +557,8 @@ public class GameBoard {
 	 *            y coordinate of the given cell
 	 */
 	public void kill(int x, int y) {
-		if (x < this.numColumns && y < this.numRows) {
-			this.board.get(y).set(x, new Cell(x, y, false));
-
+		if (inBounds(x, y)) {
+			set(x, y, false);
 		}
 	}
 
@@ -231,12 +571,277 @@ public class GameBoard {
 	 *            y coordinate of the given cell
 	 */
 	public void produce(int x, int y) {
-		if (x < this.numColumns && y < this.numRows) {
+		if (inBounds(x, y)) {
+			set(x, y, true);
+		}
+	}
+
+	/**
+	 * pack the coordinates of a cell into one long, for produceAll and
+	 * killAll
+	 * 
+	 * @param x
+	 *            x coordinate of the cell
+	 * @param y
+	 *            y coordinate of the cell
+	 * @return y in the high 32 bits and x in the low 32 bits
+	 */
+	public static long pack(int x, int y) {
+		return ((long) y << 32) | (x & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * make every cell in a list alive; cells off the board are ignored
+	 * 
+	 * @param coordinates
+	 *            coordinates of the cells, each packed by pack
+	 */
+	public void produceAll(long[] coordinates) {
+		setAll(coordinates, true);
+	}
+
+	/**
+	 * make every cell in a list dead; cells off the board are ignored
+	 * 
+	 * @param coordinates
+	 *            coordinates of the cells, each packed by pack
+	 */
+	public void killAll(long[] coordinates) {
+		setAll(coordinates, false);
+	}
+
+	/**
+	 * make every cell of a rectangle alive, or every one dead; the part of
+	 * the rectangle off the board is ignored
+	 * 
+	 * @param x
+	 *            x coordinate of the west column of the rectangle
+	 * @param y
+	 *            y coordinate of the north row of the rectangle
+	 * @param rows
+	 *            number of rows of the rectangle, requires rows >= 0
+	 * @param columns
+	 *            number of columns of the rectangle, requires columns >= 0
+	 * @param alive
+	 *            true to make the cells alive, false to make them dead
+	 */
+	public void fill(int x, int y, int rows, int columns, boolean alive) {
+		int fromX = Math.max(x, 0);
+		int toX = (int) Math.min((long) x + columns, this.numColumns);
+		int fromY = Math.max(y, 0);
+		int toY = (int) Math.min((long) y + rows, this.numRows);
+		if (fromX >= toX || fromY >= toY) {
+			return;
+		}
+		int fromWord = fromX >>> 6;
+		int toWord = (toX - 1) >>> 6;
+		for (int row = fromY; row < toY; ++row) {
+			int start = row * this.wordsPerRow;
+			for (int w = fromWord; w <= toWord; ++w) {
+				long mask = columnMask(w, fromX, toX);
+				if (alive) {
+					this.cells[start + w] |= mask;
+				} else {
+					this.cells[start + w] &= ~mask;
+				}
+			}
+		}
+		touched(fromY, toY, fromWord, toWord);
+	}
+
+	/**
+	 * copy a pattern onto this board, its north west corner at (x, y): every
+	 * cell under the pattern becomes alive or dead as the pattern's cell is.
+	 * The part of the pattern off the board is ignored.
+	 * 
+	 * @param pattern
+	 *            board holding the pattern; it is not changed
+	 * @param x
+	 *            x coordinate on this board of the pattern's west column
+	 * @param y
+	 *            y coordinate on this board of the pattern's north row
+	 */
+	public void stamp(GameBoard pattern, int x, int y) {
+		int fromX = Math.max(x, 0);
+		int toX = (int) Math.min((long) x + pattern.numColumns, this.numColumns);
+		int fromY = Math.max(y, 0);
+		int toY = (int) Math.min((long) y + pattern.numRows, this.numRows);
+		if (fromX >= toX || fromY >= toY) {
+			return;
+		}
+		long[] source = pattern == this ? this.cells.clone() : pattern.cells;
+		int fromWord = fromX >>> 6;
+		int toWord = (toX - 1) >>> 6;
+		for (int row = fromY; row < toY; ++row) {
+			int start = row * this.wordsPerRow;
+			int sourceStart = (row - y) * pattern.wordsPerRow;
+			for (int w = fromWord; w <= toWord; ++w) {
+				long mask = columnMask(w, fromX, toX);
+				long bits = rowBits(source, sourceStart, pattern.wordsPerRow, 64L * w - x);
+				this.cells[start + w] = (this.cells[start + w] & ~mask) | (bits & mask);
+			}
+		}
+		touched(fromY, toY, fromWord, toWord);
+	}
+
+	/**
+	 * whether the given cell is alive
+	 * 
+	 * @param x
+	 *            x coordinate of the cell, requires 0 <= x < numColumns()
+	 * @param y
+	 *            y coordinate of the cell, requires 0 <= y < numRows()
+	 * @return true iff the cell at (x, y) is alive
+	 */
+	public boolean isAlive(int x, int y) {
+		return (this.cells[y * this.wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+	}
+
+	/**
+	 * number of words in the bit-packed form of each row, used by getWord
+	 * and setWord
+	 * 
+	 * @return (numColumns() + 63) / 64
+	 */
+	int wordsPerRow() {
+		return this.wordsPerRow;
+	}
+
+	/**
+	 * get 64 cells of a row at once
+	 * 
+	 * @param y
+	 *            row of the cells, requires 0 <= y < numRows()
+	 * @param w
+	 *            word of the row, requires 0 <= w < wordsPerRow()
+	 * @return word whose bit b is set iff the cell at (64 * w + b, y) is alive
+	 */
+	long getWord(int y, int w) {
+		return this.cells[y * this.wordsPerRow + w];
+	}
 
-			this.board.get(y).set(x, new Cell(x, y, true));
+	/**
+	 * set 64 cells of a row at once
+	 * 
+	 * @param y
+	 *            row of the cells, requires 0 <= y < numRows()
+	 * @param w
+	 *            word of the row, requires 0 <= w < wordsPerRow()
+	 * @param bits
+	 *            bit b is set iff the cell at (64 * w + b, y) should be alive;
+	 *            bits for columns past the east edge are ignored
+	 */
+	void setWord(int y, int w, long bits) {
+		int tile = (y / TILE_ROWS) * this.wordsPerRow + w;
+		this.changed[tile] = true;
+		this.edited[tile] = true;
+		this.anyEdited = true;
+		this.version += 1;
+		this.cells[y * this.wordsPerRow + w] = w == this.wordsPerRow - 1 ? bits & this.lastWordMask : bits;
+	}
+
+	/**
+	 * helper method to read a cell on the board as 1 (alive) or 0 (dead)
+	 */
+	private int bit(int x, int y) {
+		return (int) (this.cells[y * this.wordsPerRow + (x >>> 6)] >>> x) & 1;
+	}
+
+	/**
+	 * helper method to check whether coordinates lie on this board
+	 */
+	private boolean inBounds(int x, int y) {
+		return x >= 0 && y >= 0 && x < this.numColumns && y < this.numRows;
+	}
+
+	/**
+	 * helper method to set the state of a single cell
+	 */
+	private void set(int x, int y, boolean isAlive) {
+		int index = y * this.wordsPerRow + (x >>> 6);
+		int tile = (y / TILE_ROWS) * this.wordsPerRow + (x >>> 6);
+		this.changed[tile] = true;
+		this.edited[tile] = true;
+		this.anyEdited = true;
+		this.version += 1;
+		if (isAlive) {
+			this.cells[index] |= 1L << x;
+		} else {
+			this.cells[index] &= ~(1L << x);
 		}
 	}
-	
+
+	/**
+	 * helper method to set the state of every cell in a list of packed
+	 * coordinates, counting them all as one edit
+	 */
+	private void setAll(long[] coordinates, boolean isAlive) {
+		for (long packed : coordinates) {
+			int x = (int) packed;
+			int y = (int) (packed >> 32);
+			if (!inBounds(x, y)) {
+				continue;
+			}
+			int w = x >>> 6;
+			int tile = (y / TILE_ROWS) * this.wordsPerRow + w;
+			this.changed[tile] = true;
+			this.edited[tile] = true;
+			if (isAlive) {
+				this.cells[y * this.wordsPerRow + w] |= 1L << x;
+			} else {
+				this.cells[y * this.wordsPerRow + w] &= ~(1L << x);
+			}
+		}
+		this.anyEdited = true;
+		this.version += 1;
+	}
+
+	/**
+	 * helper method to mark the tiles of rows [fromRow, toRow) and words
+	 * [fromWord, toWord] as edited, as one edit
+	 */
+	private void touched(int fromRow, int toRow, int fromWord, int toWord) {
+		for (int r = fromRow / TILE_ROWS; r <= (toRow - 1) / TILE_ROWS; ++r) {
+			for (int w = fromWord; w <= toWord; ++w) {
+				this.changed[r * this.wordsPerRow + w] = true;
+				this.edited[r * this.wordsPerRow + w] = true;
+			}
+		}
+		this.anyEdited = true;
+		this.version += 1;
+	}
+
+	/**
+	 * helper method to get the bits of word w for columns [from, to), where
+	 * the columns overlap the word
+	 */
+	private static long columnMask(int w, int from, int to) {
+		long mask = -1L;
+		if (w == from >>> 6) {
+			mask &= -1L << from;
+		}
+		if (w == (to - 1) >>> 6 && (to & 63) != 0) {
+			mask &= (1L << to) - 1;
+		}
+		return mask;
+	}
+
+	/**
+	 * helper method to get 64 cells of a row of words starting at column
+	 * column, where bit b is the cell at column + b and the cells before or
+	 * past the row are dead
+	 */
+	private static long rowBits(long[] words, int rowStart, int rowWords, long column) {
+		int w = (int) (column >> 6);
+		int b = (int) (column & 63);
+		long low = w >= 0 && w < rowWords ? words[rowStart + w] : 0;
+		if (b == 0) {
+			return low;
+		}
+		long high = w + 1 >= 0 && w + 1 < rowWords ? words[rowStart + w + 1] : 0;
+		return (low >>> b) | (high << (64 - b));
+	}
+
 	/**
 	 * helper method to count alive adjacent cells for the given cell
 	 * @param c given Cell 
@@ -244,11 +849,23 @@ public class GameBoard {
 	 */
 
 	public int countAliveAdjacent(Cell c) {
-		Set<Cell> adj = adjacentCells(c.getX(), c.getY());
+		int x = c.getX();
+		int y = c.getY();
+
+		if (x > 0 && y > 0 && x < this.numColumns - 1 && y < this.numRows - 1) {
+			return bit(x - 1, y - 1) + bit(x, y - 1) + bit(x + 1, y - 1)
+					+ bit(x - 1, y) + bit(x + 1, y)
+					+ bit(x - 1, y + 1) + bit(x, y + 1) + bit(x + 1, y + 1);
+		}
+
 		int countAliveAdjacent = 0;
-		for (Cell cell : adj) {
-			if (cell.isAlive()) {
-				countAliveAdjacent += 1;
+		for (int dy = -1; dy <= 1; ++dy) {
+			for (int dx = -1; dx <= 1; ++dx) {
+				int nx = this.topology.neighbour(x + dx, this.numColumns);
+				int ny = this.topology.neighbour(y + dy, this.numRows);
+				if ((dx != 0 || dy != 0) && nx >= 0 && ny >= 0) {
+					countAliveAdjacent += bit(nx, ny);
+				}
 			}
 		}
 		return countAliveAdjacent;
@@ -258,14 +875,19 @@ public class GameBoard {
 	 * get Cell 
 	 * @param x x-coordinate of the cell
 	 * @param y y-coordinate of the cell
-	 * @return the Cell reference to the given coordinates
+	 * @return the Cell at the given coordinates
+	 * @throws IndexOutOfBoundsException if (x, y) is not on the board
 	 */
 	public Cell getCell(int x, int y) {
-		return this.getBoard().get(y).get(x);
+		if (!inBounds(x, y)) {
+			throw new IndexOutOfBoundsException("no cell at (" + x + ", " + y + ")");
+		}
+		return new Cell(x, y, isAlive(x, y));
 	}
 
 	/**
-	 * update a given with the following rules--
+	 * update a given cell by the rule of the board. Under the default rule,
+	 * Conway's B3/S23:
 	 * 
 	 * Any live cell with fewer than two live neighbours dies, as if caused by
 	 * underpopulation. Any live cell with two or three live neighbours lives on
@@ -277,51 +899,634 @@ public class GameBoard {
 	 */
 
 	public boolean cellUpdate(Cell c) {
-		int countAliveAdjacent = countAliveAdjacent(c);
+		return this.rule.next(c.isAlive(), countAliveAdjacent(c));
+	}
+
+	/**
+	 * update the entire GameBoard, following the rules of cellUpdate for 64
+	 * cells at a time. Only the tiles that changed in the last two steps, or
+	 * that border one, are recomputed, so still lifes and blinkers cost
+	 * nothing. The next generation is written into a preallocated buffer, so
+	 * a step allocates nothing.
+	 */
+	public void updateBoard() {
+		long[] next = this.nextCells;
+		markActiveTiles();
+		Arrays.fill(this.nextChanged, false);
+
+		if (this.pool == null) {
+			stepTileRows(this.cells, next, 0, this.tileRows, this.rowDiff);
+		} else {
+			int bands = this.pool.getParallelism() * BANDS_PER_THREAD;
+			int bandTileRows = Math.max(1, (this.tileRows + bands - 1) / bands);
+			this.pool.invoke(new StepBand(this.cells, next, 0, this.tileRows, bandTileRows));
+		}
+
+		if (this.anyEdited) {
+			for (int tile = 0; tile < this.edited.length; ++tile) {
+				this.nextChanged[tile] |= this.edited[tile];
+			}
+			Arrays.fill(this.edited, false);
+			this.anyEdited = false;
+		}
+
+		this.nextCells = this.cells;
+		this.cells = next;
+		boolean[] changed = this.changed;
+		this.changed = this.nextChanged;
+		this.nextChanged = changed;
+		this.generation += 1;
+		this.version += 1;
+	}
+
+	/**
+	 * number of times the board has been stepped
+	 * 
+	 * @return calls to updateBoard since the board was made, plus the
+	 *         generation it was restored at, if it was restored from a
+	 *         snapshot
+	 */
+	public long generation() {
+		return this.generation;
+	}
+
+	/**
+	 * number of live cells
+	 * 
+	 * @return cells alive in the current generation
+	 */
+	public long population() {
+		long population = 0;
+		for (long word : this.cells) {
+			population += Long.bitCount(word);
+		}
+		return population;
+	}
+
+	/**
+	 * a 64-bit hash of the cells, the same for the same cells, for telling
+	 * generations apart cheaply
+	 * 
+	 * @return hash of the cells of the current generation
+	 */
+	long cellsHash() {
+		long hash = this.cells.length;
+		for (long word : this.cells) {
+			hash = (hash ^ word) * 0x9E3779B97F4A7C15L;
+			hash ^= hash >>> 29;
+		}
+		return hash;
+	}
+
+	/**
+	 * take a copy of the cells of the current generation. The copy never
+	 * changes, so it can be read or written out on any thread while this
+	 * board keeps stepping; take it on the thread that steps the board.
+	 * 
+	 * @return snapshot of the current generation
+	 */
+	public BoardSnapshot snapshot() {
+		return new BoardSnapshot(this.numRows, this.numColumns, this.topology, this.rule, this.generation,
+				this.cells.clone());
+	}
+
+	/**
+	 * copy out the cells as bit-packed words, as laid out in the rep
+	 * 
+	 * @param dst
+	 *            array to copy the words into, requires dst.length >=
+	 *            numRows() * wordsPerRow()
+	 */
+	void getWords(long[] dst) {
+		System.arraycopy(this.cells, 0, dst, 0, this.cells.length);
+	}
+
+	/**
+	 * overwrite cells with bit-packed words, as laid out in the rep
+	 * 
+	 * @param index
+	 *            index of the first word to overwrite, where row y starts at
+	 *            y * wordsPerRow()
+	 * @param words
+	 *            words to copy in, all of its remaining words; requires index +
+	 *            words.remaining() <= numRows() * wordsPerRow()
+	 */
+	void putWords(int index, LongBuffer words) {
+		if (!words.hasRemaining()) {
+			return;
+		}
+		int end = index + words.remaining();
+		words.get(this.cells, index, words.remaining());
+		// clear the padding of every row whose last word was overwritten
+		for (int last = (index / this.wordsPerRow + 1) * this.wordsPerRow - 1; last < end; last += this.wordsPerRow) {
+			this.cells[last] &= this.lastWordMask;
+		}
+		Arrays.fill(this.changed, true);
+		Arrays.fill(this.edited, true);
+		this.anyEdited = true;
+		this.version += 1;
+	}
+
+	/**
+	 * set the number of the current generation, for a board restored from a
+	 * snapshot
+	 * 
+	 * @param generation
+	 *            value for generation() to return
+	 */
+	void setGeneration(long generation) {
+		this.generation = generation;
+	}
+
+	/**
+	 * number of tiles the board is split into for change tracking; a tile is
+	 * 64 x 64 cells, smaller at the bottom and right edges
+	 * 
+	 * @return number of tiles
+	 */
+	public int numTiles() {
+		return this.active.length;
+	}
+
+	/**
+	 * number of tiles recomputed by the last updateBoard
+	 * 
+	 * @return tiles that changed, or bordered a tile that changed, over the
+	 *         two generations before the last step
+	 */
+	public int activeTiles() {
+		return this.activeTiles;
+	}
 
-		if (c.isAlive()) {
-			if (countAliveAdjacent < 2) {
-				return false;
+	/**
+	 * fraction of the board recomputed by the last updateBoard
+	 * 
+	 * @return activeTiles() / numTiles(), or 0 for a board without cells
+	 */
+	public double activeTileFraction() {
+		return this.active.length == 0 ? 0 : (double) this.activeTiles / this.active.length;
+	}
+
+	/**
+	 * helper method to mark every tile that changed, or borders a tile that
+	 * changed, under this board's topology as active
+	 */
+	private void markActiveTiles() {
+		int words = this.wordsPerRow;
+		int count = 0;
+		for (int r = 0; r < this.tileRows; ++r) {
+			boolean rowActive = false;
+			for (int w = 0; w < words; ++w) {
+				boolean isActive = false;
+				for (int dr = -1; dr <= 1 && !isActive; ++dr) {
+					int nr = this.topology.neighbour(r + dr, this.tileRows);
+					for (int dw = -1; dw <= 1 && nr >= 0; ++dw) {
+						int nw = this.topology.neighbour(w + dw, words);
+						if (nw >= 0 && this.changed[nr * words + nw]) {
+							isActive = true;
+							break;
+						}
+					}
+				}
+				this.active[r * words + w] = isActive;
+				rowActive |= isActive;
+				count += isActive ? 1 : 0;
 			}
-			if (countAliveAdjacent == 2 || countAliveAdjacent == 3) {
-				return true;
+			this.tileRowActive[r] = rowActive;
+		}
+		this.activeTiles = count;
+	}
+
+	/**
+	 * helper method to compute the active tiles of tile rows
+	 * [fromTileRow, toTileRow) of the next generation of src into dst,
+	 * marking the ones that differ from what dst held in nextChanged, with
+	 * diff as wordsPerRow words of scratch space for the VECTOR kernel
+	 */
+	private void stepTileRows(long[] src, long[] dst, int fromTileRow, int toTileRow, long[] diff) {
+		int words = this.wordsPerRow;
+		for (int r = fromTileRow; r < toTileRow; ++r) {
+			if (!this.tileRowActive[r]) {
+				continue;
 			}
-			if (countAliveAdjacent > 3) {
-				return false;
+			if (this.kernel == Kernel.VECTOR && words >= VECTOR_MIN_WORDS) {
+				stepTileRowByRows(src, dst, r, diff);
+			} else {
+				for (int w = 0; w < words; ++w) {
+					int tile = r * words + w;
+					if (this.active[tile]) {
+						this.nextChanged[tile] = stepTile(src, dst, r, w);
+					}
+				}
 			}
+		}
+	}
 
-		} else {
-			if (countAliveAdjacent == 3) {
-				return true;
+	/**
+	 * set the loop updateBoard computes the next generation with; every
+	 * kernel gives the same board. A kernel that is not available in this
+	 * JVM falls back to Kernel.SCALAR.
+	 * 
+	 * @param kernel
+	 *            kernel to use from the next step on
+	 */
+	public void setKernel(Kernel kernel) {
+		if (kernel == null) {
+			throw new IllegalArgumentException("kernel must not be null");
+		}
+		this.kernel = kernel.isAvailable() ? kernel : Kernel.SCALAR;
+	}
 
-			}
+	/**
+	 * choose the rule updateBoard and cellUpdate step the board by
+	 * 
+	 * @param rule
+	 *            rule to use from the next step on; Rule.CONWAY by default
+	 */
+	public void setRule(Rule rule) {
+		if (rule == null) {
+			throw new IllegalArgumentException("rule must not be null");
 		}
+		if (!rule.equals(this.rule)) {
+			this.rule = rule;
+			// tiles at rest under the old rule may not be under the new one
+			Arrays.fill(this.changed, true);
+			Arrays.fill(this.edited, true);
+			this.anyEdited = true;
+		}
+	}
 
-		return false;
+	/**
+	 * the rule the board steps by
+	 * 
+	 * @return rule of the board
+	 */
+	public Rule rule() {
+		return this.rule;
+	}
 
+	/**
+	 * the loop updateBoard computes the next generation with
+	 * 
+	 * @return kernel of this board, Kernel.VECTOR if it is available and
+	 *         Kernel.SCALAR otherwise, unless set by setKernel
+	 */
+	public Kernel kernel() {
+		return this.kernel;
 	}
-	
+
 	/**
-	 * update the entire GameBoard
+	 * set how many threads updateBoard uses. With more than one thread the
+	 * board is split into horizontal bands of rows that are stepped in
+	 * parallel on a ForkJoinPool; the result is identical to stepping on one
+	 * thread, but each step then allocates its band tasks.
+	 * 
+	 * @param parallelism
+	 *            number of threads, requires parallelism > 0; 1 steps the board
+	 *            on the thread calling updateBoard
 	 */
-	public void updateBoard() {
-		List<List<Cell>> boardTemp = new ArrayList<>();
-		int rows = this.numRows;
-		int columns = this.numColumns;
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+		}
+		if (this.pool != null) {
+			this.pool.shutdown();
+		}
+		this.pool = parallelism == 1 ? null : new ForkJoinPool(parallelism);
+	}
 
-		for (int i = 0; i < rows; ++i) {
+	/**
+	 * number of threads updateBoard uses
+	 * 
+	 * @return parallelism of this board, as set by setParallelism
+	 */
+	public int parallelism() {
+		return this.pool == null ? 1 : this.pool.getParallelism();
+	}
 
-			List<Cell> rowArray = new ArrayList<Cell>();
+	/**
+	 * a band of tile rows of the next generation, split in halves until it is
+	 * at most bandTileRows tile rows high
+	 */
+	private class StepBand extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long[] src;
+		private final long[] dst;
+		private final int fromTileRow;
+		private final int toTileRow;
+		private final int bandTileRows;
+
+		StepBand(long[] src, long[] dst, int fromTileRow, int toTileRow, int bandTileRows) {
+			this.src = src;
+			this.dst = dst;
+			this.fromTileRow = fromTileRow;
+			this.toTileRow = toTileRow;
+			this.bandTileRows = bandTileRows;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.toTileRow - this.fromTileRow <= this.bandTileRows) {
+				long[] diff = kernel == Kernel.VECTOR ? new long[wordsPerRow] : null;
+				stepTileRows(this.src, this.dst, this.fromTileRow, this.toTileRow, diff);
+			} else {
+				int middle = (this.fromTileRow + this.toTileRow) >>> 1;
+				invokeAll(new StepBand(this.src, this.dst, this.fromTileRow, middle, this.bandTileRows),
+						new StepBand(this.src, this.dst, middle, this.toTileRow, this.bandTileRows));
+			}
+		}
+	}
+
+	/**
+	 * helper method to compute one tile of the next generation of src into
+	 * dst. Each word is stepped with bitwise adders, so all 64 cells of a word
+	 * are counted and updated together; the tile is walked down its rows so
+	 * the neighbouring rows slide through registers. Only the rows and columns
+	 * past the edges depend on the topology, and only the tiles along the
+	 * board's edges ever reach them.
+	 * 
+	 * @return true iff the tile came out different from what dst held, the
+	 *         generation before src
+	 */
+	private boolean stepTile(long[] src, long[] dst, int tileRow, int w) {
+		int words = this.wordsPerRow;
+		int fromRow = tileRow * TILE_ROWS;
+		int toRow = Math.min(fromRow + TILE_ROWS, this.numRows);
+		long mask = w == words - 1 ? this.lastWordMask : -1L;
+		Rule rule = this.rule;
 
-			for (int j = 0; j < columns; ++j) {
-				boolean isAlive = cellUpdate(this.getCell(j, i));
-				if (isAlive) {
+		int aboveRow = this.topology.neighbour(fromRow - 1, this.numRows);
+		long[] aboveSrc = aboveRow < 0 ? this.emptyRow : src;
+		int above = aboveRow < 0 ? 0 : aboveRow * words;
+		long aboveWest = westWord(aboveSrc, above, w);
+		long aboveCur = aboveSrc[above + w];
+		long aboveEast = eastWord(aboveSrc, above, w);
+
+		int here = fromRow * words;
+		long hereWest = westWord(src, here, w);
+		long hereCur = src[here + w];
+		long hereEast = eastWord(src, here, w);
+
+		long diff = 0;
+		int i = fromRow;
+		if (w > 0 && w < words - 1) {
+			// away from the west and east edges the neighbours are plain
+			// shifts of the adjacent words, and away from the bottom edge the
+			// row below is the next row of src
+			int interiorRows = Math.min(toRow, this.numRows - 1);
+			for (; i < interiorRows; ++i, here += words) {
+				int below = here + words + w;
+				long belowCur = src[below];
+				long belowWest = (belowCur << 1) | (src[below - 1] >>> 63);
+				long belowEast = (belowCur >>> 1) | (src[below + 1] << 63);
+
+				long next = stepWord(rule, aboveWest, aboveCur, aboveEast, hereWest, hereCur, hereEast, belowWest,
+						belowCur, belowEast);
+				diff |= next ^ dst[here + w];
+				dst[here + w] = next;
+
+				aboveWest = hereWest;
+				aboveCur = hereCur;
+				aboveEast = hereEast;
+				hereWest = belowWest;
+				hereCur = belowCur;
+				hereEast = belowEast;
+			}
+		}
+		for (; i < toRow; ++i, here += words) {
+			int belowRow = i + 1 < this.numRows ? i + 1 : this.topology.neighbour(i + 1, this.numRows);
+			long[] belowSrc = belowRow < 0 ? this.emptyRow : src;
+			int below = belowRow < 0 ? 0 : belowRow * words;
+			long belowWest = westWord(belowSrc, below, w);
+			long belowCur = belowSrc[below + w];
+			long belowEast = eastWord(belowSrc, below, w);
+
+			long next = mask & stepWord(rule, aboveWest, aboveCur, aboveEast, hereWest, hereCur, hereEast, belowWest,
+					belowCur, belowEast);
+			diff |= next ^ dst[here + w];
+			dst[here + w] = next;
+
+			aboveWest = hereWest;
+			aboveCur = hereCur;
+			aboveEast = hereEast;
+			hereWest = belowWest;
+			hereCur = belowCur;
+			hereEast = belowEast;
+		}
+		return diff != 0;
+	}
+
+	/**
+	 * helper method to compute the active tiles of one tile row of the next
+	 * generation of src into dst. The tiles at the west and east edges are
+	 * stepped by stepTile; the rest a row of cells at a time, by the
+	 * RowStepper of the VECTOR kernel over each run of adjacent active tiles
+	 * and stepRowWords over the words it leaves, gathering which words
+	 * changed in diff.
+	 */
+	private void stepTileRowByRows(long[] src, long[] dst, int tileRow, long[] diff) {
+		int words = this.wordsPerRow;
+		int firstTile = tileRow * words;
+		if (this.active[firstTile]) {
+			this.nextChanged[firstTile] = stepTile(src, dst, tileRow, 0);
+		}
+		if (words > 1 && this.active[firstTile + words - 1]) {
+			this.nextChanged[firstTile + words - 1] = stepTile(src, dst, tileRow, words - 1);
+		}
+		if (words <= 2) {
+			return;
+		}
+
+		int fromRow = tileRow * TILE_ROWS;
+		int toRow = Math.min(fromRow + TILE_ROWS, this.numRows);
+		long[] masks = this.rule == Rule.CONWAY ? null : this.rule.masks();
+		Arrays.fill(diff, 0);
+		for (int i = fromRow; i < toRow; ++i) {
+			int aboveRow = i > 0 ? i - 1 : this.topology.neighbour(i - 1, this.numRows);
+			long[] aboveSrc = aboveRow < 0 ? this.emptyRow : src;
+			int above = aboveRow < 0 ? 0 : aboveRow * words;
+			int belowRow = i + 1 < this.numRows ? i + 1 : this.topology.neighbour(i + 1, this.numRows);
+			long[] belowSrc = belowRow < 0 ? this.emptyRow : src;
+			int below = belowRow < 0 ? 0 : belowRow * words;
+			int here = i * words;
+
+			int w = 1;
+			while (w < words - 1) {
+				if (!this.active[firstTile + w]) {
+					++w;
+					continue;
+				}
+				int end = w + 1;
+				while (end < words - 1 && this.active[firstTile + end]) {
+					++end;
+				}
+				int rest = Kernel.VECTOR_ROWS.step(masks, aboveSrc, above, src, here, belowSrc, below, dst, diff, w,
+						end);
+				if (masks == null) {
+					stepRowWords(aboveSrc, above, src, here, belowSrc, below, dst, diff, rest, end);
+				} else {
+					stepRowWords(this.rule, aboveSrc, above, src, here, belowSrc, below, dst, diff, rest, end);
 				}
-				rowArray.add(new Cell(j, i, isAlive));
+				w = end;
+			}
+		}
+
+		for (int w = 1; w < words - 1; ++w) {
+			if (this.active[firstTile + w]) {
+				this.nextChanged[firstTile + w] = diff[w] != 0;
 			}
-			boardTemp.add(rowArray);
 		}
-		this.board = boardTemp;
+	}
+
+	/**
+	 * helper method to compute words [from, to) of one row of the next
+	 * generation, none of them at the west or east edge, into dst, and OR
+	 * how each word changed into diff
+	 */
+	private static void stepRowWords(long[] aboveSrc, int above, long[] src, int here, long[] belowSrc, int below,
+			long[] dst, long[] diff, int from, int to) {
+		for (int w = from; w < to; ++w) {
+			long aboveCur = aboveSrc[above + w];
+			long hereCur = src[here + w];
+			long belowCur = belowSrc[below + w];
+			long next = stepWord((aboveCur << 1) | (aboveSrc[above + w - 1] >>> 63), aboveCur,
+					(aboveCur >>> 1) | (aboveSrc[above + w + 1] << 63), (hereCur << 1) | (src[here + w - 1] >>> 63),
+					hereCur, (hereCur >>> 1) | (src[here + w + 1] << 63),
+					(belowCur << 1) | (belowSrc[below + w - 1] >>> 63), belowCur,
+					(belowCur >>> 1) | (belowSrc[below + w + 1] << 63));
+			diff[w] |= next ^ dst[here + w];
+			dst[here + w] = next;
+		}
+	}
+
+	/**
+	 * helper method to compute words [from, to) of one row of the next
+	 * generation by a rule other than Conway's, as stepRowWords does for
+	 * Conway's
+	 */
+	private static void stepRowWords(Rule rule, long[] aboveSrc, int above, long[] src, int here, long[] belowSrc,
+			int below, long[] dst, long[] diff, int from, int to) {
+		for (int w = from; w < to; ++w) {
+			long aboveCur = aboveSrc[above + w];
+			long hereCur = src[here + w];
+			long belowCur = belowSrc[below + w];
+			long next = stepWord(rule, (aboveCur << 1) | (aboveSrc[above + w - 1] >>> 63), aboveCur,
+					(aboveCur >>> 1) | (aboveSrc[above + w + 1] << 63), (hereCur << 1) | (src[here + w - 1] >>> 63),
+					hereCur, (hereCur >>> 1) | (src[here + w + 1] << 63),
+					(belowCur << 1) | (belowSrc[below + w - 1] >>> 63), belowCur,
+					(belowCur >>> 1) | (belowSrc[below + w + 1] << 63));
+			diff[w] |= next ^ dst[here + w];
+			dst[here + w] = next;
+		}
+	}
+
+	/**
+	 * helper method to get the west neighbours of the cells of word w of the
+	 * row starting at rowStart, lined up bit for bit with the word
+	 */
+	private long westWord(long[] src, int rowStart, int w) {
+		long prev;
+		if (w > 0) {
+			prev = src[rowStart + w - 1];
+		} else {
+			// the cells past the west edge enter through bit 63 of the word
+			// before the row
+			prev = columnBit(src, rowStart, this.topology.neighbour(-1, this.numColumns)) << 63;
+		}
+		return (src[rowStart + w] << 1) | (prev >>> 63);
+	}
+
+	/**
+	 * helper method to get the east neighbours of the cells of word w of the
+	 * row starting at rowStart, lined up bit for bit with the word
+	 */
+	private long eastWord(long[] src, int rowStart, int w) {
+		long cur = src[rowStart + w];
+		if (w < this.wordsPerRow - 1) {
+			return (cur >>> 1) | (src[rowStart + w + 1] << 63);
+		}
+		// the cells past the east edge sit just after the last column
+		int eastColumn = this.topology.neighbour(this.numColumns, this.numColumns);
+		return (cur >>> 1) | (columnBit(src, rowStart, eastColumn) << ((this.numColumns - 1) & 63));
+	}
+
+	/**
+	 * helper method to read column of the row starting at rowStart as 1 or 0,
+	 * where a negative column is dead
+	 */
+	private static long columnBit(long[] src, int rowStart, int column) {
+		if (column < 0) {
+			return 0;
+		}
+		return (src[rowStart + (column >>> 6)] >>> column) & 1;
+	}
+
+	/**
+	 * helper method to compute the next state of the 64 cells of here, given
+	 * their eight neighbours lined up bit for bit with here
+	 */
+	private static long stepWord(long aboveWest, long above, long aboveEast, long west, long here, long east,
+			long belowWest, long below, long belowEast) {
+
+		// full adders over the row above, the row below and the two
+		// horizontal neighbours, giving a ones bit and carries of weight two
+		long aboveXor = aboveWest ^ above;
+		long aboveOnes = aboveXor ^ aboveEast;
+		long aboveTwos = (aboveWest & above) | (aboveEast & aboveXor);
+		long belowXor = belowWest ^ below;
+		long belowOnes = belowXor ^ belowEast;
+		long belowTwos = (belowWest & below) | (belowEast & belowXor);
+		long sideOnes = west ^ east;
+		long sideTwos = west & east;
+
+		long onesXor = aboveOnes ^ belowOnes;
+		long ones = onesXor ^ sideOnes;
+		long onesCarry = (aboveOnes & belowOnes) | (sideOnes & onesXor);
+
+		// the count is 2 or 3 iff exactly one of the four twos is set
+		long twosXor = aboveTwos ^ belowTwos;
+		long twosSum = twosXor ^ sideTwos;
+		long twosCarry = (aboveTwos & belowTwos) | (sideTwos & twosXor);
+		long exactlyOneTwo = (twosSum ^ onesCarry) & ~twosCarry;
+
+		return exactlyOneTwo & (ones | here);
+	}
+
+	/**
+	 * helper method to compute the next state of the 64 cells of here by a
+	 * rule, as stepWord does for Conway's, counting the neighbours with the
+	 * same adders into four bits
+	 */
+	private static long stepWord(Rule rule, long aboveWest, long above, long aboveEast, long west, long here,
+			long east, long belowWest, long below, long belowEast) {
+		if (rule == Rule.CONWAY) {
+			return stepWord(aboveWest, above, aboveEast, west, here, east, belowWest, below, belowEast);
+		}
+		long aboveXor = aboveWest ^ above;
+		long aboveOnes = aboveXor ^ aboveEast;
+		long aboveTwos = (aboveWest & above) | (aboveEast & aboveXor);
+		long belowXor = belowWest ^ below;
+		long belowOnes = belowXor ^ belowEast;
+		long belowTwos = (belowWest & below) | (belowEast & belowXor);
+		long sideOnes = west ^ east;
+		long sideTwos = west & east;
+
+		long onesXor = aboveOnes ^ belowOnes;
+		long ones = onesXor ^ sideOnes;
+		long onesCarry = (aboveOnes & belowOnes) | (sideOnes & onesXor);
+
+		// the four twos and the carry of the ones, each of weight two
+		long twosXor = aboveTwos ^ belowTwos;
+		long twosSum = twosXor ^ sideTwos;
+		long twosCarry = (aboveTwos & belowTwos) | (sideTwos & twosXor);
+		long twos = twosSum ^ onesCarry;
+		long foursCarry = twosSum & onesCarry;
+		long fours = twosCarry ^ foursCarry;
+		long eights = twosCarry & foursCarry;
+
+		return rule.next(here, ones, twos, fours, eights);
 	}
 
 }
@@ -1,21 +1,36 @@
 
 package gol;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.ArrayList;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.LinkedList;
-import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
 
 /**
  * Multi-player Minesweeper server.
@@ -24,22 +39,70 @@ import java.util.Queue;
  * PS4 instructions: you MUST NOT change the specs of main() or runGameServer(),
  * or the implementation of main().
  */
-public class GameServer {
+public class GameServer implements Closeable {
 
 	/** Default server port. */
 	private static final int DEFAULT_PORT = 4444;
 	/** Default board size. */
 	private static final int DEFAULT_SIZE = 12;
+	/** Default cap on concurrent connections of the thread modes. */
+	private static final int DEFAULT_MAX_CONNECTIONS = 100000;
+	/** Default milliseconds between generations. */
+	private static final long DEFAULT_TICK_MILLIS = 100;
+	/** How long close() waits for connection handlers to finish. */
+	private static final long CLOSE_TIMEOUT_SECONDS = 10;
+	/** Reply to an edit, once it is queued. */
+	private static final byte[] OK = "ok\n".getBytes(StandardCharsets.US_ASCII);
+	/** Reply to help, and to any request that is not understood. */
+	private static final byte[] HELP = "commands: look, watch [binary], produce X Y, kill X Y, stamp X Y RLE, help, bye\n".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * the frames a watching client asked for
+	 */
+	enum Watch {
+
+		/** the view of look() after a line "generation N" */
+		TEXT,
+
+		/** keyframes and deltas of the board's words, as laid out by DeltaFrame */
+		BINARY
+	}
+
+	/**
+	 * how a server handles its client connections
+	 */
+	public enum Mode {
+
+		/** a platform thread per connection, with blocking I/O */
+		THREADS,
+
+		/**
+		 * a virtual thread per connection, with blocking I/O; on a Java
+		 * runtime without virtual threads this falls back to THREADS
+		 */
+		VIRTUAL,
+
+		/** every connection multiplexed over a few selector threads */
+		NIO
+	}
 
 	/** Socket for receiving client connections. */
 	private final ServerSocket serverSocket;
-	private final GameBoard board;
-	private int numConnections; 
+	private final Simulation simulation;
+	private final AtomicInteger numConnections = new AtomicInteger();
+	/** Runs one handler per connection. */
+	private final ExecutorService handlers;
+	/** One permit per connection the server may still take. */
+	private final Semaphore permits;
+	/** Sockets of the connected clients. */
+	private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+	private volatile boolean closed;
 
 	// TODO: Abstraction function, rep invariant, rep exposure
 	
 	/*
-	 * AF(serverSocket, board, numConnections) = a minesweeeper game server with given socket, board and number of players
+	 * AF(serverSocket, simulation, numConnections, sockets) = a minesweeeper game server with given socket, the board
+	 * stepped by simulation and number of players, currently connected to the clients at the other end of sockets
 	 * 
 	 * rep invariant = true
 	 * 
@@ -47,15 +110,17 @@ public class GameServer {
 	 */
 
 	// Thread safety for instance of GameServer
-	// GameServer is thread-safe as all all methods are synchronized and the 2D board makes use of synchronized 
-	// lists. Each Cell within the board is immutable.
+	// The handler threads never touch the board: they read the immutable state the simulation last published, and
+	// queue edits for its tick thread, which applies them between generations. numConnections is atomic and sockets
+	// a concurrent set.
 
 	// Thread safety for system started by main()
-	// main() is thread-safe as it sets up a Queue and the requests are processed sequentially. In addition, it employs GameBoard ADT which 
-	// thread-safe. 
+	// main() hands the board to a Simulation before any client connects, and from then on only its tick thread
+	// touches it.
 
 	/**
-	 * Make a new game server that listens for connections on port.
+	 * Make a new game server that listens for connections on port, with a
+	 * platform thread per connection.
 	 * 
 	 * @param port
 	 *            port number, requires 0 <= port <= 65535
@@ -63,14 +128,83 @@ public class GameServer {
 	 *             if an error occurs opening the server socket
 	 */
 	public GameServer(int port, GameBoard board) throws IOException {
-		serverSocket = new ServerSocket(port);
-		this.board = board;
-		this.numConnections = 0;
+		this(port, board, Mode.THREADS, DEFAULT_MAX_CONNECTIONS);
+	}
+
+	/**
+	 * Make a new game server that listens for connections on port, with a
+	 * thread of the given kind per connection.
+	 * 
+	 * @param port
+	 *            port number, requires 0 <= port <= 65535; 0 picks a free port
+	 * @param board
+	 *            board to serve
+	 * @param mode
+	 *            THREADS or VIRTUAL
+	 * @param maxConnections
+	 *            most clients connected at once, requires maxConnections > 0;
+	 *            further clients wait in the listen backlog until one leaves
+	 * @throws IOException
+	 *             if an error occurs opening the server socket
+	 */
+	public GameServer(int port, GameBoard board, Mode mode, int maxConnections) throws IOException {
+		this(port, new Simulation(board), mode, maxConnections);
+	}
+
+	/**
+	 * Make a new game server of a simulation that listens for connections on
+	 * port, with a thread of the given kind per connection. Clients that
+	 * watch get the simulation's frames.
+	 * 
+	 * @param port
+	 *            port number, requires 0 <= port <= 65535; 0 picks a free port
+	 * @param simulation
+	 *            simulation of the board to serve
+	 * @param mode
+	 *            THREADS or VIRTUAL
+	 * @param maxConnections
+	 *            most clients connected at once, requires maxConnections > 0
+	 * @throws IOException
+	 *             if an error occurs opening the server socket
+	 */
+	public GameServer(int port, Simulation simulation, Mode mode, int maxConnections) throws IOException {
+		if (mode == Mode.NIO) {
+			throw new IllegalArgumentException("NIO mode is served by NioGameServer");
+		}
+		if (maxConnections < 1) {
+			throw new IllegalArgumentException("maxConnections must be positive: " + maxConnections);
+		}
+		this.serverSocket = new ServerSocket(port);
+		this.simulation = simulation;
+		this.handlers = mode == Mode.VIRTUAL ? newVirtualThreadExecutor() : Executors.newCachedThreadPool();
+		this.permits = new Semaphore(maxConnections);
+	}
+
+	/**
+	 * helper method to make an executor starting a virtual thread per task,
+	 * looked up reflectively so the server still runs on Java 8
+	 */
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException roe) {
+			System.err.println("virtual threads are not available, using platform threads");
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	/**
+	 * port the server listens on
+	 * 
+	 * @return local port of the server socket
+	 */
+	public int port() {
+		return this.serverSocket.getLocalPort();
 	}
 
 	/**
 	 * Run the server, listening for and handling client connections. Never
-	 * returns, unless an exception is thrown.
+	 * returns, unless an exception is thrown or the server is closed.
 	 * 
 	 * @throws IOException
 	 *             if an error occurs waiting for a connection (IOExceptions
@@ -81,29 +215,77 @@ public class GameServer {
 		
 		while (true) {
 			
-			// block until a client connects
-			final Socket socket = serverSocket.accept();
-			this.numConnections+=1;
-			// create a new thread to handle that client
-			Thread handler = new Thread(new Runnable() {
+			// block until another client may connect, then until it does
+			this.permits.acquireUninterruptibly();
+			final Socket socket;
+			try {
+				socket = serverSocket.accept();
+			} catch (SocketException se) {
+				this.permits.release();
+				if (this.closed) {
+					return;
+				}
+				throw se;
+			}
+			this.sockets.add(socket);
+			final int players = this.numConnections.incrementAndGet();
+			// hand the client to a thread of its own
+			Runnable handler = new Runnable() {
 				public void run() {
 					try {
 						try {
 							
-							handleConnection(socket);
+							handleConnection(socket, players);
 						} finally {
 							socket.close();
+							sockets.remove(socket);
+							permits.release();
+							simulation.metrics().disconnected();
 						}
 					} catch (IOException ioe) {
 						// this exception wouldn't terminate serve(),
 						// since we're now on a different thread, but
 						// we still need to handle it
-						ioe.printStackTrace();
+						if (!closed) {
+							ioe.printStackTrace();
+						}
 					}
 				}
-			});
-			// start the thread
-			handler.start();
+			};
+			this.simulation.metrics().connected();
+			try {
+				this.handlers.execute(handler);
+			} catch (RejectedExecutionException ree) {
+				this.simulation.metrics().disconnected();
+				// closed since the client connected
+				socket.close();
+				this.sockets.remove(socket);
+				this.permits.release();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Stop accepting connections, disconnect every client, and wait a while
+	 * for their handlers to finish.
+	 * 
+	 * @throws IOException
+	 *             if an error occurs closing the server socket
+	 */
+	@Override
+	public void close() throws IOException {
+		this.closed = true;
+		this.serverSocket.close();
+		// interrupts the handlers waiting for frames
+		this.handlers.shutdownNow();
+		for (Socket socket : this.sockets) {
+			socket.close();
+		}
+		try {
+			this.handlers.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
 		}
 	}
 
@@ -112,24 +294,41 @@ public class GameServer {
 	 * 
 	 * @param socket
 	 *            socket where the client is connected
+	 * @param players
+	 *            number of connections so far, this one included
 	 * @throws IOException
 	 *             if the connection encounters an error or terminates
 	 *             unexpectedly
 	 */
-	private void handleConnection(Socket socket) throws IOException {
+	private void handleConnection(Socket socket, int players) throws IOException {
 		BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-		PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+		OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+		WritableByteChannel outChannel = Channels.newChannel(out);
 		// Welcome message
-		out.println("Welcome to Minesweeper. Players: " + this.numConnections + " including you. Board: " + this.board.numColumns() + " columns by " + this.board.numRows() +  " rows. Type 'help' for help.");
+		out.write(welcome(this.simulation, players).getBytes(StandardCharsets.US_ASCII));
+		out.flush();
 
 		try {
 			for (String line = in.readLine(); line != null; line = in.readLine()) {
 
-				Optional<String> output = handleRequest(line);
+				Optional<Watch> watch = watches(line);
+				if (watch.isPresent()) {
+					this.simulation.metrics().command(Metrics.Command.WATCH, 0);
+					if (watch.get() == Watch.TEXT) {
+						watch(outChannel, out);
+					} else {
+						watchDeltas(outChannel, out);
+					}
+					break;
+				}
+
+				Optional<ByteBuffer> output = respond(this.simulation, line);
 
 				if (output.isPresent()) {
-//					System.out.println(output.get());
-					out.print(output.get());
+					ByteBuffer bytes = output.get();
+					while (bytes.hasRemaining()) {
+						outChannel.write(bytes);
+					}
 					out.flush();
 				}
 				else {
@@ -142,43 +341,184 @@ public class GameServer {
 		}
 	}
 
+	/**
+	 * Send the simulation's frames to a client until it disconnects or the
+	 * server closes. Frames that come while the client is still reading an
+	 * earlier one replace each other, so the client gets the latest.
+	 * 
+	 * @param channel
+	 *            channel writing to out
+	 * @param out
+	 *            stream to the client
+	 * @throws IOException
+	 *             if writing to the client fails
+	 */
+	private void watch(WritableByteChannel channel, OutputStream out) throws IOException {
+		Latest<ByteBuffer> latest = new Latest<>();
+		this.simulation.subscribe(latest);
+		try {
+			while (true) {
+				ByteBuffer frame = latest.take();
+				while (frame.hasRemaining()) {
+					channel.write(frame);
+				}
+				out.flush();
+			}
+		} catch (InterruptedException ie) {
+			// the server is closing
+		} finally {
+			this.simulation.unsubscribe(latest);
+		}
+	}
+
+	/**
+	 * Send the simulation's binary frames to a client until it disconnects
+	 * or the server closes: a keyframe first, then a delta per generation.
+	 * When frames come faster than the client reads them, the ones in
+	 * between are skipped and the next one sent is a keyframe.
+	 * 
+	 * @param channel
+	 *            channel writing to out
+	 * @param out
+	 *            stream to the client
+	 * @throws IOException
+	 *             if writing to the client fails
+	 */
+	private void watchDeltas(WritableByteChannel channel, OutputStream out) throws IOException {
+		Latest<DeltaFrame> latest = new Latest<>();
+		this.simulation.subscribeDeltas(latest);
+		try {
+			long sent = -1;
+			while (true) {
+				DeltaFrame frame = latest.take();
+				ByteBuffer message = frame.after(sent);
+				sent = frame.serial();
+				while (message.hasRemaining()) {
+					channel.write(message);
+				}
+				out.flush();
+			}
+		} catch (InterruptedException ie) {
+			// the server is closing
+		} finally {
+			this.simulation.unsubscribeDeltas(latest);
+		}
+	}
+
+	/**
+	 * a subscriber holding only the latest frame it was sent, for a handler
+	 * thread to take
+	 */
+	private static class Latest<F> implements Simulation.Subscriber<F> {
+
+		private F frame;
+
+		@Override
+		public synchronized void frame(F frame) {
+			this.frame = frame;
+			notifyAll();
+		}
+
+		/**
+		 * wait for a frame newer than the last one taken
+		 */
+		synchronized F take() throws InterruptedException {
+			while (this.frame == null) {
+				wait();
+			}
+			F frame = this.frame;
+			this.frame = null;
+			return frame;
+		}
+	}
+
+	/**
+	 * welcome message sent to a client when it connects
+	 * 
+	 * @param simulation
+	 *            simulation being served
+	 * @param players
+	 *            number of clients that have connected, including this one
+	 * @return welcome line, ending in a newline
+	 */
+	static String welcome(Simulation simulation, int players) {
+		return "Welcome to Minesweeper. Players: " + players + " including you. Board: " + simulation.numColumns()
+				+ " columns by " + simulation.numRows() + " rows. Type 'help' for help.\n";
+	}
+
 	/**
 	 * Handler for client input, performing requested operations and returning
-	 * an output message.
+	 * an output message. Both server modes answer requests here, except
+	 * watch.
 	 * 
+	 * @param simulation
+	 *            simulation being served
 	 * @param input
-	 *            message from client
-	 * @return message to client, or null if none
+	 *            one line from the client, without its line end
+	 * @return message to client as ASCII bytes, or empty if the client said
+	 *         bye; a look reply shares the view the simulation published, so
+	 *         it must only be read
 	 */
-	private Optional<String> handleRequest(String input) {
-		String regex = "(look)|(help)|(bye)|" + "(dig -?\\d+ -?\\d+)|(flag -?\\d+ -?\\d+)|(deflag -?\\d+ -?\\d+)";
-		if (!input.matches(regex)) {
-			// invalid input
-//			return Optional.of(this.board.help());
-		}
+	static Optional<ByteBuffer> respond(Simulation simulation, String input) {
+		long start = System.nanoTime();
 		String[] tokens = input.split(" ");
-		if (tokens[0].equals("look")) {
-			return Optional.of(this.board.look());
+		Optional<ByteBuffer> reply = answer(simulation, tokens);
+		simulation.metrics().command(Metrics.Command.of(tokens.length > 0 ? tokens[0] : ""), System.nanoTime() - start);
+		return reply;
+	}
 
-		} else if (tokens[0].equals("help")) {
-			// 'help' request
-//			return Optional.of(this.board.help());
-		} else if (tokens[0].equals("bye")) {
+	/**
+	 * helper method to answer a request split into words, as respond
+	 */
+	private static Optional<ByteBuffer> answer(Simulation simulation, String[] tokens) {
+		if (tokens.length > 0 && tokens[0].equals("look")) {
+			return Optional.of(simulation.view());
+		} else if (tokens.length > 0 && tokens[0].equals("bye")) {
 			return Optional.empty();
-//		} else {
-//			int x = Integer.parseInt(tokens[1]);
-//			int y = Integer.parseInt(tokens[2]);
-//			if (tokens[0].equals("dig")) {
-//				return Optional.of(this.board.dig(x, y));
-//			} else if (tokens[0].equals("flag")) {
-//				return Optional.of(this.board.flag(x, y));
-//
-//			} else if (tokens[0].equals("deflag")) {
-//				return Optional.of(this.board.deflag(x, y));
-//			}
+		} else if (tokens.length == 3 && (tokens[0].equals("produce") || tokens[0].equals("kill"))) {
+			try {
+				int x = Integer.parseInt(tokens[1]);
+				int y = Integer.parseInt(tokens[2]);
+				if (tokens[0].equals("produce")) {
+					simulation.produce(x, y);
+				} else {
+					simulation.kill(x, y);
+				}
+				return Optional.of(ByteBuffer.wrap(OK).asReadOnlyBuffer());
+			} catch (NumberFormatException nfe) {
+				// invalid input
+			}
+		} else if (tokens.length == 4 && tokens[0].equals("stamp")) {
+			try {
+				int x = Integer.parseInt(tokens[1]);
+				int y = Integer.parseInt(tokens[2]);
+				simulation.stamp(BoardLoader.pattern(tokens[3], simulation.numColumns(), simulation.numRows()), x, y);
+				return Optional.of(ByteBuffer.wrap(OK).asReadOnlyBuffer());
+			} catch (NumberFormatException | IOException e) {
+				// invalid input
+			}
 		}
+		// 'help' request, or invalid input
+		return Optional.of(ByteBuffer.wrap(HELP).asReadOnlyBuffer());
+	}
 
-		throw new UnsupportedOperationException();
+	/**
+	 * whether a line of client input asks to watch the simulation; from then
+	 * on the client is sent a frame per generation and its input is ignored
+	 * 
+	 * @param input
+	 *            one line from the client, without its line end
+	 * @return the frames asked for, "watch" for TEXT and "watch binary" for
+	 *         BINARY, or empty if input is not a watch request
+	 */
+	static Optional<Watch> watches(String input) {
+		String[] tokens = input.split(" ");
+		if (tokens.length == 1 && tokens[0].equals("watch")) {
+			return Optional.of(Watch.TEXT);
+		} else if (tokens.length == 2 && tokens[0].equals("watch") && tokens[1].equals("binary")) {
+			return Optional.of(Watch.BINARY);
+		}
+		return Optional.empty();
 	}
 
 	/**
@@ -188,7 +528,9 @@ public class GameServer {
 	 * Usage:
 	 * 
 	 * <pre>
-	 *      minesweeper.GameServer [--port PORT] [--size SIZE_X,SIZE_Y | --file FILE]
+	 *      minesweeper.GameServer [--port PORT] [--size SIZE_X,SIZE_Y | --file FILE] [--mode MODE]
+	 *                             [--max-connections N] [--tick MILLIS] [--rule RULE]
+	 *                             [--metrics-port METRICS_PORT] [--seed SEED] [--density DENSITY]
 	 * </pre>
 	 * 
 	 * <p>
@@ -226,7 +568,9 @@ public class GameServer {
 	 * </pre>
 	 * 
 	 * The file must contain Y LINEs where each LINE contains X VALUEs. 1
-	 * indicates a bomb, 0 indicates no bomb.
+	 * indicates a live cell, 0 a dead one. X and Y may also be on lines of
+	 * their own, as in src/board. Seeds in RLE or in the binary format of
+	 * BoardLoader are accepted as well, told apart by their first bytes.
 	 * 
 	 * <p>
 	 * If neither --file nor --size is given, generate a random board of size 12
@@ -235,6 +579,40 @@ public class GameServer {
 	 * <p>
 	 * Note that --file and --size may not be specified simultaneously.
 	 * 
+	 * <p>
+	 * MODE is an optional argument, "nio", "threads" or "virtual", specifying
+	 * how client connections are handled: multiplexed over a few selector
+	 * threads by NioGameServer, with a platform thread per connection, or with
+	 * a virtual thread per connection where the Java runtime has them. By
+	 * default it is nio.
+	 * 
+	 * <p>
+	 * N is an optional positive integer capping how many clients the threads
+	 * and virtual modes serve at once; by default it is 100000.
+	 * 
+	 * <p>
+	 * MILLIS is an optional non-negative integer, the milliseconds between
+	 * the generations the server steps the board through; clients that send
+	 * "watch" get a frame per generation. By default it is 100; 0 leaves the
+	 * board as it is.
+	 * 
+	 * <p>
+	 * RULE is an optional rule in B/S notation, such as B36/S23 for HighLife,
+	 * that the board steps by. By default it is the rule of an RLE FILE, or
+	 * B3/S23.
+	 * 
+	 * <p>
+	 * METRICS_PORT is an optional integer in the range 0 to 65535 inclusive;
+	 * if given, the server's metrics are served as text at
+	 * http://localhost:METRICS_PORT/metrics. They are always registered with
+	 * JMX, as gol:type=Metrics,name="server".
+	 * 
+	 * <p>
+	 * SEED is an optional integer seeding a random board, so the same SEED
+	 * and size start the same board; without it a random seed is drawn and
+	 * printed. DENSITY is the probability of each cell of a random board
+	 * being alive, between 0 and 1, by default 0.25.
+	 * 
 	 * @param args
 	 *            arguments as described
 	 */
@@ -243,6 +621,13 @@ public class GameServer {
 		int sizeX = DEFAULT_SIZE;
 		int sizeY = DEFAULT_SIZE;
 		Optional<File> file = Optional.empty();
+		Mode mode = Mode.NIO;
+		int maxConnections = DEFAULT_MAX_CONNECTIONS;
+		long tickMillis = DEFAULT_TICK_MILLIS;
+		Optional<Rule> rule = Optional.empty();
+		Optional<Integer> metricsPort = Optional.empty();
+		Optional<Long> seed = Optional.empty();
+		double density = GameBoard.DEFAULT_DENSITY;
 
 		Queue<String> arguments = new LinkedList<>(Arrays.asList(args));
 		try {
@@ -263,6 +648,38 @@ public class GameServer {
 						if (!file.get().isFile()) {
 							throw new IllegalArgumentException("file not found: \"" + file.get() + "\"");
 						}
+					} else if (flag.equals("--mode")) {
+						String name = arguments.remove();
+						if (name.equals("nio")) {
+							mode = Mode.NIO;
+						} else if (name.equals("threads")) {
+							mode = Mode.THREADS;
+						} else if (name.equals("virtual")) {
+							mode = Mode.VIRTUAL;
+						} else {
+							throw new IllegalArgumentException("unknown mode: \"" + name + "\"");
+						}
+					} else if (flag.equals("--max-connections")) {
+						maxConnections = Integer.parseInt(arguments.remove());
+						if (maxConnections < 1) {
+							throw new IllegalArgumentException("--max-connections must be positive");
+						}
+					} else if (flag.equals("--tick")) {
+						tickMillis = Long.parseLong(arguments.remove());
+						if (tickMillis < 0) {
+							throw new IllegalArgumentException("--tick must not be negative");
+						}
+					} else if (flag.equals("--rule")) {
+						rule = Optional.of(Rule.parse(arguments.remove()));
+					} else if (flag.equals("--metrics-port")) {
+						metricsPort = Optional.of(Integer.parseInt(arguments.remove()));
+					} else if (flag.equals("--seed")) {
+						seed = Optional.of(Long.parseLong(arguments.remove()));
+					} else if (flag.equals("--density")) {
+						density = Double.parseDouble(arguments.remove());
+						if (!(density >= 0 && density <= 1)) {
+							throw new IllegalArgumentException("--density must be between 0 and 1");
+						}
 					} else {
 						throw new IllegalArgumentException("unknown option: \"" + flag + "\"");
 					}
@@ -274,46 +691,21 @@ public class GameServer {
 			}
 		} catch (IllegalArgumentException iae) {
 			System.err.println(iae.getMessage());
-			System.err.println("usage: GameServer [--port PORT] [--size SIZE_X,SIZE_Y | --file FILE]");
+			System.err.println("usage: GameServer [--port PORT] [--size SIZE_X,SIZE_Y | --file FILE] [--mode MODE] "
+					+ "[--max-connections N] [--tick MILLIS] [--rule RULE] [--metrics-port METRICS_PORT] "
+					+ "[--seed SEED] [--density DENSITY]");
 			return;
 		}
 
 		try {
-			runGameServer(file, sizeX, sizeY, port);
+			runGameServer(file, sizeX, sizeY, port, mode, maxConnections, tickMillis, rule, metricsPort, seed,
+					density);
 
 		} catch (IOException ioe) {
 			throw new RuntimeException(ioe);
 		}
 	}
 
-	public static List<String> processFile(File f) {
-		String text = "";
-		String thisLine = "";
-
-		try {
-			FileReader fr = new FileReader(f);
-			BufferedReader br = new BufferedReader(fr);
-
-			while ((thisLine = br.readLine()) != null) {
-				text += thisLine;
-			}
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
-		
-
-		List<String> data = new ArrayList<>();
-
-		text = text.replaceAll("\\s", "");
-
-		for (int i = 0; i < text.length(); ++i) {
-			data.add(text.substring(i, i + 1));
-		}
-
-		return data;
-
-	}
-
 	/**
 	 * Start a new GameServer running on the specified port, with either a
 	 * random new board or a board loaded from a file.
@@ -332,49 +724,114 @@ public class GameServer {
 	 *            the network port on which the server should listen, requires 0
 	 *            <= port <= 65535
 	 * @throws IOException
-	 *             if a network error occurs
+	 *             if a network error occurs, or the file cannot be loaded
 	 */
 	public static void runGameServer(Optional<File> file, int sizeX, int sizeY, int port) throws IOException {
+		runGameServer(file, sizeX, sizeY, port, Mode.NIO, DEFAULT_MAX_CONNECTIONS, DEFAULT_TICK_MILLIS,
+				Optional.<Rule>empty(), Optional.<Integer>empty(), Optional.<Long>empty(), GameBoard.DEFAULT_DENSITY);
+	}
 
-
+	/**
+	 * Start a new server running on the specified port, with either a random
+	 * new board or a board loaded from a file, handling connections in the
+	 * given mode. The server is closed when the JVM shuts down.
+	 * 
+	 * @param file
+	 *            as for runGameServer(file, sizeX, sizeY, port)
+	 * @param sizeX
+	 *            as for runGameServer(file, sizeX, sizeY, port)
+	 * @param sizeY
+	 *            as for runGameServer(file, sizeX, sizeY, port)
+	 * @param port
+	 *            as for runGameServer(file, sizeX, sizeY, port)
+	 * @param mode
+	 *            how to handle client connections
+	 * @param maxConnections
+	 *            most clients served at once in the thread modes, requires
+	 *            maxConnections > 0
+	 * @param tickMillis
+	 *            milliseconds between generations, or 0 to not step the board
+	 * @param rule
+	 *            if rule.isPresent(), the rule to step the board by, instead of
+	 *            the rule of the file or B3/S23
+	 * @param metricsPort
+	 *            if metricsPort.isPresent(), the loopback port to serve the
+	 *            metrics on as text, as by MetricsEndpoint
+	 * @param seed
+	 *            if seed.isPresent(), the seed of a random board, which is
+	 *            otherwise drawn at random and printed to standard error
+	 * @param density
+	 *            probability of each cell of a random board being alive,
+	 *            requires 0 <= density <= 1
+	 * @throws IOException
+	 *             if a network error occurs, or the file cannot be loaded
+	 */
+	public static void runGameServer(Optional<File> file, int sizeX, int sizeY, int port, Mode mode,
+			int maxConnections, long tickMillis, Optional<Rule> rule, Optional<Integer> metricsPort,
+			Optional<Long> seed, double density) throws IOException {
 
 		GameBoard board;
 
 		if (file.isPresent()) {
 
-			List<String> fileMapping = processFile(file.get());
-			int col = Integer.parseInt(fileMapping.get(0));
-			int rows = Integer.parseInt(fileMapping.get(1));
-			board = new GameBoard(rows, col, false);
+			board = BoardLoader.load(file.get());
 
-			int count = 2;
-			for (int i = 0; i < rows; ++i) {
-				for (int j = 0; j < col; ++j) {
-
-					int isAlive= Integer.parseInt(fileMapping.get(count));
-
-					count += 1;
+		}
 
-					if (isAlive== 1) {
-						board.getBoard().get(i).set(j, new Cell(j, i, true));
-					}
-				}
+		else {
+			if (!seed.isPresent()) {
+				seed = Optional.of(ThreadLocalRandom.current().nextLong());
+				System.err.println("random board seed " + seed.get());
+			}
+			if (sizeX > 0 && sizeY > 0) {
+				board = new GameBoard(sizeY, sizeX, Topology.DEAD, density, seed.get());
+			} else {
+				board = new GameBoard(DEFAULT_SIZE, DEFAULT_SIZE, Topology.DEAD, density, seed.get());
 			}
-
+		}
+		if (rule.isPresent()) {
+			board.setRule(rule.get());
 		}
 
-		else if (sizeX > 0 && sizeY > 0) {
-
-			board = new GameBoard(sizeY, sizeX, true);
-
+		Simulation simulation = new Simulation(board);
+		if (tickMillis > 0) {
+			simulation.start(tickMillis);
+		}
+		closeOnShutdown(simulation);
+		try {
+			simulation.metrics().register("server");
+		} catch (JMException jme) {
+			System.err.println("metrics not registered with JMX: " + jme.getMessage());
+		}
+		if (metricsPort.isPresent()) {
+			closeOnShutdown(new MetricsEndpoint(simulation.metrics(), metricsPort.get()));
 		}
 
-		else {
-			board = new GameBoard(DEFAULT_SIZE, DEFAULT_SIZE, true);
+		if (mode == Mode.NIO) {
+			NioGameServer server = new NioGameServer(port, simulation, Runtime.getRuntime().availableProcessors());
+			closeOnShutdown(server);
+			server.serve();
+		} else {
+			GameServer server = new GameServer(port, simulation, mode, maxConnections);
+			closeOnShutdown(server);
+			server.serve();
 		}
 
-		GameServer server = new GameServer(port, board);
-		server.serve();
+	}
 
+	/**
+	 * helper method to close a server when the JVM shuts down, so its clients
+	 * are disconnected cleanly
+	 */
+	private static void closeOnShutdown(final Closeable server) {
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			public void run() {
+				try {
+					server.close();
+				} catch (IOException ioe) {
+					ioe.printStackTrace();
+				}
+			}
+		}));
 	}
 }
@@ -0,0 +1,624 @@
+package gol;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+
+/**
+ * an append-only file of the generations of a GameBoard, for looking back at
+ * what the board was at any recorded generation. Every generation is stored
+ * as a keyframe, the whole board deflated, or as a delta, the deflated XOR
+ * against the generation before it.
+ * 
+ * <p>
+ * Reading a generation replays the deltas after the keyframe before it, so
+ * the work is bounded: a keyframe is written at least every
+ * keyframeInterval() generations, and also as soon as the deltas since the
+ * last keyframe add up to more bytes than it, so a replay reads at most
+ * keyframeInterval() - 1 deltas and about two keyframes' worth of bytes. The
+ * bytes written and the cost of the last replay are reported by
+ * bytesWritten(), bytesPerGeneration(), lastReplayDeltas(),
+ * lastReplayBytes() and lastReplayNanos().
+ * 
+ * <p>
+ * The file is a 28 byte header, then one record per generation, all big
+ * endian:
+ * 
+ * <pre>
+ *      HEADER ::= "GOLJ" VERSION:int ROWS:int COLUMNS:int TOPOLOGY:byte 0:byte{3} KEYFRAME_INTERVAL:int
+ *                 BIRTH:short SURVIVAL:short
+ *      RECORD ::= TYPE:byte GENERATION:long LENGTH:int CRC32:int PAYLOAD:byte{LENGTH}
+ * </pre>
+ * 
+ * BIRTH and SURVIVAL are the masks of the rule the board steps by, as
+ * Rule.birth() and Rule.survival(). TYPE is 0 for a keyframe and 1 for a
+ * delta, and PAYLOAD is the board's
+ * words deflated by WordCodec. Records are not forced to disk one by one;
+ * after a crash the last records may be lost or torn, and open drops the
+ * records from the first one that is cut short or fails its checksum.
+ * 
+ * <p>
+ * A journal is thread-safe: one thread may record while others read.
+ */
+public class GenerationJournal implements Closeable {
+
+	/** keyframe interval of journals made by create without one */
+	public static final int DEFAULT_KEYFRAME_INTERVAL = 64;
+
+	/** "GOLJ" in ASCII */
+	private static final int MAGIC = 0x474F4C4A;
+	private static final int VERSION = 2;
+	private static final int HEADER_BYTES = 28;
+	private static final int RECORD_HEADER_BYTES = 17;
+	private static final byte KEYFRAME = 0;
+	private static final byte DELTA = 1;
+
+	private final FileChannel channel;
+	private final int numRows;
+	private final int numColumns;
+	private final Topology topology;
+	private final Rule rule;
+	private final int keyframeInterval;
+	private final int wordCount;
+	private final WordCodec codec = new WordCodec();
+	private final CRC32 crc = new CRC32();
+	private final ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+	private byte[] readBuffer = new byte[64];
+
+	private long firstGeneration;
+	private int size;
+	private long[] offsets = new long[16];
+	private boolean[] keyframes = new boolean[16];
+	private long end;
+	private long lastKeyframeGeneration;
+	private long lastKeyframeBytes;
+	private long deltaBytesSinceKeyframe;
+	private long[] previous;
+	private long[] current;
+
+	private int lastReplayDeltas;
+	private long lastReplayBytes;
+	private long lastReplayNanos;
+
+	/*
+	 * AF(channel, firstGeneration, size, ...) = the generations
+	 * firstGeneration .. firstGeneration + size - 1 of a numRows by numColumns
+	 * board with the given topology and rule, generation firstGeneration + i stored in
+	 * the record at offsets[i] of the file, a keyframe iff keyframes[i]
+	 * 
+	 * rep invariant: size >= 1, keyframes[0], the records fill the file from
+	 * HEADER_BYTES to end, lastKeyframeGeneration is the generation of the
+	 * last keyframe, lastKeyframeBytes its payload length, and
+	 * deltaBytesSinceKeyframe the payload length of the deltas after it;
+	 * previous is null or holds the words of the last generation, and current
+	 * is null or scratch space of wordCount words
+	 */
+
+	/**
+	 * helper constructor for create and open
+	 */
+	private GenerationJournal(FileChannel channel, int rows, int columns, Topology topology, Rule rule,
+			int keyframeInterval) {
+		this.channel = channel;
+		this.numRows = rows;
+		this.numColumns = columns;
+		this.topology = topology;
+		this.rule = rule;
+		this.keyframeInterval = keyframeInterval;
+		this.wordCount = rows * ((columns + 63) >>> 6);
+	}
+
+	/**
+	 * start a new journal with keyframes at least every
+	 * DEFAULT_KEYFRAME_INTERVAL generations, with the board's current
+	 * generation as its first record
+	 * 
+	 * @param file
+	 *            file to write the journal to, replaced if it exists
+	 * @param board
+	 *            board whose generations will be recorded
+	 * @return the journal, open for recording and reading
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public static GenerationJournal create(File file, GameBoard board) throws IOException {
+		return create(file, board, DEFAULT_KEYFRAME_INTERVAL);
+	}
+
+	/**
+	 * start a new journal, with the board's current generation as its first
+	 * record
+	 * 
+	 * @param file
+	 *            file to write the journal to, replaced if it exists
+	 * @param board
+	 *            board whose generations will be recorded
+	 * @param keyframeInterval
+	 *            most generations between keyframes, requires
+	 *            keyframeInterval > 0
+	 * @return the journal, open for recording and reading
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public static GenerationJournal create(File file, GameBoard board, int keyframeInterval) throws IOException {
+		if (keyframeInterval < 1) {
+			throw new IllegalArgumentException("keyframe interval must be positive: " + keyframeInterval);
+		}
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		GenerationJournal journal = new GenerationJournal(channel, board.numRows(), board.numColumns(),
+				board.topology(), board.rule(), keyframeInterval);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			header.putInt(MAGIC).putInt(VERSION).putInt(board.numRows()).putInt(board.numColumns());
+			header.put((byte) board.topology().ordinal()).put(new byte[3]).putInt(keyframeInterval);
+			header.putShort((short) board.rule().birth()).putShort((short) board.rule().survival());
+			header.flip();
+			journal.write(header, 0);
+			journal.end = HEADER_BYTES;
+			journal.firstGeneration = board.generation();
+			journal.previous = new long[journal.wordCount];
+			journal.current = new long[journal.wordCount];
+			board.getWords(journal.current);
+			journal.append(KEYFRAME, board.generation(), journal.codec.deflate(journal.current, null));
+			journal.swap();
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			journal.codec.close();
+			throw e;
+		}
+		return journal;
+	}
+
+	/**
+	 * open an existing journal, to read it or to record more generations
+	 * 
+	 * @param file
+	 *            journal written by create and record
+	 * @return the journal, open for recording and reading
+	 * @throws IOException
+	 *             if the file cannot be read or is not a journal
+	 */
+	public static GenerationJournal open(File file) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			if (channel.size() < HEADER_BYTES) {
+				throw new IOException("not a journal: " + file);
+			}
+			readFully(channel, header, 0);
+			header.flip();
+			if (header.getInt() != MAGIC) {
+				throw new IOException("not a journal: " + file);
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw new IOException("unsupported journal version " + version + ": " + file);
+			}
+			int rows = header.getInt();
+			int columns = header.getInt();
+			int topology = header.get();
+			header.position(header.position() + 3);
+			int keyframeInterval = header.getInt();
+			short birth = header.getShort();
+			short survival = header.getShort();
+			if (rows < 0 || columns < 0 || (long) rows * ((columns + 63) >>> 6) > Integer.MAX_VALUE - 8
+					|| topology < 0 || topology >= Topology.values().length || keyframeInterval < 1) {
+				throw new IOException("corrupt journal header: " + file);
+			}
+			Rule rule;
+			try {
+				rule = Rule.of(birth & 0xFFFF, survival & 0xFFFF);
+			} catch (IllegalArgumentException iae) {
+				throw new IOException("unsupported rule in journal: " + file, iae);
+			}
+			GenerationJournal journal = new GenerationJournal(channel, rows, columns, Topology.values()[topology],
+					rule, keyframeInterval);
+			try {
+				journal.scan(file);
+			} catch (IOException | RuntimeException e) {
+				journal.codec.close();
+				throw e;
+			}
+			return journal;
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * helper method to index the records of an opened journal, dropping the
+	 * records from the first torn one on: one that runs past the end of the
+	 * file or whose payload does not match its checksum
+	 */
+	private void scan(File file) throws IOException {
+		ByteBuffer header = this.recordHeader;
+		long fileSize = this.channel.size();
+		long position = HEADER_BYTES;
+		while (position + RECORD_HEADER_BYTES <= fileSize) {
+			header.clear();
+			readFully(this.channel, header, position);
+			header.flip();
+			byte type = header.get();
+			long generation = header.getLong();
+			int length = header.getInt();
+			int checksum = header.getInt();
+			if (length < 0 || position + RECORD_HEADER_BYTES + length > fileSize
+					|| !readPayload(position, length, checksum)) {
+				break;
+			}
+			if ((type != KEYFRAME && type != DELTA) || (this.size == 0 && type != KEYFRAME)
+					|| (this.size > 0 && generation != this.firstGeneration + this.size)) {
+				throw new IOException("corrupt journal record at byte " + position + ": " + file);
+			}
+			if (this.size == 0) {
+				this.firstGeneration = generation;
+			}
+			index(type, position);
+			if (type == KEYFRAME) {
+				this.lastKeyframeGeneration = generation;
+				this.lastKeyframeBytes = length;
+				this.deltaBytesSinceKeyframe = 0;
+			} else {
+				this.deltaBytesSinceKeyframe += length;
+			}
+			position += RECORD_HEADER_BYTES + length;
+		}
+		if (this.size == 0) {
+			throw new IOException("journal has no records: " + file);
+		}
+		this.end = position;
+		this.channel.truncate(position);
+	}
+
+	/**
+	 * record the board's current generation, which must be the one after the
+	 * last recorded generation
+	 * 
+	 * @param board
+	 *            board with the same size, topology and rule as the journal,
+	 *            at generation lastGeneration() + 1
+	 * @throws IOException
+	 *             if the record cannot be written
+	 */
+	public synchronized void record(GameBoard board) throws IOException {
+		long generation = board.generation();
+		if (board.numRows() != this.numRows || board.numColumns() != this.numColumns
+				|| board.topology() != this.topology || !board.rule().equals(this.rule)) {
+			throw new IllegalArgumentException("board does not match the journal");
+		}
+		if (generation != lastGeneration() + 1) {
+			throw new IllegalArgumentException(
+					"expected generation " + (lastGeneration() + 1) + ", got generation " + generation);
+		}
+		if (this.previous == null) {
+			this.previous = wordsAt(lastGeneration());
+			this.current = new long[this.wordCount];
+		}
+
+		board.getWords(this.current);
+		byte type = DELTA;
+		int length = 0;
+		if (generation - this.lastKeyframeGeneration < this.keyframeInterval) {
+			length = this.codec.deflate(this.current, this.previous);
+		}
+		if (generation - this.lastKeyframeGeneration >= this.keyframeInterval
+				|| this.deltaBytesSinceKeyframe + length > this.lastKeyframeBytes) {
+			type = KEYFRAME;
+			length = this.codec.deflate(this.current, null);
+		}
+		append(type, generation, length);
+		swap();
+	}
+
+	/**
+	 * helper method to append a record holding the codec's output
+	 */
+	private void append(byte type, long generation, int length) throws IOException {
+		byte[] payload = this.codec.output();
+		this.crc.reset();
+		this.crc.update(payload, 0, length);
+		ByteBuffer header = this.recordHeader;
+		header.clear();
+		header.put(type).putLong(generation).putInt(length).putInt((int) this.crc.getValue());
+		header.flip();
+		write(header, this.end);
+		write(ByteBuffer.wrap(payload, 0, length), this.end + RECORD_HEADER_BYTES);
+
+		index(type, this.end);
+		this.end += RECORD_HEADER_BYTES + length;
+		if (type == KEYFRAME) {
+			this.lastKeyframeGeneration = generation;
+			this.lastKeyframeBytes = length;
+			this.deltaBytesSinceKeyframe = 0;
+		} else {
+			this.deltaBytesSinceKeyframe += length;
+		}
+	}
+
+	/**
+	 * helper method to add a record at the given offset to the index
+	 */
+	private void index(byte type, long offset) {
+		if (this.size == this.offsets.length) {
+			this.offsets = Arrays.copyOf(this.offsets, 2 * this.size);
+			this.keyframes = Arrays.copyOf(this.keyframes, 2 * this.size);
+		}
+		this.offsets[this.size] = offset;
+		this.keyframes[this.size] = type == KEYFRAME;
+		this.size += 1;
+	}
+
+	/**
+	 * helper method to make the words just recorded the previous generation
+	 */
+	private void swap() {
+		long[] words = this.previous;
+		this.previous = this.current;
+		this.current = words;
+	}
+
+	/**
+	 * first generation in the journal
+	 * 
+	 * @return generation of the board when the journal was created
+	 */
+	public synchronized long firstGeneration() {
+		return this.firstGeneration;
+	}
+
+	/**
+	 * last generation in the journal
+	 * 
+	 * @return generation of the last record
+	 */
+	public synchronized long lastGeneration() {
+		return this.firstGeneration + this.size - 1;
+	}
+
+	/**
+	 * most generations between keyframes
+	 * 
+	 * @return keyframe interval the journal was created with
+	 */
+	public int keyframeInterval() {
+		return this.keyframeInterval;
+	}
+
+	/**
+	 * rule the recorded board steps by
+	 * 
+	 * @return rule of the board the journal was created for
+	 */
+	public Rule rule() {
+		return this.rule;
+	}
+
+	/**
+	 * number of keyframes in the journal
+	 * 
+	 * @return keyframes among the records
+	 */
+	public synchronized int keyframes() {
+		int count = 0;
+		for (int i = 0; i < this.size; ++i) {
+			count += this.keyframes[i] ? 1 : 0;
+		}
+		return count;
+	}
+
+	/**
+	 * size of the journal on disk
+	 * 
+	 * @return bytes of the file, header and records
+	 */
+	public synchronized long bytesWritten() {
+		return this.end;
+	}
+
+	/**
+	 * average disk bandwidth per recorded generation
+	 * 
+	 * @return bytesWritten() / number of recorded generations
+	 */
+	public synchronized double bytesPerGeneration() {
+		return (double) this.end / this.size;
+	}
+
+	/**
+	 * make a board as it was at a recorded generation, by reading the
+	 * keyframe at or before it and replaying the deltas after that
+	 * 
+	 * @param generation
+	 *            generation to look at, requires firstGeneration() <=
+	 *            generation <= lastGeneration()
+	 * @return new board at that generation, stepping by rule()
+	 * @throws IOException
+	 *             if the journal cannot be read or is corrupt
+	 */
+	public synchronized GameBoard boardAt(long generation) throws IOException {
+		GameBoard board = new GameBoard(this.numRows, this.numColumns, false, this.topology);
+		board.setRule(this.rule);
+		board.putWords(0, LongBuffer.wrap(wordsAt(generation)));
+		board.setGeneration(generation);
+		return board;
+	}
+
+	/**
+	 * helper method to replay the words of a recorded generation
+	 */
+	private long[] wordsAt(long generation) throws IOException {
+		if (generation < this.firstGeneration || generation > lastGeneration()) {
+			throw new IllegalArgumentException("generation " + generation + " is not in the journal, which holds "
+					+ this.firstGeneration + " to " + lastGeneration());
+		}
+		long start = System.nanoTime();
+		int target = (int) (generation - this.firstGeneration);
+		int keyframe = target;
+		while (!this.keyframes[keyframe]) {
+			--keyframe;
+		}
+
+		long[] words = new long[this.wordCount];
+		long bytes = 0;
+		for (int i = keyframe; i <= target; ++i) {
+			bytes += readRecord(i, words);
+		}
+		this.lastReplayDeltas = target - keyframe;
+		this.lastReplayBytes = bytes;
+		this.lastReplayNanos = System.nanoTime() - start;
+		return words;
+	}
+
+	/**
+	 * helper method to read record i into words, overwriting them for a
+	 * keyframe and XORing into them for a delta; returns the bytes read
+	 */
+	private int readRecord(int i, long[] words) throws IOException {
+		ByteBuffer header = this.recordHeader;
+		header.clear();
+		readFully(this.channel, header, this.offsets[i]);
+		header.flip();
+		header.get();
+		header.getLong();
+		int length = header.getInt();
+		int checksum = header.getInt();
+		if (!readPayload(this.offsets[i], length, checksum)) {
+			throw new IOException("checksum mismatch in journal record of generation " + (this.firstGeneration + i));
+		}
+		try {
+			this.codec.inflate(this.readBuffer, 0, length, words, !this.keyframes[i]);
+		} catch (DataFormatException dfe) {
+			throw new IOException("corrupt journal record of generation " + (this.firstGeneration + i), dfe);
+		}
+		return RECORD_HEADER_BYTES + length;
+	}
+
+	/**
+	 * helper method to read the payload of the record at the given offset
+	 * into readBuffer; returns true iff it matches the checksum
+	 */
+	private boolean readPayload(long offset, int length, int checksum) throws IOException {
+		if (this.readBuffer.length < length) {
+			this.readBuffer = new byte[Math.max(length, 2 * this.readBuffer.length)];
+		}
+		readFully(this.channel, ByteBuffer.wrap(this.readBuffer, 0, length), offset + RECORD_HEADER_BYTES);
+		this.crc.reset();
+		this.crc.update(this.readBuffer, 0, length);
+		return (int) this.crc.getValue() == checksum;
+	}
+
+	/**
+	 * number of deltas the last boardAt replayed after its keyframe
+	 * 
+	 * @return deltas replayed, at most keyframeInterval() - 1
+	 */
+	public synchronized int lastReplayDeltas() {
+		return this.lastReplayDeltas;
+	}
+
+	/**
+	 * number of bytes the last boardAt read
+	 * 
+	 * @return bytes of the keyframe and deltas it read
+	 */
+	public synchronized long lastReplayBytes() {
+		return this.lastReplayBytes;
+	}
+
+	/**
+	 * time the last boardAt took to read and replay its records
+	 * 
+	 * @return nanoseconds spent replaying
+	 */
+	public synchronized long lastReplayNanos() {
+		return this.lastReplayNanos;
+	}
+
+	/**
+	 * force the journal to disk and close it
+	 * 
+	 * @throws IOException
+	 *             if the journal cannot be written
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (this.channel.isOpen()) {
+			try {
+				this.channel.force(false);
+			} finally {
+				this.channel.close();
+				this.codec.close();
+			}
+		}
+	}
+
+	/**
+	 * helper method to write all of buffer at position
+	 */
+	private void write(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			position += this.channel.write(buffer, position);
+		}
+	}
+
+	/**
+	 * helper method to fill buffer from position, failing at the end of the
+	 * file
+	 */
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if (read < 0) {
+				throw new IOException("unexpected end of journal");
+			}
+			position += read;
+		}
+	}
+
+	/**
+	 * print a summary of a journal, or the board at one of its generations
+	 * 
+	 * <pre>
+	 *      gol.GenerationJournal FILE [GENERATION]
+	 * </pre>
+	 * 
+	 * @param args
+	 *            arguments as described
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 2) {
+			System.err.println("usage: GenerationJournal FILE [GENERATION]");
+			return;
+		}
+		try (GenerationJournal journal = open(new File(args[0]))) {
+			if (args.length == 1) {
+				System.out.println("generations " + journal.firstGeneration() + " to " + journal.lastGeneration() + ", "
+						+ journal.keyframes() + " keyframes, " + journal.bytesWritten() + " bytes, "
+						+ String.format("%.1f", journal.bytesPerGeneration()) + " bytes/generation");
+				return;
+			}
+			long generation;
+			try {
+				generation = Long.parseLong(args[1]);
+			} catch (NumberFormatException nfe) {
+				System.err.println("unable to parse generation: \"" + args[1] + "\"");
+				return;
+			}
+			GameBoard board = journal.boardAt(generation);
+			board.writeTo(System.out);
+			System.out.flush();
+			System.err.println("replayed " + journal.lastReplayDeltas() + " deltas, " + journal.lastReplayBytes()
+					+ " bytes in " + journal.lastReplayNanos() / 1000 + " us");
+		}
+	}
+
+}
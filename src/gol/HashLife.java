@@ -0,0 +1,513 @@
+package gol;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * a mutable data type representing an unbounded Game of Life universe, stepped
+ * with the HashLife algorithm: the universe is a quadtree of canonical
+ * (hash-consed) nodes, and the future of every node is memoized, so repetitive
+ * patterns can be jumped forward 2^k generations in one call.
+ * 
+ * <p>
+ * Unlike GameBoard the universe has no edges. Its state agrees with a GameBoard
+ * stepped from the same seed as long as the pattern on the board stays clear of
+ * the board's edges. It always steps by Conway's rule, B3/S23, whatever the
+ * rule of the seed board.
+ */
+public class HashLife {
+
+	/** default bound on the number of canonical nodes kept in the cache */
+	public static final int DEFAULT_MAX_NODES = 1 << 22;
+
+	private static final int MIN_TABLE_SIZE = 1 << 10;
+	/** deepest level the universe may reach; cell coordinates are longs */
+	private static final int MAX_LEVEL = 62;
+
+	private final int maxNodes;
+	private Node[] table;
+	private int size;
+	private int epoch;
+	private long evictions;
+	private boolean rootEvicted;
+	private final Node[] empty = new Node[MAX_LEVEL + 1];
+	private Node root;
+	private long generation;
+
+	/*
+	 * AF(table, root, generation) = the universe whose live cells are those of
+	 * root, a square of side 2^root.level centered on the origin, after
+	 * generation steps from the seed. table holds the canonical node for each
+	 * (nw, ne, sw, se) seen since the cache was last evicted.
+	 * 
+	 * rep invariant: root.level >= 2; size == number of nodes in table;
+	 * size <= maxNodes. A memoized result is only valid when its epoch is the
+	 * current epoch, so evicting the cache drops every memo at once.
+	 */
+
+	/**
+	 * a quadtree node of level k, a square of 2^k x 2^k cells; level 0 nodes
+	 * are single cells
+	 */
+	private static final class Node {
+
+		private final int level;
+		private final Node nw;
+		private final Node ne;
+		private final Node sw;
+		private final Node se;
+		private final long population;
+		private final int hash;
+
+		/** next node in the same hash bucket */
+		private Node chain;
+		/** center of this node after 2^resultStep generations */
+		private Node result;
+		private int resultStep;
+		private int resultEpoch;
+
+		/** make a single cell */
+		Node(boolean isAlive) {
+			this.level = 0;
+			this.nw = this.ne = this.sw = this.se = null;
+			this.population = isAlive ? 1 : 0;
+			this.hash = isAlive ? 1 : 0;
+		}
+
+		/** make a node from its four quadrants, all of one level */
+		Node(Node nw, Node ne, Node sw, Node se, int hash) {
+			this.level = nw.level + 1;
+			this.nw = nw;
+			this.ne = ne;
+			this.sw = sw;
+			this.se = se;
+			this.population = nw.population + ne.population + sw.population + se.population;
+			this.hash = hash;
+		}
+	}
+
+	private static final Node DEAD = new Node(false);
+	private static final Node ALIVE = new Node(true);
+
+	/**
+	 * make a universe seeded with the live cells of a board, with the board's
+	 * cell (x, y) at the universe's cell (x, y)
+	 * 
+	 * @param seed
+	 *            board to copy the live cells from
+	 */
+	public HashLife(GameBoard seed) {
+		this(seed, DEFAULT_MAX_NODES);
+	}
+
+	/**
+	 * make a universe seeded with the live cells of a board, with the board's
+	 * cell (x, y) at the universe's cell (x, y)
+	 * 
+	 * @param seed
+	 *            board to copy the live cells from
+	 * @param maxNodes
+	 *            bound on the number of cached nodes, requires maxNodes > 0;
+	 *            when it is exceeded the whole cache is evicted, and after the
+	 *            jump in progress the current pattern is cached again
+	 */
+	public HashLife(GameBoard seed, int maxNodes) {
+		this.maxNodes = maxNodes;
+		this.table = new Node[MIN_TABLE_SIZE];
+		this.empty[0] = DEAD;
+
+		int level = 3;
+		while ((1L << (level - 1)) < Math.max(seed.numRows(), seed.numColumns())) {
+			level += 1;
+		}
+		long half = 1L << (level - 1);
+		this.root = build(seed, level, -half, -half);
+		this.generation = 0;
+	}
+
+	/**
+	 * number of generations the universe has been stepped
+	 * 
+	 * @return generations since the seed
+	 */
+	public long generation() {
+		return this.generation;
+	}
+
+	/**
+	 * number of live cells in the universe
+	 * 
+	 * @return live cell count
+	 */
+	public long population() {
+		return this.root.population;
+	}
+
+	/**
+	 * number of canonical nodes currently cached
+	 * 
+	 * @return cache size, at most the maxNodes this universe was made with
+	 */
+	public int cacheSize() {
+		return this.size;
+	}
+
+	/**
+	 * number of times the cache has been evicted for exceeding maxNodes
+	 * 
+	 * @return eviction count
+	 */
+	public long evictions() {
+		return this.evictions;
+	}
+
+	/**
+	 * advance the universe 2^log2 generations in one jump
+	 * 
+	 * @param log2
+	 *            base 2 logarithm of the number of generations, requires
+	 *            0 <= log2 <= 60
+	 */
+	public void step(int log2) {
+		if (log2 < 0 || log2 > MAX_LEVEL - 2) {
+			throw new IllegalArgumentException("cannot step 2^" + log2 + " generations");
+		}
+		// pad until the pattern lies in the middle quarter of a node deep
+		// enough to jump log2, so nothing can grow out of the result
+		while (this.root.level < log2 + 3 || !centered(this.root)) {
+			if (this.root.level >= MAX_LEVEL) {
+				throw new IllegalStateException("pattern grew past the edge of the universe");
+			}
+			this.root = expand(this.root);
+		}
+		this.root = successor(this.root, log2);
+		this.generation += 1L << log2;
+
+		if (this.rootEvicted) {
+			this.rootEvicted = false;
+			this.root = intern(this.root, new IdentityHashMap<Node, Node>());
+		}
+	}
+
+	/**
+	 * advance the universe any number of generations, as one jump per set bit
+	 * of generations
+	 * 
+	 * @param generations
+	 *            number of generations, requires generations >= 0
+	 */
+	public void advance(long generations) {
+		if (generations < 0) {
+			throw new IllegalArgumentException("cannot step back " + generations + " generations");
+		}
+		for (int log2 = 0; generations != 0; ++log2, generations >>>= 1) {
+			if ((generations & 1) != 0) {
+				step(log2);
+			}
+		}
+	}
+
+	/**
+	 * whether the given cell is alive
+	 * 
+	 * @param x
+	 *            x coordinate of the cell
+	 * @param y
+	 *            y coordinate of the cell
+	 * @return true iff the cell at (x, y) is alive
+	 */
+	public boolean isAlive(long x, long y) {
+		Node node = this.root;
+		long half = 1L << (node.level - 1);
+		if (x < -half || y < -half || x >= half || y >= half) {
+			return false;
+		}
+		// coordinates relative to the node's top left corner
+		long nx = x + half;
+		long ny = y + half;
+		while (node.level > 0 && node.population > 0) {
+			long quarter = 1L << (node.level - 1);
+			boolean east = nx >= quarter;
+			boolean south = ny >= quarter;
+			node = south ? (east ? node.se : node.sw) : (east ? node.ne : node.nw);
+			nx -= east ? quarter : 0;
+			ny -= south ? quarter : 0;
+		}
+		return node.population > 0;
+	}
+
+	/**
+	 * copy a window of the universe onto a new GameBoard
+	 * 
+	 * @param x
+	 *            x coordinate of the window's top left cell
+	 * @param y
+	 *            y coordinate of the window's top left cell
+	 * @param rows
+	 *            height of the window
+	 * @param columns
+	 *            width of the window
+	 * @return board whose cell (j, i) is the universe's cell (x + j, y + i)
+	 */
+	public GameBoard toGameBoard(long x, long y, int rows, int columns) {
+		GameBoard board = new GameBoard(rows, columns, false);
+		long half = 1L << (this.root.level - 1);
+		copyInto(board, this.root, -half - x, -half - y);
+		return board;
+	}
+
+	/**
+	 * return a viewable representation of a window of the universe, in the
+	 * format of GameBoard.look()
+	 * 
+	 * @param x
+	 *            x coordinate of the window's top left cell
+	 * @param y
+	 *            y coordinate of the window's top left cell
+	 * @param rows
+	 *            height of the window
+	 * @param columns
+	 *            width of the window
+	 * @return view of the window
+	 */
+	public String look(long x, long y, int rows, int columns) {
+		return toGameBoard(x, y, rows, columns).look();
+	}
+
+	/**
+	 * helper method to build the node of the given level whose top left cell
+	 * is (x, y) from the cells of a board
+	 */
+	private Node build(GameBoard seed, int level, long x, long y) {
+		long side = 1L << level;
+		if (x >= seed.numColumns() || y >= seed.numRows() || x + side <= 0 || y + side <= 0) {
+			return empty(level);
+		}
+		if (level == 0) {
+			return seed.isAlive((int) x, (int) y) ? ALIVE : DEAD;
+		}
+		long half = side >> 1;
+		return join(build(seed, level - 1, x, y), build(seed, level - 1, x + half, y),
+				build(seed, level - 1, x, y + half), build(seed, level - 1, x + half, y + half));
+	}
+
+	/**
+	 * helper method to set the live cells of node on board, where the node's
+	 * top left cell lands on the board's cell (x, y)
+	 */
+	private static void copyInto(GameBoard board, Node node, long x, long y) {
+		long side = 1L << node.level;
+		if (node.population == 0 || x >= board.numColumns() || y >= board.numRows() || x + side <= 0
+				|| y + side <= 0) {
+			return;
+		}
+		if (node.level == 0) {
+			board.produce((int) x, (int) y);
+			return;
+		}
+		long half = side >> 1;
+		copyInto(board, node.nw, x, y);
+		copyInto(board, node.ne, x + half, y);
+		copyInto(board, node.sw, x, y + half);
+		copyInto(board, node.se, x + half, y + half);
+	}
+
+	/**
+	 * helper method to get the canonical node with the given quadrants
+	 */
+	private Node join(Node nw, Node ne, Node sw, Node se) {
+		int hash = mix(nw.hash, ne.hash, sw.hash, se.hash);
+		int bucket = hash & (this.table.length - 1);
+		for (Node node = this.table[bucket]; node != null; node = node.chain) {
+			if (node.nw == nw && node.ne == ne && node.sw == sw && node.se == se) {
+				return node;
+			}
+		}
+		Node node = new Node(nw, ne, sw, se, hash);
+		node.chain = this.table[bucket];
+		this.table[bucket] = node;
+		this.size += 1;
+		if (this.size > this.maxNodes) {
+			evict();
+		} else if (this.size > this.table.length - (this.table.length >> 2)) {
+			resize();
+		}
+		return node;
+	}
+
+	/**
+	 * helper method to combine the hashes of four quadrants
+	 */
+	private static int mix(int nw, int ne, int sw, int se) {
+		long h = nw * 0x9E3779B97F4A7C15L + ne;
+		h = h * 0x9E3779B97F4A7C15L + sw;
+		h = h * 0x9E3779B97F4A7C15L + se;
+		h ^= h >>> 29;
+		h *= 0xBF58476D1CE4E5B9L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * helper method to double the hash table
+	 */
+	private void resize() {
+		Node[] old = this.table;
+		Node[] table = new Node[old.length << 1];
+		for (Node head : old) {
+			for (Node node = head; node != null;) {
+				Node next = node.chain;
+				int bucket = node.hash & (table.length - 1);
+				node.chain = table[bucket];
+				table[bucket] = node;
+				node = next;
+			}
+		}
+		this.table = table;
+	}
+
+	/**
+	 * helper method to drop every cached node and memoized result. Nodes still
+	 * referenced stay valid, only no longer shared, so step makes the pattern
+	 * canonical again once it is done.
+	 */
+	private void evict() {
+		this.table = new Node[MIN_TABLE_SIZE];
+		this.size = 0;
+		this.epoch += 1;
+		this.evictions += 1;
+		this.rootEvicted = true;
+	}
+
+	/**
+	 * helper method to rebuild node out of canonical nodes
+	 */
+	private Node intern(Node node, Map<Node, Node> interned) {
+		if (node.level == 0) {
+			return node;
+		}
+		if (node.population == 0) {
+			return empty(node.level);
+		}
+		Node canonical = interned.get(node);
+		if (canonical == null) {
+			canonical = join(intern(node.nw, interned), intern(node.ne, interned), intern(node.sw, interned),
+					intern(node.se, interned));
+			interned.put(node, canonical);
+		}
+		return canonical;
+	}
+
+	/**
+	 * helper method to get the canonical empty node of the given level
+	 */
+	private Node empty(int level) {
+		if (this.empty[level] == null) {
+			Node quadrant = empty(level - 1);
+			this.empty[level] = join(quadrant, quadrant, quadrant, quadrant);
+		}
+		return this.empty[level];
+	}
+
+	/**
+	 * helper method to surround node with empty space, giving the node one
+	 * level up with the same center
+	 */
+	private Node expand(Node node) {
+		Node border = empty(node.level - 1);
+		return join(join(border, border, border, node.nw), join(border, border, node.ne, border),
+				join(border, node.sw, border, border), join(node.se, border, border, border));
+	}
+
+	/**
+	 * helper method to check whether every live cell of node, of level 3 or
+	 * more, lies in its middle quarter (the middle 2^(level-2) square)
+	 */
+	private static boolean centered(Node node) {
+		long middle = node.nw.se.se.population + node.ne.sw.sw.population + node.sw.ne.ne.population
+				+ node.se.nw.nw.population;
+		return middle == node.population;
+	}
+
+	/**
+	 * helper method to compute the center of node, one level down, after
+	 * 2^log2 generations; a node of level k can be stepped at most 2^(k-2)
+	 * generations, and larger log2 is clamped to that
+	 */
+	private Node successor(Node node, int log2) {
+		if (node.population == 0) {
+			return empty(node.level - 1);
+		}
+		log2 = Math.min(log2, node.level - 2);
+		if (node.resultEpoch == this.epoch && node.result != null && node.resultStep == log2) {
+			return node.result;
+		}
+
+		Node result;
+		if (node.level == 2) {
+			result = stepLevel2(node);
+		} else {
+			// nine overlapping nodes one level down, stepped
+			Node c1 = successor(node.nw, log2);
+			Node c2 = successor(join(node.nw.ne, node.ne.nw, node.nw.se, node.ne.sw), log2);
+			Node c3 = successor(node.ne, log2);
+			Node c4 = successor(join(node.nw.sw, node.nw.se, node.sw.nw, node.sw.ne), log2);
+			Node c5 = successor(join(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw), log2);
+			Node c6 = successor(join(node.ne.sw, node.ne.se, node.se.nw, node.se.ne), log2);
+			Node c7 = successor(node.sw, log2);
+			Node c8 = successor(join(node.sw.ne, node.se.nw, node.sw.se, node.se.sw), log2);
+			Node c9 = successor(node.se, log2);
+
+			if (log2 < node.level - 2) {
+				// the nine have been stepped far enough; just take the middle
+				result = join(join(c1.se, c2.sw, c4.ne, c5.nw), join(c2.se, c3.sw, c5.ne, c6.nw),
+						join(c4.se, c5.sw, c7.ne, c8.nw), join(c5.se, c6.sw, c8.ne, c9.nw));
+			} else {
+				// step the four overlapping combinations a second time
+				result = join(successor(join(c1, c2, c4, c5), log2), successor(join(c2, c3, c5, c6), log2),
+						successor(join(c4, c5, c7, c8), log2), successor(join(c5, c6, c8, c9), log2));
+			}
+		}
+
+		node.result = result;
+		node.resultStep = log2;
+		node.resultEpoch = this.epoch;
+		return result;
+	}
+
+	/**
+	 * helper method to step the middle 2 x 2 cells of a 4 x 4 node one
+	 * generation
+	 */
+	private Node stepLevel2(Node node) {
+		// bit (4 * row + column) is the cell at (column, row)
+		int cells = 0;
+		Node[] quadrants = { node.nw, node.ne, node.sw, node.se };
+		for (int q = 0; q < 4; ++q) {
+			Node quadrant = quadrants[q];
+			int base = (q >> 1) * 8 + (q & 1) * 2;
+			cells |= (int) quadrant.nw.population << base;
+			cells |= (int) quadrant.ne.population << (base + 1);
+			cells |= (int) quadrant.sw.population << (base + 4);
+			cells |= (int) quadrant.se.population << (base + 5);
+		}
+		return join(nextCell(cells, 1, 1), nextCell(cells, 2, 1), nextCell(cells, 1, 2), nextCell(cells, 2, 2));
+	}
+
+	/**
+	 * helper method to apply the rules of GameBoard.cellUpdate to the inner
+	 * cell (x, y) of a 4 x 4 block of cells
+	 */
+	private static Node nextCell(int cells, int x, int y) {
+		int count = 0;
+		for (int dy = -1; dy <= 1; ++dy) {
+			for (int dx = -1; dx <= 1; ++dx) {
+				if (dx != 0 || dy != 0) {
+					count += (cells >>> (4 * (y + dy) + x + dx)) & 1;
+				}
+			}
+		}
+		boolean isAlive = ((cells >>> (4 * y + x)) & 1) != 0;
+		return count == 3 || (isAlive && count == 2) ? ALIVE : DEAD;
+	}
+
+}
@@ -0,0 +1,52 @@
+package gol;
+
+/**
+ * an immutable data type representing the loop GameBoard.updateBoard uses to
+ * compute the words of the next generation. Both kernels give identical
+ * boards; they differ only in speed. VECTOR needs the Vector API, which
+ * ships as an incubator module the JVM loads only when run with
+ * --add-modules jdk.incubator.vector. Boards step with VECTOR where it is
+ * available, and with SCALAR otherwise.
+ */
+public enum Kernel {
+
+	/**
+	 * walk each 64 x 64 tile down its rows one word at a time, keeping the
+	 * neighbouring rows in registers
+	 */
+	SCALAR,
+
+	/**
+	 * walk each row across its active words as many at a time as the host's
+	 * widest vector registers hold, with the Vector API. The words at the
+	 * west and east edges, the few at the end of a run of active words that
+	 * do not fill a vector, and boards less than 512 columns wide, are
+	 * stepped as by SCALAR.
+	 */
+	VECTOR;
+
+	/** steps the rows of the VECTOR kernel, null if it is not available */
+	static final RowStepper VECTOR_ROWS = vectorRows();
+
+	/**
+	 * helper method to load the RowStepper compiled against the Vector API,
+	 * if the JVM has both it and the module it needs
+	 */
+	private static RowStepper vectorRows() {
+		try {
+			return (RowStepper) Class.forName("gol.VectorRows").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+
+	/**
+	 * whether boards can step with this kernel in this JVM
+	 * 
+	 * @return true iff this kernel is SCALAR, or the Vector API is loaded
+	 */
+	public boolean isAvailable() {
+		return this != VECTOR || VECTOR_ROWS != null;
+	}
+
+}
@@ -0,0 +1,140 @@
+package gol;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * a histogram of latencies in nanoseconds, in the style of HdrHistogram:
+ * buckets are linear up to 64 ns and then split each power of two into 32
+ * sub-buckets, so any recorded value is reported within about 3% while the
+ * whole range of a long fits in a fixed 1888 counts. Recording is lock free
+ * and allocates nothing, so any number of threads may record at once while
+ * others read.
+ */
+public class LatencyHistogram {
+
+	/** values below this are counted exactly */
+	private static final int LINEAR = 64;
+	/** sub-buckets per power of two above LINEAR */
+	private static final int SUB_BUCKETS = 32;
+	private static final int BUCKETS = LINEAR + (63 - 6) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder total = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+
+	/*
+	 * AF(counts, total, sum) = a multiset of total recorded values summing to
+	 * sum, of which counts[i] lie in bucket i, whose values are those v >= 0
+	 * with index(v) == i
+	 * 
+	 * rep invariant: the counts add up to total once no thread is recording
+	 * 
+	 * thread safety: counts, total and sum are atomic; a read that races a
+	 * record may miss it, or see it in total before counts
+	 */
+
+	/**
+	 * record one latency
+	 * 
+	 * @param nanos
+	 *            latency in nanoseconds; a negative one, from a clock going
+	 *            backwards, is recorded as 0
+	 */
+	public void record(long nanos) {
+		long value = Math.max(nanos, 0);
+		this.counts.incrementAndGet(index(value));
+		this.total.increment();
+		this.sum.add(value);
+	}
+
+	/**
+	 * number of latencies recorded
+	 * 
+	 * @return count of calls to record
+	 */
+	public long count() {
+		return this.total.sum();
+	}
+
+	/**
+	 * mean of the latencies recorded
+	 * 
+	 * @return mean in nanoseconds, or 0 if none were recorded
+	 */
+	public double mean() {
+		long count = count();
+		return count == 0 ? 0 : (double) this.sum.sum() / count;
+	}
+
+	/**
+	 * a percentile of the latencies recorded
+	 * 
+	 * @param percentile
+	 *            percentile to find, requires 0 <= percentile <= 100
+	 * @return the highest value of the bucket holding that percentile, in
+	 *         nanoseconds, or 0 if none were recorded
+	 */
+	public long percentile(double percentile) {
+		long[] snapshot = new long[BUCKETS];
+		long count = 0;
+		for (int i = 0; i < BUCKETS; ++i) {
+			snapshot[i] = this.counts.get(i);
+			count += snapshot[i];
+		}
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; ++i) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return highest(i);
+			}
+		}
+		return highest(BUCKETS - 1);
+	}
+
+	/**
+	 * the largest latency recorded
+	 * 
+	 * @return the highest value of the highest bucket recorded in, in
+	 *         nanoseconds, or 0 if none were recorded
+	 */
+	public long max() {
+		for (int i = BUCKETS - 1; i >= 0; --i) {
+			if (this.counts.get(i) != 0) {
+				return highest(i);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * helper method to find the bucket of a value, requires value >= 0
+	 */
+	static int index(long value) {
+		if (value < LINEAR) {
+			return (int) value;
+		}
+		// the top six bits of the value pick the sub-bucket
+		int magnitude = 63 - Long.numberOfLeadingZeros(value);
+		int shift = magnitude - 5;
+		return LINEAR + (magnitude - 6) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+	}
+
+	/**
+	 * helper method to find the highest value of a bucket
+	 */
+	static long highest(int index) {
+		if (index < LINEAR) {
+			return index;
+		}
+		int magnitude = (index - LINEAR) / SUB_BUCKETS + 6;
+		int shift = magnitude - 5;
+		long top = (index - LINEAR) % SUB_BUCKETS + SUB_BUCKETS;
+		return ((top + 1) << shift) - 1;
+	}
+
+}
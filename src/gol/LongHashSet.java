@@ -0,0 +1,183 @@
+package gol;
+
+import java.util.Arrays;
+
+/**
+ * a mutable set of primitive longs, stored in an open-addressed table so that
+ * adding, finding and removing keys never boxes them
+ */
+class LongHashSet {
+
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys;
+	private boolean[] used;
+	private int size;
+
+	/*
+	 * AF(keys, used) = { keys[i] | used[i] }
+	 * 
+	 * rep invariant: keys.length == used.length is a power of two, size is the
+	 * number of used slots and size < keys.length * 3 / 4, and every key is
+	 * found by linear probing from its home slot without crossing an unused
+	 * slot
+	 */
+
+	/**
+	 * make an empty set
+	 */
+	LongHashSet() {
+		this.keys = new long[MIN_CAPACITY];
+		this.used = new boolean[MIN_CAPACITY];
+	}
+
+	/**
+	 * number of keys in the set
+	 * 
+	 * @return size of the set
+	 */
+	int size() {
+		return this.size;
+	}
+
+	/**
+	 * whether the set contains key
+	 * 
+	 * @param key
+	 *            key to look for
+	 * @return true iff key is in the set
+	 */
+	boolean contains(long key) {
+		int mask = this.keys.length - 1;
+		for (int slot = home(key, mask); this.used[slot]; slot = (slot + 1) & mask) {
+			if (this.keys[slot] == key) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * add key to the set
+	 * 
+	 * @param key
+	 *            key to add
+	 * @return true iff key was not already in the set
+	 */
+	boolean add(long key) {
+		int mask = this.keys.length - 1;
+		int slot = home(key, mask);
+		for (; this.used[slot]; slot = (slot + 1) & mask) {
+			if (this.keys[slot] == key) {
+				return false;
+			}
+		}
+		this.keys[slot] = key;
+		this.used[slot] = true;
+		this.size += 1;
+		if (this.size >= this.keys.length - (this.keys.length >> 2)) {
+			resize(this.keys.length << 1);
+		}
+		return true;
+	}
+
+	/**
+	 * remove key from the set
+	 * 
+	 * @param key
+	 *            key to remove
+	 * @return true iff key was in the set
+	 */
+	boolean remove(long key) {
+		int mask = this.keys.length - 1;
+		int slot = home(key, mask);
+		while (this.used[slot] && this.keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		if (!this.used[slot]) {
+			return false;
+		}
+
+		// shift later keys of the probe run back into the hole
+		int hole = slot;
+		for (int next = (hole + 1) & mask; this.used[next]; next = (next + 1) & mask) {
+			int nextHome = home(this.keys[next], mask);
+			if (((next - nextHome) & mask) >= ((next - hole) & mask)) {
+				this.keys[hole] = this.keys[next];
+				hole = next;
+			}
+		}
+		this.used[hole] = false;
+		this.size -= 1;
+		return true;
+	}
+
+	/**
+	 * remove every key, keeping the table's capacity
+	 */
+	void clear() {
+		Arrays.fill(this.used, false);
+		this.size = 0;
+	}
+
+	/**
+	 * number of slots to iterate over with isUsed and keyAt
+	 * 
+	 * @return capacity of the table
+	 */
+	int capacity() {
+		return this.keys.length;
+	}
+
+	/**
+	 * whether a slot of the table holds a key
+	 * 
+	 * @param slot
+	 *            slot index, requires 0 <= slot < capacity()
+	 * @return true iff keyAt(slot) is in the set
+	 */
+	boolean isUsed(int slot) {
+		return this.used[slot];
+	}
+
+	/**
+	 * key held in a slot of the table
+	 * 
+	 * @param slot
+	 *            slot index, requires isUsed(slot)
+	 * @return the key in that slot
+	 */
+	long keyAt(int slot) {
+		return this.keys[slot];
+	}
+
+	/**
+	 * helper method to scatter keys over the table
+	 */
+	static int home(long key, int mask) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+
+	/**
+	 * helper method to move every key into a table of the given capacity
+	 */
+	private void resize(int capacity) {
+		long[] oldKeys = this.keys;
+		boolean[] oldUsed = this.used;
+		this.keys = new long[capacity];
+		this.used = new boolean[capacity];
+		int mask = capacity - 1;
+		for (int i = 0; i < oldKeys.length; ++i) {
+			if (oldUsed[i]) {
+				int slot = home(oldKeys[i], mask);
+				while (this.used[slot]) {
+					slot = (slot + 1) & mask;
+				}
+				this.keys[slot] = oldKeys[i];
+				this.used[slot] = true;
+			}
+		}
+	}
+
+}
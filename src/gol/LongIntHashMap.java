@@ -0,0 +1,143 @@
+package gol;
+
+import java.util.Arrays;
+
+/**
+ * a mutable map from primitive long keys to int counts, stored in an
+ * open-addressed table so that counting never boxes keys or values
+ */
+class LongIntHashMap {
+
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys;
+	private int[] values;
+	private boolean[] used;
+	private int size;
+
+	/*
+	 * AF(keys, values, used) = { keys[i] -> values[i] | used[i] }
+	 * 
+	 * rep invariant: keys, values and used have the same power of two length,
+	 * size is the number of used slots and size < keys.length * 3 / 4, and
+	 * every key is found by linear probing from its home slot without crossing
+	 * an unused slot
+	 */
+
+	/**
+	 * make an empty map
+	 */
+	LongIntHashMap() {
+		this.keys = new long[MIN_CAPACITY];
+		this.values = new int[MIN_CAPACITY];
+		this.used = new boolean[MIN_CAPACITY];
+	}
+
+	/**
+	 * number of keys in the map
+	 * 
+	 * @return size of the map
+	 */
+	int size() {
+		return this.size;
+	}
+
+	/**
+	 * add one to the count of key, which starts at 0
+	 * 
+	 * @param key
+	 *            key to count
+	 */
+	void increment(long key) {
+		int mask = this.keys.length - 1;
+		int slot = LongHashSet.home(key, mask);
+		for (; this.used[slot]; slot = (slot + 1) & mask) {
+			if (this.keys[slot] == key) {
+				this.values[slot] += 1;
+				return;
+			}
+		}
+		this.keys[slot] = key;
+		this.values[slot] = 1;
+		this.used[slot] = true;
+		this.size += 1;
+		if (this.size >= this.keys.length - (this.keys.length >> 2)) {
+			resize(this.keys.length << 1);
+		}
+	}
+
+	/**
+	 * remove every key, keeping the table's capacity
+	 */
+	void clear() {
+		Arrays.fill(this.used, false);
+		this.size = 0;
+	}
+
+	/**
+	 * number of slots to iterate over with isUsed, keyAt and valueAt
+	 * 
+	 * @return capacity of the table
+	 */
+	int capacity() {
+		return this.keys.length;
+	}
+
+	/**
+	 * whether a slot of the table holds a key
+	 * 
+	 * @param slot
+	 *            slot index, requires 0 <= slot < capacity()
+	 * @return true iff keyAt(slot) is in the map
+	 */
+	boolean isUsed(int slot) {
+		return this.used[slot];
+	}
+
+	/**
+	 * key held in a slot of the table
+	 * 
+	 * @param slot
+	 *            slot index, requires isUsed(slot)
+	 * @return the key in that slot
+	 */
+	long keyAt(int slot) {
+		return this.keys[slot];
+	}
+
+	/**
+	 * count held in a slot of the table
+	 * 
+	 * @param slot
+	 *            slot index, requires isUsed(slot)
+	 * @return the count of keyAt(slot)
+	 */
+	int valueAt(int slot) {
+		return this.values[slot];
+	}
+
+	/**
+	 * helper method to move every entry into a table of the given capacity
+	 */
+	private void resize(int capacity) {
+		long[] oldKeys = this.keys;
+		int[] oldValues = this.values;
+		boolean[] oldUsed = this.used;
+		this.keys = new long[capacity];
+		this.values = new int[capacity];
+		this.used = new boolean[capacity];
+		int mask = capacity - 1;
+		for (int i = 0; i < oldKeys.length; ++i) {
+			if (oldUsed[i]) {
+				int slot = LongHashSet.home(oldKeys[i], mask);
+				while (this.used[slot]) {
+					slot = (slot + 1) & mask;
+				}
+				this.keys[slot] = oldKeys[i];
+				this.values[slot] = oldValues[i];
+				this.used[slot] = true;
+			}
+		}
+	}
+
+}
@@ -1,116 +1,125 @@
 package gol;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Arrays;
-import java.util.List;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Timer;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class Main {
 
 	private static final int DEFAULT_SIZE = 20;
 	
 	/**
-	 * helper method to process the input file 
-	 * @param f input file to read initial board configuration from
-	 * @return list.size() == 3, list.get(0) = sizeX; list.get(1) = sizeY; list.get(2) = string of length (sizeX x sizeY) where string.charAt(ixj) = state of cell at jxi              
+	 * generate initial GameBoard configuration 
+	 * @param file file containing seeded configuration
+	 * @param sizeX 
+	 * @param sizeY
+	 * @return GameBoard instance based on the parameters given
+	 * @throws UncheckedIOException if the file cannot be loaded by BoardLoader
 	 */
-
-	private static List<String> processFile(File f) {
-		String text = "";
-		String thisLine = "";
-		String sizeX = "";
-		String sizeY = "";
-
-		try {
-			FileReader fr = new FileReader(f);
-			BufferedReader br = new BufferedReader(fr);
-
-			int i = 0;
-
-			while ((thisLine = br.readLine()) != null) {
-				if (i == 0) {
-					sizeX = thisLine.replaceAll("\\s", "");
-
-				}
-				if (i == 1) {
-					sizeY = thisLine.replaceAll("\\s", "");
-				} else {
-					text += thisLine;
-
-				}
-				i += 1;
-			}
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
-
-		text = text.replaceAll("\\s", "");
-
-		List<String> output = new ArrayList<>(Arrays.asList(sizeX, sizeY, text));
-		return output;
-
+	public static GameBoard boardFromFile(Optional<File> file, int sizeX, int sizeY) {
+		return boardFromFile(file, sizeX, sizeY, ThreadLocalRandom.current().nextLong(), GameBoard.DEFAULT_DENSITY);
 	}
+
 	/**
-	 * generate initial GameBoard configuration 
+	 * generate initial GameBoard configuration, random boards drawn from a
+	 * given seed and density
 	 * @param file file containing seeded configuration
 	 * @param sizeX 
 	 * @param sizeY
+	 * @param seed seed of a random board; the same seed gives the same board
+	 * @param density probability of each cell of a random board being alive,
+	 *            requires 0 <= density <= 1
 	 * @return GameBoard instance based on the parameters given
+	 * @throws UncheckedIOException if the file cannot be loaded by BoardLoader
 	 */
-	public static GameBoard boardFromFile(Optional<File> file, int sizeX, int sizeY) {
+	public static GameBoard boardFromFile(Optional<File> file, int sizeX, int sizeY, long seed, double density) {
 		GameBoard board;
 
 		if (sizeX > 0 && sizeY > 0) {
 
-			board = new GameBoard(sizeY, sizeX, true);
+			board = new GameBoard(sizeY, sizeX, Topology.DEAD, density, seed);
 
 		} else if (file.isPresent()) {
 
-			List<String> fileMapping = processFile(file.get());
-
-			int col = Integer.parseInt(fileMapping.get(0));
-			int rows = Integer.parseInt(fileMapping.get(1));
-			board = new GameBoard(rows, col, false);
-			String boardDesign = fileMapping.get(2);
-
-			int count = 0;
-			for (int i = 0; i < rows; ++i) {
-				for (int j = 0; j < col; ++j) {
-
-					int isAlive = Integer.parseInt(boardDesign.substring(count, count + 1));
-
-					count += 1;
-
-					if (isAlive == 1) {
-						board.getBoard().get(i).set(j, new Cell(j, i, true));
-					}
-				}
+			try {
+				board = BoardLoader.load(file.get());
+			} catch (IOException ioe) {
+				throw new UncheckedIOException(ioe);
 			}
 
 		}
 
 		else {
-			board = new GameBoard(DEFAULT_SIZE, DEFAULT_SIZE, true);
+			board = new GameBoard(DEFAULT_SIZE, DEFAULT_SIZE, Topology.DEAD, density, seed);
 		}
 		return board;
 	}
 	
 	/**
-	 * main method running the simulation in console
+	 * main method running the simulation in console, a frame every 50 ms;
+	 * BatchRunner runs boards headless, as fast as they step
+	 * 
+	 * <pre>
+	 *      gol.Main [--rule RULE] [--seed SEED] [--density DENSITY]
+	 * </pre>
+	 * 
+	 * RULE is an optional rule in B/S notation, such as B36/S23 for
+	 * HighLife; by default it is B3/S23. The random board is drawn from SEED,
+	 * by default a random one, which is printed so the run can be repeated,
+	 * with cells alive with probability DENSITY, by default 0.25.
+	 * 
 	 * @param args
+	 *            arguments as described
 	 */
 	public static void main(String[] args) {
+		Rule rule = Rule.CONWAY;
+		long seed = ThreadLocalRandom.current().nextLong();
+		double density = GameBoard.DEFAULT_DENSITY;
+
+		Queue<String> arguments = new LinkedList<>(Arrays.asList(args));
+		try {
+			while (!arguments.isEmpty()) {
+				String flag = arguments.remove();
+				try {
+					if (flag.equals("--rule")) {
+						rule = Rule.parse(arguments.remove());
+					} else if (flag.equals("--seed")) {
+						seed = Long.parseLong(arguments.remove());
+					} else if (flag.equals("--density")) {
+						density = Double.parseDouble(arguments.remove());
+						if (!(density >= 0 && density <= 1)) {
+							throw new IllegalArgumentException("--density must be between 0 and 1");
+						}
+					} else {
+						throw new IllegalArgumentException("unknown option: \"" + flag + "\"");
+					}
+				} catch (NoSuchElementException nsee) {
+					throw new IllegalArgumentException("missing argument for " + flag);
+				} catch (NumberFormatException nfe) {
+					throw new IllegalArgumentException("unable to parse number for " + flag);
+				}
+			}
+		} catch (IllegalArgumentException iae) {
+			System.err.println(iae.getMessage());
+			System.err.println("usage: Main [--rule RULE] [--seed SEED] [--density DENSITY]");
+			return;
+		}
 
 		Timer timer = new Timer();
 
 		// GameBoard board = boardFromFile(Optional.of(new
 		// File("src/board/gliderGun.txt")), -1, -1);
 
-		GameBoard board = boardFromFile(Optional.of(new File("src")), 50, 20);
+		System.err.println("seed " + seed);
+		GameBoard board = boardFromFile(Optional.of(new File("src")), 50, 20, seed, density);
+		board.setRule(rule);
 
 		timer.schedule(new runGame(board), 0, 50);
 
@@ -0,0 +1,420 @@
+package gol;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * the metrics of a Simulation and of the servers serving it: how long each
+ * step and each render of the view takes, how fast generations go by, how
+ * many cells live, how much the tick thread allocates per generation, and
+ * how many clients are connected and which commands they send, how often
+ * and how fast they are answered.
+ * 
+ * <p>
+ * Recording is cheap enough to leave on: a step costs two clock reads, an
+ * allocation counter read and a population count of the snapshot taken
+ * anyway, and a command two clock reads and a few atomic increments. The
+ * metrics can be read through JMX once registered, as a MetricsMXBean, or
+ * as text, as served by MetricsEndpoint.
+ */
+public class Metrics implements MetricsMXBean {
+
+	/**
+	 * the commands a client may send, as counted; a watch is counted when
+	 * asked for, but the stream it starts is not timed
+	 */
+	public enum Command {
+		LOOK, WATCH, PRODUCE, KILL, STAMP, HELP, BYE,
+
+		/** any line that is not one of the commands */
+		OTHER;
+
+		/**
+		 * the command a line of client input starts with
+		 * 
+		 * @param name
+		 *            first word of the line
+		 * @return the command of that name, or OTHER
+		 */
+		static Command of(String name) {
+			switch (name) {
+			case "look":
+				return LOOK;
+			case "watch":
+				return WATCH;
+			case "produce":
+				return PRODUCE;
+			case "kill":
+				return KILL;
+			case "stamp":
+				return STAMP;
+			case "help":
+				return HELP;
+			case "bye":
+				return BYE;
+			default:
+				return OTHER;
+			}
+		}
+	}
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+	private static final long RATE_WINDOW_NANOS = 1000000000L;
+
+	private volatile boolean enabled = true;
+	private final LatencyHistogram steps = new LatencyHistogram();
+	private final LatencyHistogram renders = new LatencyHistogram();
+	private final LatencyHistogram[] commands = new LatencyHistogram[Command.values().length];
+	private final Rate generationRate = new Rate();
+	private final Rate[] commandRates = new Rate[Command.values().length];
+	private final AtomicInteger activeConnections = new AtomicInteger();
+	private final AtomicLong totalConnections = new AtomicLong();
+	private volatile long generation;
+	private volatile long liveCells;
+	private volatile long populationDelta;
+	private volatile long allocatedBytes = -1;
+
+	/*
+	 * AF(steps, renders, commands, ...) = the metrics recorded so far: the
+	 * latencies of steps, of renders and of each command, by ordinal, the
+	 * clients connected now and ever, and the state last published
+	 * 
+	 * thread safety: the histograms and connection counts are atomic, so any
+	 * thread records into them. generation, liveCells, populationDelta and
+	 * allocatedBytes are volatile and written only by the tick thread of the
+	 * simulation. Each Rate guards itself.
+	 */
+
+	/**
+	 * a rate of events per second, from a count sampled whenever it is read
+	 */
+	private static class Rate {
+
+		private long count;
+		private long nanos = System.nanoTime();
+		private double perSecond;
+
+		/**
+		 * the rate over the time since the last sample, taking a new sample
+		 * if a second or more has gone by, and the last rate otherwise
+		 */
+		synchronized double perSecond(long count) {
+			long now = System.nanoTime();
+			if (now - this.nanos >= RATE_WINDOW_NANOS) {
+				this.perSecond = (count - this.count) * 1e9 / (now - this.nanos);
+				this.count = count;
+				this.nanos = now;
+			}
+			return this.perSecond;
+		}
+	}
+
+	/**
+	 * make metrics with nothing recorded yet, recording
+	 */
+	public Metrics() {
+		for (int i = 0; i < this.commands.length; ++i) {
+			this.commands[i] = new LatencyHistogram();
+			this.commandRates[i] = new Rate();
+		}
+	}
+
+	/**
+	 * register these metrics with the platform MBean server, as
+	 * "gol:type=Metrics,name=NAME"
+	 * 
+	 * @param name
+	 *            name telling these metrics apart from others in the JVM
+	 * @return the name registered under
+	 * @throws JMException
+	 *             if the name is malformed or taken
+	 */
+	public ObjectName register(String name) throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName objectName = new ObjectName("gol:type=Metrics,name=" + ObjectName.quote(name));
+		server.registerMBean(this, objectName);
+		return objectName;
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	@Override
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * record the time of one step, if recording
+	 * 
+	 * @param nanos
+	 *            time the step took
+	 */
+	void step(long nanos) {
+		if (this.enabled) {
+			this.steps.record(nanos);
+		}
+	}
+
+	/**
+	 * record the time of one render of the view, if recording
+	 * 
+	 * @param nanos
+	 *            time the render took
+	 */
+	void render(long nanos) {
+		if (this.enabled) {
+			this.renders.record(nanos);
+		}
+	}
+
+	/**
+	 * record a newly published state; called by the tick thread only
+	 * 
+	 * @param generation
+	 *            generation of the state
+	 * @param liveCells
+	 *            live cells of the state
+	 */
+	void published(long generation, long liveCells) {
+		this.populationDelta = liveCells - this.liveCells;
+		this.liveCells = liveCells;
+		this.generation = generation;
+	}
+
+	/**
+	 * record what the tick thread allocated for a generation; called by the
+	 * tick thread only
+	 * 
+	 * @param bytes
+	 *            bytes allocated, or -1 if unknown
+	 */
+	void allocated(long bytes) {
+		this.allocatedBytes = bytes;
+	}
+
+	/**
+	 * record a client connecting
+	 */
+	void connected() {
+		this.activeConnections.incrementAndGet();
+		this.totalConnections.incrementAndGet();
+	}
+
+	/**
+	 * record a client disconnecting
+	 */
+	void disconnected() {
+		this.activeConnections.decrementAndGet();
+	}
+
+	/**
+	 * record the time to answer one command, if recording
+	 * 
+	 * @param command
+	 *            the command answered
+	 * @param nanos
+	 *            time answering it took
+	 */
+	void command(Command command, long nanos) {
+		if (this.enabled) {
+			this.commands[command.ordinal()].record(nanos);
+		}
+	}
+
+	/**
+	 * bytes the calling thread has allocated so far
+	 * 
+	 * @return allocated bytes, or -1 if the Java runtime cannot tell
+	 */
+	static long allocatedBytes() {
+		if (THREADS instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+			if (threads.isThreadAllocatedMemoryEnabled()) {
+				return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public long getGeneration() {
+		return this.generation;
+	}
+
+	@Override
+	public double getGenerationsPerSecond() {
+		return this.generationRate.perSecond(this.generation);
+	}
+
+	@Override
+	public long getLiveCells() {
+		return this.liveCells;
+	}
+
+	@Override
+	public long getPopulationDelta() {
+		return this.populationDelta;
+	}
+
+	@Override
+	public long getSteps() {
+		return this.steps.count();
+	}
+
+	@Override
+	public double getStepMeanMicros() {
+		return this.steps.mean() / 1e3;
+	}
+
+	@Override
+	public double getStepP50Micros() {
+		return this.steps.percentile(50) / 1e3;
+	}
+
+	@Override
+	public double getStepP99Micros() {
+		return this.steps.percentile(99) / 1e3;
+	}
+
+	@Override
+	public double getStepP999Micros() {
+		return this.steps.percentile(99.9) / 1e3;
+	}
+
+	@Override
+	public double getStepMaxMicros() {
+		return this.steps.max() / 1e3;
+	}
+
+	@Override
+	public double getRenderMeanMicros() {
+		return this.renders.mean() / 1e3;
+	}
+
+	@Override
+	public double getRenderP99Micros() {
+		return this.renders.percentile(99) / 1e3;
+	}
+
+	@Override
+	public long getAllocatedBytesPerGeneration() {
+		return this.allocatedBytes;
+	}
+
+	@Override
+	public int getActiveConnections() {
+		return this.activeConnections.get();
+	}
+
+	@Override
+	public long getTotalConnections() {
+		return this.totalConnections.get();
+	}
+
+	@Override
+	public Map<String, Long> getCommandCounts() {
+		Map<String, Long> counts = new LinkedHashMap<>();
+		for (Command command : Command.values()) {
+			counts.put(name(command), this.commands[command.ordinal()].count());
+		}
+		return counts;
+	}
+
+	@Override
+	public Map<String, Double> getCommandsPerSecond() {
+		Map<String, Double> rates = new LinkedHashMap<>();
+		for (Command command : Command.values()) {
+			int i = command.ordinal();
+			rates.put(name(command), this.commandRates[i].perSecond(this.commands[i].count()));
+		}
+		return rates;
+	}
+
+	@Override
+	public Map<String, Double> getCommandP99Micros() {
+		Map<String, Double> latencies = new LinkedHashMap<>();
+		for (Command command : Command.values()) {
+			latencies.put(name(command), this.commands[command.ordinal()].percentile(99) / 1e3);
+		}
+		return latencies;
+	}
+
+	/**
+	 * the metrics as text, one "NAME VALUE" or "NAME{LABEL="VALUE"} VALUE"
+	 * line each, in the text format Prometheus scrapes
+	 * 
+	 * @return lines of metrics, latencies in seconds
+	 */
+	public String text() {
+		StringBuilder text = new StringBuilder();
+		line(text, "gol_enabled", "", this.enabled ? 1 : 0);
+		line(text, "gol_generation", "", getGeneration());
+		line(text, "gol_generations_per_second", "", getGenerationsPerSecond());
+		line(text, "gol_live_cells", "", getLiveCells());
+		line(text, "gol_population_delta", "", getPopulationDelta());
+		quantiles(text, "gol_step_seconds", "", this.steps);
+		quantiles(text, "gol_render_seconds", "", this.renders);
+		line(text, "gol_allocated_bytes_per_generation", "", getAllocatedBytesPerGeneration());
+		line(text, "gol_active_connections", "", getActiveConnections());
+		line(text, "gol_connections_total", "", getTotalConnections());
+		Map<String, Double> rates = getCommandsPerSecond();
+		for (Command command : Command.values()) {
+			String label = "command=\"" + name(command) + "\"";
+			line(text, "gol_commands_per_second", label, rates.get(name(command)));
+			quantiles(text, "gol_command_seconds", label, this.commands[command.ordinal()]);
+		}
+		return text.toString();
+	}
+
+	/**
+	 * helper method to append the summary of a histogram: its count, sum,
+	 * and quantiles 0.5, 0.99, 0.999 and 1
+	 */
+	private static void quantiles(StringBuilder text, String name, String label, LatencyHistogram histogram) {
+		String separator = label.isEmpty() ? "" : ",";
+		for (double quantile : new double[] { 0.5, 0.99, 0.999 }) {
+			line(text, name, label + separator + "quantile=\"" + quantile + "\"",
+					histogram.percentile(quantile * 100) / 1e9);
+		}
+		line(text, name, label + separator + "quantile=\"1.0\"", histogram.max() / 1e9);
+		line(text, name + "_count", label, histogram.count());
+		line(text, name + "_sum", label, histogram.mean() * histogram.count() / 1e9);
+	}
+
+	/**
+	 * helper method to append one line of a metric
+	 */
+	private static void line(StringBuilder text, String name, String label, double value) {
+		text.append(name);
+		if (!label.isEmpty()) {
+			text.append('{').append(label).append('}');
+		}
+		text.append(' ');
+		if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+			text.append((long) value);
+		} else {
+			text.append(value);
+		}
+		text.append('\n');
+	}
+
+	/**
+	 * helper method to name a command as clients type it
+	 */
+	private static String name(Command command) {
+		return command.name().toLowerCase(Locale.ROOT);
+	}
+
+}
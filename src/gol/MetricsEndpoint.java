@@ -0,0 +1,90 @@
+package gol;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * a local HTTP endpoint serving Metrics as text: GET /metrics answers with
+ * Metrics.text(). It listens on the loopback address only, on a thread of
+ * its own, so scraping it never touches the tick thread or the server's
+ * connection threads.
+ */
+public class MetricsEndpoint implements Closeable {
+
+	private static final String PATH = "/metrics";
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+
+	/**
+	 * start serving metrics
+	 * 
+	 * @param metrics
+	 *            metrics to serve
+	 * @param port
+	 *            loopback port to listen on, requires 0 <= port <= 65535; 0
+	 *            picks a free port
+	 * @throws IOException
+	 *             if the port cannot be opened
+	 */
+	public MetricsEndpoint(final Metrics metrics, int port) throws IOException {
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "gol-metrics");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.server.setExecutor(this.executor);
+		this.server.createContext(PATH, new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					if (!exchange.getRequestMethod().equals("GET") || !exchange.getRequestURI().getPath().equals(PATH)) {
+						exchange.sendResponseHeaders(404, -1);
+						return;
+					}
+					byte[] body = metrics.text().getBytes(StandardCharsets.US_ASCII);
+					exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=us-ascii");
+					exchange.sendResponseHeaders(200, body.length);
+					try (OutputStream out = exchange.getResponseBody()) {
+						out.write(body);
+					}
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+		this.server.start();
+	}
+
+	/**
+	 * port the endpoint listens on
+	 * 
+	 * @return local port
+	 */
+	public int port() {
+		return this.server.getAddress().getPort();
+	}
+
+	/**
+	 * stop serving metrics
+	 */
+	@Override
+	public void close() {
+		this.server.stop(0);
+		this.executor.shutdownNow();
+	}
+
+}
@@ -0,0 +1,153 @@
+package gol;
+
+import java.util.Map;
+
+/**
+ * the JMX view of a simulation's Metrics, registered by Metrics.register.
+ * Latencies are in microseconds; rates are per second over the last second
+ * or more since they were last read.
+ */
+public interface MetricsMXBean {
+
+	/**
+	 * whether the metrics are being recorded
+	 * 
+	 * @return true iff recording
+	 */
+	boolean isEnabled();
+
+	/**
+	 * start or stop recording the metrics; the values recorded so far stay
+	 * 
+	 * @param enabled
+	 *            true to record
+	 */
+	void setEnabled(boolean enabled);
+
+	/**
+	 * generation of the board as last published
+	 * 
+	 * @return generation
+	 */
+	long getGeneration();
+
+	/**
+	 * generations stepped per second
+	 * 
+	 * @return rate per second
+	 */
+	double getGenerationsPerSecond();
+
+	/**
+	 * live cells of the board as last published
+	 * 
+	 * @return count
+	 */
+	long getLiveCells();
+
+	/**
+	 * change in live cells from the state published before
+	 * 
+	 * @return cells born less cells died
+	 */
+	long getPopulationDelta();
+
+	/**
+	 * generations stepped while recording
+	 * 
+	 * @return count
+	 */
+	long getSteps();
+
+	/**
+	 * mean time of a step
+	 * 
+	 * @return microseconds
+	 */
+	double getStepMeanMicros();
+
+	/**
+	 * median time of a step
+	 * 
+	 * @return microseconds
+	 */
+	double getStepP50Micros();
+
+	/**
+	 * 99th percentile time of a step
+	 * 
+	 * @return microseconds
+	 */
+	double getStepP99Micros();
+
+	/**
+	 * 99.9th percentile time of a step
+	 * 
+	 * @return microseconds
+	 */
+	double getStepP999Micros();
+
+	/**
+	 * longest time of a step
+	 * 
+	 * @return microseconds
+	 */
+	double getStepMaxMicros();
+
+	/**
+	 * mean time to render the view of look() for a state
+	 * 
+	 * @return microseconds
+	 */
+	double getRenderMeanMicros();
+
+	/**
+	 * 99th percentile time to render the view of look()
+	 * 
+	 * @return microseconds
+	 */
+	double getRenderP99Micros();
+
+	/**
+	 * bytes allocated by the tick thread for the last generation
+	 * 
+	 * @return bytes, or -1 if the Java runtime cannot tell
+	 */
+	long getAllocatedBytesPerGeneration();
+
+	/**
+	 * clients connected now
+	 * 
+	 * @return count
+	 */
+	int getActiveConnections();
+
+	/**
+	 * clients connected since the server started
+	 * 
+	 * @return count
+	 */
+	long getTotalConnections();
+
+	/**
+	 * commands answered, by command
+	 * 
+	 * @return count by command name
+	 */
+	Map<String, Long> getCommandCounts();
+
+	/**
+	 * commands answered per second, by command
+	 * 
+	 * @return rate by command name
+	 */
+	Map<String, Double> getCommandsPerSecond();
+
+	/**
+	 * 99th percentile time to answer a command, by command
+	 * 
+	 * @return microseconds by command name
+	 */
+	Map<String, Double> getCommandP99Micros();
+
+}
@@ -0,0 +1,559 @@
+package gol;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * a Game of Life server speaking the line protocol of GameServer, with every
+ * client connection multiplexed over a few event loop threads instead of a
+ * thread each.
+ * 
+ * <p>
+ * Each event loop owns a Selector and the connections handed to it. A
+ * connection reads into its own buffer and queues its replies, which are
+ * written as the socket accepts them. Once more than HIGH_WATER_BYTES of
+ * replies are queued for a client, the server stops reading its requests
+ * until they have been written, so a client that does not read cannot make
+ * the server buffer without bound.
+ * 
+ * <p>
+ * A client that watches holds at most one frame being written and the
+ * latest frame after it; newer frames replace that one, so a slow client
+ * skips generations instead of holding up the tick thread or the loop. A
+ * binary watcher that skipped a generation gets a keyframe next.
+ */
+public class NioGameServer implements Closeable {
+
+	/** read buffer of a connection, enough for any short request line */
+	private static final int LINE_BYTES = 1024;
+	/** longest request line, line end included, such as a large stamp */
+	private static final int MAX_LINE_BYTES = 1 << 20;
+	/** queued reply bytes above which a connection's requests wait */
+	private static final int HIGH_WATER_BYTES = 1 << 20;
+	private static final ByteBuffer LINE_TOO_LONG = ByteBuffer
+			.wrap("request line too long\n".getBytes(StandardCharsets.US_ASCII)).asReadOnlyBuffer();
+
+	private final ServerSocketChannel serverChannel;
+	private final Simulation simulation;
+	private final EventLoop[] loops;
+	private final AtomicInteger numConnections = new AtomicInteger();
+
+	/*
+	 * AF(serverChannel, simulation, loops, numConnections) = a server of the
+	 * board stepped by simulation, listening on serverChannel, whose clients
+	 * are served by loops, that has accepted numConnections clients
+	 * 
+	 * rep invariant: loops.length > 0, and every accepted connection is
+	 * registered with exactly one loop
+	 * 
+	 * thread safety: serve runs on the caller's thread and only hands new
+	 * channels to the loops through their locked queues; each loop's
+	 * selector and connections are only touched by its own thread; they
+	 * read the state the simulation publishes and queue edits to it, and
+	 * never touch the board
+	 */
+
+	/**
+	 * make a new server that listens for connections on port, and start its
+	 * event loops
+	 * 
+	 * @param port
+	 *            port number, requires 0 <= port <= 65535; 0 picks a free port
+	 * @param board
+	 *            board to serve
+	 * @param eventLoops
+	 *            number of event loop threads, requires eventLoops > 0
+	 * @throws IOException
+	 *             if an error occurs opening the server socket
+	 */
+	public NioGameServer(int port, GameBoard board, int eventLoops) throws IOException {
+		this(port, new Simulation(board), eventLoops);
+	}
+
+	/**
+	 * make a new server of a simulation that listens for connections on
+	 * port, and start its event loops. Clients that watch get the
+	 * simulation's frames.
+	 * 
+	 * @param port
+	 *            port number, requires 0 <= port <= 65535; 0 picks a free port
+	 * @param simulation
+	 *            simulation of the board to serve
+	 * @param eventLoops
+	 *            number of event loop threads, requires eventLoops > 0
+	 * @throws IOException
+	 *             if an error occurs opening the server socket
+	 */
+	public NioGameServer(int port, Simulation simulation, int eventLoops) throws IOException {
+		if (eventLoops < 1) {
+			throw new IllegalArgumentException("eventLoops must be positive: " + eventLoops);
+		}
+		this.serverChannel = ServerSocketChannel.open();
+		this.serverChannel.bind(new InetSocketAddress(port));
+		this.simulation = simulation;
+		this.loops = new EventLoop[eventLoops];
+		for (int i = 0; i < eventLoops; ++i) {
+			this.loops[i] = new EventLoop();
+			Thread thread = new Thread(this.loops[i], "gol-event-loop-" + i);
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * port the server listens on
+	 * 
+	 * @return local port of the server socket
+	 */
+	public int port() {
+		return this.serverChannel.socket().getLocalPort();
+	}
+
+	/**
+	 * accept client connections, handing them to the event loops in turn.
+	 * Never returns, unless an exception is thrown or the server is closed.
+	 * 
+	 * @throws IOException
+	 *             if an error occurs waiting for a connection (IOExceptions
+	 *             from individual clients do *not* terminate serve())
+	 */
+	public void serve() throws IOException {
+		for (int next = 0;; next = (next + 1) % this.loops.length) {
+			SocketChannel channel;
+			try {
+				channel = this.serverChannel.accept();
+			} catch (ClosedChannelException cce) {
+				return;
+			}
+			this.loops[next].add(channel, this.numConnections.incrementAndGet());
+		}
+	}
+
+	/**
+	 * stop accepting connections and close every client connection
+	 * 
+	 * @throws IOException
+	 *             if an error occurs closing the server socket
+	 */
+	@Override
+	public void close() throws IOException {
+		this.serverChannel.close();
+		for (EventLoop loop : this.loops) {
+			loop.close();
+		}
+	}
+
+	/**
+	 * a thread serving the connections registered with its selector
+	 */
+	private class EventLoop implements Runnable {
+
+		private final Selector selector;
+		private final ArrayDeque<SocketChannel> added = new ArrayDeque<>();
+		private final ArrayDeque<Integer> players = new ArrayDeque<>();
+		private final ArrayDeque<Connection> framed = new ArrayDeque<>();
+		private final Set<Connection> connections = new HashSet<>();
+		private volatile boolean closed;
+
+		/*
+		 * added and players hold the channels handed over by serve and their
+		 * player numbers, and framed the watching connections with a new
+		 * frame, all guarded by this; selector and connections are only
+		 * touched by the loop's own thread
+		 */
+
+		EventLoop() throws IOException {
+			this.selector = Selector.open();
+		}
+
+		/**
+		 * hand a newly accepted connection to this loop
+		 */
+		void add(SocketChannel channel, int player) {
+			synchronized (this) {
+				this.added.add(channel);
+				this.players.add(player);
+			}
+			this.selector.wakeup();
+		}
+
+		/**
+		 * have the loop send a watching connection its new frame; called on
+		 * the tick thread
+		 */
+		void framed(Connection connection) {
+			synchronized (this) {
+				this.framed.add(connection);
+			}
+			this.selector.wakeup();
+		}
+
+		/**
+		 * make the loop close its connections and stop
+		 */
+		void close() {
+			this.closed = true;
+			this.selector.wakeup();
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (!this.closed) {
+					this.selector.select();
+					register();
+					sendFrames();
+					Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+					while (keys.hasNext()) {
+						SelectionKey key = keys.next();
+						keys.remove();
+						Connection connection = (Connection) key.attachment();
+						try {
+							if (key.isReadable()) {
+								connection.read();
+							}
+							if (key.isValid() && key.isWritable()) {
+								connection.write();
+							}
+						} catch (IOException ioe) {
+							// this exception ends only the client's connection
+							connection.close();
+						}
+					}
+				}
+			} catch (IOException ioe) {
+				ioe.printStackTrace();
+			} finally {
+				for (Connection connection : new ArrayList<>(this.connections)) {
+					connection.close();
+				}
+				synchronized (this) {
+					for (SocketChannel channel : this.added) {
+						closeQuietly(channel);
+					}
+					this.added.clear();
+				}
+				try {
+					this.selector.close();
+				} catch (IOException ioe) {
+					ioe.printStackTrace();
+				}
+			}
+		}
+
+		/**
+		 * helper method to send the watching connections their new frames
+		 */
+		private void sendFrames() {
+			while (true) {
+				Connection connection;
+				synchronized (this) {
+					if (this.framed.isEmpty()) {
+						return;
+					}
+					connection = this.framed.remove();
+				}
+				try {
+					connection.sendFrame();
+				} catch (IOException ioe) {
+					connection.close();
+				}
+			}
+		}
+
+		/**
+		 * helper method to register the connections added since the last
+		 * select with the selector, and greet them
+		 */
+		private void register() {
+			while (true) {
+				SocketChannel channel;
+				int player;
+				synchronized (this) {
+					if (this.added.isEmpty()) {
+						return;
+					}
+					channel = this.added.remove();
+					player = this.players.remove();
+				}
+				try {
+					channel.configureBlocking(false);
+					SelectionKey key = channel.register(this.selector, SelectionKey.OP_READ);
+					Connection connection = new Connection(this, channel, key);
+					key.attach(connection);
+					this.connections.add(connection);
+					try {
+						connection.send(ByteBuffer.wrap(GameServer.welcome(NioGameServer.this.simulation, player)
+								.getBytes(StandardCharsets.US_ASCII)));
+					} catch (IOException ioe) {
+						connection.close();
+					}
+				} catch (IOException ioe) {
+					ioe.printStackTrace();
+					closeQuietly(channel);
+				}
+			}
+		}
+	}
+
+	/**
+	 * one client connection, touched only by the thread of its event loop
+	 */
+	private class Connection {
+
+		private final EventLoop loop;
+		private final SocketChannel channel;
+		private final SelectionKey key;
+		private ByteBuffer in = ByteBuffer.allocate(LINE_BYTES);
+		private final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+		private long queuedBytes;
+		private boolean closing;
+		private GameServer.Watch watching;
+		private boolean closed;
+		private final AtomicReference<ByteBuffer> nextFrame = new AtomicReference<>();
+		private final AtomicReference<DeltaFrame> nextDelta = new AtomicReference<>();
+		private long sentSerial = -1;
+		private final Simulation.Subscriber<ByteBuffer> frames = new Simulation.Subscriber<ByteBuffer>() {
+			public void frame(ByteBuffer frame) {
+				if (nextFrame.getAndSet(frame) == null) {
+					loop.framed(Connection.this);
+				}
+			}
+		};
+		private final Simulation.Subscriber<DeltaFrame> deltas = new Simulation.Subscriber<DeltaFrame>() {
+			public void frame(DeltaFrame frame) {
+				if (nextDelta.getAndSet(frame) == null) {
+					loop.framed(Connection.this);
+				}
+			}
+		};
+
+		/*
+		 * in holds bytes read but not yet handled, in write mode, and grows
+		 * from LINE_BYTES up to MAX_LINE_BYTES while a long line comes in;
+		 * out holds the replies not yet written, queuedBytes counts their
+		 * remaining bytes; closing is true once the client said bye, after which
+		 * nothing more is read and the connection closes when out is empty;
+		 * watching is the frames the client asked to watch, or null, and once
+		 * it is set the client's input is dropped and out only ever holds the
+		 * frame being written; nextFrame or nextDelta is the latest frame not
+		 * yet queued, set on the tick thread through frames or deltas, and
+		 * sentSerial the serial of the last binary frame queued
+		 */
+
+		Connection(EventLoop loop, SocketChannel channel, SelectionKey key) {
+			this.loop = loop;
+			this.channel = channel;
+			this.key = key;
+			NioGameServer.this.simulation.metrics().connected();
+		}
+
+		/**
+		 * helper method to move the bytes of in to a new buffer of the given
+		 * capacity, in write mode
+		 */
+		private ByteBuffer resized(int capacity) {
+			ByteBuffer resized = ByteBuffer.allocate(capacity);
+			this.in.flip();
+			resized.put(this.in);
+			return resized;
+		}
+
+		/**
+		 * read what the client sent and handle its complete lines
+		 */
+		void read() throws IOException {
+			int read = this.channel.read(this.in);
+			if (read < 0) {
+				close();
+				return;
+			}
+			handleLines();
+		}
+
+		/**
+		 * helper method to handle the complete lines in the read buffer,
+		 * until the client said bye or too many reply bytes are queued, and
+		 * read more only when neither is the case
+		 */
+		private void handleLines() throws IOException {
+			if (this.watching != null) {
+				this.in.clear();
+				return;
+			}
+			this.in.flip();
+			while (!this.closing && this.queuedBytes <= HIGH_WATER_BYTES) {
+				int end = -1;
+				for (int i = this.in.position(); i < this.in.limit(); ++i) {
+					if (this.in.get(i) == '\n') {
+						end = i;
+						break;
+					}
+				}
+				if (end < 0) {
+					break;
+				}
+				int length = end - this.in.position();
+				if (length > 0 && this.in.get(end - 1) == '\r') {
+					length -= 1;
+				}
+				String line = new String(this.in.array(), this.in.position(), length, StandardCharsets.US_ASCII);
+				this.in.position(end + 1);
+
+				Optional<GameServer.Watch> watch = GameServer.watches(line);
+				if (watch.isPresent()) {
+					NioGameServer.this.simulation.metrics().command(Metrics.Command.WATCH, 0);
+					this.watching = watch.get();
+					this.in.clear();
+					this.key.interestOps(SelectionKey.OP_READ | (this.out.isEmpty() ? 0 : SelectionKey.OP_WRITE));
+					if (this.watching == GameServer.Watch.TEXT) {
+						NioGameServer.this.simulation.subscribe(this.frames);
+					} else {
+						NioGameServer.this.simulation.subscribeDeltas(this.deltas);
+					}
+					return;
+				}
+
+				Optional<ByteBuffer> reply = GameServer.respond(NioGameServer.this.simulation, line);
+				if (reply.isPresent()) {
+					send(reply.get());
+				} else {
+					this.closing = true;
+				}
+			}
+			boolean full = this.in.position() == 0 && this.in.limit() == this.in.capacity();
+			this.in.compact();
+			if (full && !this.closing && this.in.capacity() < MAX_LINE_BYTES) {
+				this.in = resized(Math.min(2 * this.in.capacity(), MAX_LINE_BYTES));
+			} else if (full && !this.closing) {
+				send(LINE_TOO_LONG.duplicate());
+				this.closing = true;
+			} else if (this.in.position() == 0 && this.in.capacity() > LINE_BYTES) {
+				// the long line is done; keep idle connections small
+				this.in = resized(LINE_BYTES);
+			}
+
+			boolean reading = !this.closing && this.queuedBytes <= HIGH_WATER_BYTES;
+			if (this.closing && this.out.isEmpty()) {
+				close();
+			} else if (this.key.isValid()) {
+				int ops = (reading ? SelectionKey.OP_READ : 0) | (this.out.isEmpty() ? 0 : SelectionKey.OP_WRITE);
+				this.key.interestOps(ops);
+			}
+		}
+
+		/**
+		 * queue the latest frame, unless a frame is still being written, in
+		 * which case write() queues it once that one is out
+		 */
+		void sendFrame() throws IOException {
+			if (this.closed || !this.out.isEmpty()) {
+				return;
+			}
+			ByteBuffer frame = null;
+			if (this.watching == GameServer.Watch.TEXT) {
+				frame = this.nextFrame.getAndSet(null);
+			} else {
+				DeltaFrame delta = this.nextDelta.getAndSet(null);
+				if (delta != null) {
+					frame = delta.after(this.sentSerial);
+					this.sentSerial = delta.serial();
+				}
+			}
+			if (frame != null) {
+				send(frame);
+				if (!this.out.isEmpty() && this.key.isValid()) {
+					this.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+				}
+			}
+		}
+
+		/**
+		 * queue a reply and write as much of it as the socket takes now
+		 */
+		void send(ByteBuffer reply) throws IOException {
+			this.out.add(reply);
+			this.queuedBytes += reply.remaining();
+			flush();
+		}
+
+		/**
+		 * write queued replies now that the socket takes more, and handle
+		 * requests that waited for them
+		 */
+		void write() throws IOException {
+			flush();
+			if (this.watching != null) {
+				sendFrame();
+				if (this.out.isEmpty() && this.key.isValid()) {
+					this.key.interestOps(SelectionKey.OP_READ);
+				}
+			} else {
+				handleLines();
+			}
+		}
+
+		/**
+		 * helper method to write queued replies until the queue is empty or
+		 * the socket takes no more
+		 */
+		private void flush() throws IOException {
+			while (!this.out.isEmpty()) {
+				ByteBuffer head = this.out.peek();
+				this.queuedBytes -= this.channel.write(head);
+				if (head.hasRemaining()) {
+					return;
+				}
+				this.out.remove();
+			}
+		}
+
+		/**
+		 * close the connection
+		 */
+		void close() {
+			if (this.closed) {
+				return;
+			}
+			this.closed = true;
+			NioGameServer.this.simulation.metrics().disconnected();
+			if (this.watching == GameServer.Watch.TEXT) {
+				NioGameServer.this.simulation.unsubscribe(this.frames);
+			} else if (this.watching == GameServer.Watch.BINARY) {
+				NioGameServer.this.simulation.unsubscribeDeltas(this.deltas);
+			}
+			this.loop.connections.remove(this);
+			this.key.cancel();
+			closeQuietly(this.channel);
+		}
+	}
+
+	/**
+	 * helper method to close a client channel, which fails only if the
+	 * client is gone already
+	 */
+	private static void closeQuietly(SocketChannel channel) {
+		try {
+			channel.close();
+		} catch (IOException ioe) {
+			// nothing more to do for this client
+		}
+	}
+
+}
@@ -0,0 +1,44 @@
+package gol;
+
+/**
+ * computes words of one row of the next generation several at a time, for
+ * the VECTOR kernel. The implementation is compiled apart from the rest of
+ * the game against the Vector API, so GameBoard only sees this interface.
+ */
+interface RowStepper {
+
+	/**
+	 * compute a prefix of words [from, to) of one row of the next
+	 * generation, none of them at the west or east edge, into dst, and OR
+	 * how each word changed into diff, as GameBoard.stepRowWords does
+	 * 
+	 * @param masks
+	 *            the masks of the rule to step by, as given by Rule.masks,
+	 *            or null to step by Conway's
+	 * @param aboveSrc
+	 *            array holding the row above
+	 * @param above
+	 *            index of the first word of the row above in aboveSrc
+	 * @param src
+	 *            array holding the row
+	 * @param here
+	 *            index of the first word of the row in src and dst
+	 * @param belowSrc
+	 *            array holding the row below
+	 * @param below
+	 *            index of the first word of the row below in belowSrc
+	 * @param dst
+	 *            array the next generation is written to
+	 * @param diff
+	 *            words of the row, each ORed with how it changed
+	 * @param from
+	 *            first word to compute, requires from > 0
+	 * @param to
+	 *            word after the last to compute, requires to < wordsPerRow
+	 * @return the first word not computed, between from and to; the caller
+	 *         computes the rest
+	 */
+	int step(long[] masks, long[] aboveSrc, int above, long[] src, int here, long[] belowSrc, int below, long[] dst,
+			long[] diff, int from, int to);
+
+}
@@ -0,0 +1,232 @@
+package gol;
+
+/**
+ * an immutable data type representing an outer totalistic rule of a two
+ * state life-like automaton: whether a cell is alive in the next generation
+ * depends only on whether it is alive now and how many of its eight
+ * neighbours are. Rules are written in B/S notation, such as "B3/S23" for
+ * Conway's Life, "B36/S23" for HighLife or "B2/S" for Seeds.
+ */
+public final class Rule {
+
+	/** Conway's Game of Life, B3/S23 */
+	public static final Rule CONWAY = new Rule(1 << 3, (1 << 2) | (1 << 3));
+
+	private final int birth;
+	private final int survival;
+	private final long[] masks = new long[18];
+
+	/*
+	 * AF(birth, survival) = the rule under which a dead cell with n live
+	 * neighbours is born iff bit n of birth is set, and a live cell with n
+	 * live neighbours lives on iff bit n of survival is set
+	 * 
+	 * rep invariant: birth and survival have no bits set above bit 8, and bit
+	 * 0 of birth is clear; masks[n] is -1 if bit n of birth is set and 0
+	 * otherwise, and masks[9 + n] the same for survival, for 0 <= n <= 8
+	 * 
+	 * safety from rep exposure: all fields are private final, and masks is
+	 * handed out only within the package, to kernels that never change it
+	 */
+
+	/**
+	 * helper constructor from the masks, which must satisfy the rep
+	 * invariant
+	 */
+	private Rule(int birth, int survival) {
+		this.birth = birth;
+		this.survival = survival;
+		for (int n = 0; n <= 8; ++n) {
+			this.masks[n] = -((birth >>> n) & 1L);
+			this.masks[9 + n] = -((survival >>> n) & 1L);
+		}
+	}
+
+	/**
+	 * make a rule from its birth and survival masks
+	 * 
+	 * @param birth
+	 *            bit n is set iff a dead cell with n live neighbours is born
+	 * @param survival
+	 *            bit n is set iff a live cell with n live neighbours lives
+	 * @return the rule
+	 * @throws IllegalArgumentException
+	 *             if a mask has a bit set above bit 8, or birth has bit 0 set:
+	 *             rules where empty space comes alive are not supported
+	 */
+	public static Rule of(int birth, int survival) {
+		if ((birth & ~0x1FF) != 0 || (survival & ~0x1FF) != 0) {
+			throw new IllegalArgumentException("neighbour counts go up to 8");
+		}
+		if ((birth & 1) != 0) {
+			throw new IllegalArgumentException("B0 rules are not supported");
+		}
+		return birth == CONWAY.birth && survival == CONWAY.survival ? CONWAY : new Rule(birth, survival);
+	}
+
+	/**
+	 * parse a rule in B/S notation, "B" and the birth counts, "/", then "S"
+	 * and the survival counts, such as "B36/S23"; the letters may be lower
+	 * case and the two halves in either order. The older S/B notation of
+	 * counts only, survival first, such as "23/36", is read too.
+	 * 
+	 * @param rule
+	 *            rule to parse
+	 * @return the rule
+	 * @throws IllegalArgumentException
+	 *             if rule is not well formed, or is not supported by of
+	 */
+	public static Rule parse(String rule) {
+		String[] halves = rule.trim().split("/", -1);
+		if (halves.length != 2) {
+			throw new IllegalArgumentException("rule must be B/S, like B3/S23: \"" + rule + "\"");
+		}
+		String births;
+		String survivals;
+		String first = halves[0].toUpperCase();
+		String second = halves[1].toUpperCase();
+		if (first.startsWith("B") && second.startsWith("S")) {
+			births = first.substring(1);
+			survivals = second.substring(1);
+		} else if (first.startsWith("S") && second.startsWith("B")) {
+			births = second.substring(1);
+			survivals = first.substring(1);
+		} else {
+			births = second;
+			survivals = first;
+		}
+		return of(counts(births, rule), counts(survivals, rule));
+	}
+
+	/**
+	 * helper method to read a list of neighbour counts as a mask
+	 */
+	private static int counts(String digits, String rule) {
+		int mask = 0;
+		for (int i = 0; i < digits.length(); ++i) {
+			char c = digits.charAt(i);
+			if (c < '0' || c > '8') {
+				throw new IllegalArgumentException("unexpected '" + c + "' in rule \"" + rule + "\"");
+			}
+			mask |= 1 << (c - '0');
+		}
+		return mask;
+	}
+
+	/**
+	 * the birth mask of this rule
+	 * 
+	 * @return mask whose bit n is set iff a dead cell with n live neighbours
+	 *         is born
+	 */
+	public int birth() {
+		return this.birth;
+	}
+
+	/**
+	 * the survival mask of this rule
+	 * 
+	 * @return mask whose bit n is set iff a live cell with n live neighbours
+	 *         lives on
+	 */
+	public int survival() {
+		return this.survival;
+	}
+
+	/**
+	 * the next state of a cell
+	 * 
+	 * @param alive
+	 *            whether the cell is alive
+	 * @param count
+	 *            number of its live neighbours, requires 0 <= count <= 8
+	 * @return true iff the cell is alive in the next generation
+	 */
+	public boolean next(boolean alive, int count) {
+		return (((alive ? this.survival : this.birth) >>> count) & 1) != 0;
+	}
+
+	/**
+	 * the next states of 64 cells at once, given each cell's state and the
+	 * four bits of its live neighbour count, all lined up bit for bit
+	 * 
+	 * @param alive
+	 *            bit b is set iff cell b is alive
+	 * @param ones
+	 *            bit b is bit 0 of the count of cell b
+	 * @param twos
+	 *            bit b is bit 1 of the count of cell b
+	 * @param fours
+	 *            bit b is bit 2 of the count of cell b
+	 * @param eights
+	 *            bit b is bit 3 of the count of cell b
+	 * @return word whose bit b is set iff cell b is alive in the next
+	 *         generation
+	 */
+	long next(long alive, long ones, long twos, long fours, long eights) {
+		long[] m = this.masks;
+		// a tree of selects on the count bits, lowest first, over the masks
+		// for each count
+		long dead = select(fours,
+				select(twos, select(ones, m[7], m[6]), select(ones, m[5], m[4])),
+				select(twos, select(ones, m[3], m[2]), select(ones, m[1], m[0])));
+		long live = select(fours,
+				select(twos, select(ones, m[16], m[15]), select(ones, m[14], m[13])),
+				select(twos, select(ones, m[12], m[11]), select(ones, m[10], m[9])));
+		// a count of eight has its other bits clear
+		return select(eights, select(alive, m[17], m[8]), select(alive, live, dead));
+	}
+
+	/**
+	 * the masks Rule.next selects between, for kernels that step words the
+	 * same way outside this class
+	 * 
+	 * @return 18 words: word n is -1 iff a dead cell with n live neighbours
+	 *         is born and 0 otherwise, and word 9 + n the same for a live
+	 *         cell living on; must not be changed
+	 */
+	long[] masks() {
+		return this.masks;
+	}
+
+	/**
+	 * helper method to take the bits of ifSet where which is set, and of
+	 * ifClear elsewhere
+	 */
+	private static long select(long which, long ifSet, long ifClear) {
+		return (which & ifSet) | (~which & ifClear);
+	}
+
+	@Override
+	public boolean equals(Object that) {
+		return that instanceof Rule && ((Rule) that).birth == this.birth && ((Rule) that).survival == this.survival;
+	}
+
+	@Override
+	public int hashCode() {
+		return this.birth * 512 + this.survival;
+	}
+
+	/**
+	 * this rule in B/S notation
+	 * 
+	 * @return rule such as "B36/S23", as read by parse
+	 */
+	@Override
+	public String toString() {
+		StringBuilder rule = new StringBuilder("B");
+		for (int n = 0; n <= 8; ++n) {
+			if ((this.birth >>> n & 1) != 0) {
+				rule.append(n);
+			}
+		}
+		rule.append("/S");
+		for (int n = 0; n <= 8; ++n) {
+			if ((this.survival >>> n & 1) != 0) {
+				rule.append(n);
+			}
+		}
+		return rule.toString();
+	}
+
+}
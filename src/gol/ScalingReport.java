@@ -0,0 +1,67 @@
+package gol;
+
+/**
+ * reports how fast a large random GameBoard steps as the number of threads
+ * doubles, from 1 up to the number of available processors. Every thread
+ * count starts from the same seeded board, so each times the same
+ * generations.
+ */
+public class ScalingReport {
+
+	private static final int DEFAULT_SIZE = 4096;
+	private static final int DEFAULT_GENERATIONS = 200;
+	private static final int WARMUP_GENERATIONS = 50;
+	private static final long SEED = 1;
+
+	/**
+	 * print generations/sec for 1, 2, 4, ... threads
+	 * 
+	 * <pre>
+	 *      gol.ScalingReport [SIZE [GENERATIONS]]
+	 * </pre>
+	 * 
+	 * @param args
+	 *            optional side length of the square board (default 4096) and
+	 *            number of generations to time per thread count (default 200)
+	 */
+	public static void main(String[] args) {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SIZE;
+		int generations = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_GENERATIONS;
+		int processors = Runtime.getRuntime().availableProcessors();
+
+		System.out.println("board " + size + " x " + size + ", " + generations + " generations, " + processors
+				+ " processors");
+		System.out.println("threads\tgen/sec\tspeedup");
+
+		double serial = 0;
+		for (int threads = 1; threads <= processors; threads = nextThreadCount(threads, processors)) {
+			GameBoard board = new GameBoard(size, size, Topology.TORUS, GameBoard.DEFAULT_DENSITY, SEED);
+			board.setParallelism(threads);
+			for (int i = 0; i < WARMUP_GENERATIONS; ++i) {
+				board.updateBoard();
+			}
+
+			long start = System.nanoTime();
+			for (int i = 0; i < generations; ++i) {
+				board.updateBoard();
+			}
+			double perSecond = generations / ((System.nanoTime() - start) / 1e9);
+			if (threads == 1) {
+				serial = perSecond;
+			}
+			System.out.println(String.format("%d\t%.1f\t%.2fx", threads, perSecond, perSecond / serial));
+			board.setParallelism(1);
+		}
+	}
+
+	/**
+	 * helper method to double the thread count, ending on exactly processors
+	 */
+	private static int nextThreadCount(int threads, int processors) {
+		if (threads == processors) {
+			return processors + 1;
+		}
+		return Math.min(threads * 2, processors);
+	}
+
+}
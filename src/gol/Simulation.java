@@ -0,0 +1,461 @@
+package gol;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * steps a GameBoard on a tick thread of its own and hands every new
+ * generation to its subscribers as a frame: the line "generation N"
+ * followed by the view of look(). A frame is rendered at most once per
+ * generation, when a subscriber or a view first needs it, and the same
+ * read-only bytes go to every subscriber. Subscribers of the binary stream
+ * get DeltaFrames instead, encoded only while there are any. A generation
+ * nobody watches or looks at costs its step and snapshot only.
+ * 
+ * <p>
+ * The board itself is only ever touched by the tick thread. After every step
+ * the tick thread publishes the new generation, its snapshot and the views
+ * made from it, as one object through a volatile field, so any number of
+ * threads can read the current generation without locking and never see
+ * half of a step. Edits are queued by any thread and applied by the tick
+ * thread, all of those queued at once in one batch between two generations,
+ * and the edited board is published like a step.
+ */
+public class Simulation implements Closeable {
+
+	/**
+	 * receives the frames of a simulation
+	 * 
+	 * @param <F>
+	 *            type of the frames
+	 */
+	public interface Subscriber<F> {
+
+		/**
+		 * take a new frame. Called on the tick thread, so it must not block;
+		 * a subscriber that cannot keep up should drop or replace frames
+		 * rather than queue them all.
+		 * 
+		 * @param frame
+		 *            the frame; a ByteBuffer frame is read-only, with its own
+		 *            position and limit shared with no one
+		 */
+		void frame(F frame);
+	}
+
+	private final GameBoard board;
+	private final Set<Subscriber<ByteBuffer>> subscribers = new CopyOnWriteArraySet<>();
+	private final Set<Subscriber<DeltaFrame>> deltaSubscribers = new CopyOnWriteArraySet<>();
+	private final ConcurrentLinkedQueue<Consumer<GameBoard>> edits = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean editsScheduled = new AtomicBoolean();
+	private final ScheduledExecutorService ticker;
+	private final WordCodec deltaCodec = new WordCodec();
+	private final WordCodec keyframeCodec = new WordCodec();
+	private final Metrics metrics = new Metrics();
+	private long serial;
+	private volatile Generation current;
+
+	/*
+	 * AF(board, subscribers, deltaSubscribers, edits, current) = a simulation
+	 * of board sending frames to subscribers and deltaSubscribers, whose
+	 * current state is current, with edits still to be applied
+	 * 
+	 * rep invariant: current is the published state of the board after the
+	 * last step or batch of edits, and current.serial == serial
+	 * 
+	 * thread safety: board, deltaCodec and serial are confined to the tick
+	 * thread, or to the constructor before it starts. current is volatile and
+	 * refers to a Generation, whose snapshot never changes and whose frames
+	 * are made from it at most once, holding its monitor. current changes, and frames are sent
+	 * to subscribers, only while holding this object's monitor, so a new
+	 * subscriber never gets an older frame after a newer one. edits and the
+	 * subscriber sets are concurrent collections, and editsScheduled makes
+	 * sure at most one batch of edits is waiting on the tick thread. metrics
+	 * is thread safe
+	 */
+
+	/**
+	 * the published state of one generation, whose frames are made from its
+	 * snapshot the first time they are needed
+	 */
+	private class Generation {
+
+		final BoardSnapshot snapshot;
+		final long serial;
+		/** text frame, the header line and then the view, or null until needed */
+		private ByteBuffer frame;
+		/** the view of look(), the end of frame */
+		private ByteBuffer view;
+		/** binary frame, or null until needed */
+		private DeltaFrame deltaFrame;
+
+		Generation(BoardSnapshot snapshot, long serial, DeltaFrame deltaFrame) {
+			this.snapshot = snapshot;
+			this.serial = serial;
+			this.deltaFrame = deltaFrame;
+		}
+
+		/**
+		 * the text frame, rendered the first time
+		 */
+		synchronized ByteBuffer frame() {
+			if (this.frame == null) {
+				byte[] header = ("generation " + this.snapshot.generation() + "\n")
+						.getBytes(StandardCharsets.US_ASCII);
+				byte[] bytes = new byte[header.length
+						+ GameBoard.viewLength(this.snapshot.numRows(), this.snapshot.numColumns())];
+				System.arraycopy(header, 0, bytes, 0, header.length);
+				long start = System.nanoTime();
+				this.snapshot.render(bytes, header.length);
+				metrics.render(System.nanoTime() - start);
+				this.frame = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+				this.view = ByteBuffer.wrap(bytes, header.length, bytes.length - header.length).slice()
+						.asReadOnlyBuffer();
+			}
+			return this.frame;
+		}
+
+		/**
+		 * the view of look(), rendered the first time
+		 */
+		synchronized ByteBuffer view() {
+			frame();
+			return this.view;
+		}
+
+		/**
+		 * the binary frame, made the first time as a frame with a keyframe
+		 * only
+		 */
+		synchronized DeltaFrame deltaFrame() {
+			if (this.deltaFrame == null) {
+				this.deltaFrame = new DeltaFrame(this.serial, this.snapshot, null, null, keyframeCodec);
+			}
+			return this.deltaFrame;
+		}
+	}
+
+	/**
+	 * make a simulation of board, not yet ticking. From now on the board
+	 * belongs to the simulation and must not be used directly.
+	 * 
+	 * @param board
+	 *            board to step
+	 */
+	public Simulation(GameBoard board) {
+		this.board = board;
+		this.ticker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "gol-tick");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.current = render(false);
+	}
+
+	/**
+	 * number of rows of the board
+	 * 
+	 * @return rows of the board
+	 */
+	public int numRows() {
+		return this.board.numRows();
+	}
+
+	/**
+	 * number of columns of the board
+	 * 
+	 * @return columns of the board
+	 */
+	public int numColumns() {
+		return this.board.numColumns();
+	}
+
+	/**
+	 * generation of the current state
+	 * 
+	 * @return generation of the board as last published
+	 */
+	public long generation() {
+		return this.current.snapshot.generation();
+	}
+
+	/**
+	 * snapshot of the current state; never blocks
+	 * 
+	 * @return cells and generation of the board as last published
+	 */
+	public BoardSnapshot snapshot() {
+		return this.current.snapshot;
+	}
+
+	/**
+	 * view of the current state, in the format of GameBoard.look(); never
+	 * blocks
+	 * 
+	 * @return read-only buffer of the view of the board as last published
+	 */
+	public ByteBuffer view() {
+		return this.current.view().duplicate();
+	}
+
+	/**
+	 * metrics of this simulation, which the servers serving it record their
+	 * connections and commands into as well
+	 * 
+	 * @return the simulation's metrics
+	 */
+	public Metrics metrics() {
+		return this.metrics;
+	}
+
+	/**
+	 * start stepping the board once every period. A step that runs late
+	 * delays the ones after it rather than overlapping them.
+	 * 
+	 * @param periodMillis
+	 *            milliseconds between steps, requires periodMillis > 0
+	 */
+	public void start(long periodMillis) {
+		this.ticker.scheduleAtFixedRate(new Runnable() {
+			public void run() {
+				tick();
+			}
+		}, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * queue an edit of the board, to be applied on the tick thread between
+	 * two generations, together with every other edit queued by then. The
+	 * edit shows in the next state published, and never in part.
+	 * 
+	 * @param edit
+	 *            edit to apply to the board; it must not keep the board
+	 */
+	public void edit(Consumer<GameBoard> edit) {
+		this.edits.add(edit);
+		if (this.editsScheduled.compareAndSet(false, true)) {
+			try {
+				this.ticker.execute(new Runnable() {
+					public void run() {
+						editsScheduled.set(false);
+						if (applyEdits()) {
+							publish(render(!deltaSubscribers.isEmpty()));
+						}
+					}
+				});
+			} catch (RejectedExecutionException ree) {
+				// closed, so the edit will never show
+			}
+		}
+	}
+
+	/**
+	 * queue making a cell alive, as by edit
+	 * 
+	 * @param x
+	 *            x coordinate of the cell
+	 * @param y
+	 *            y coordinate of the cell
+	 */
+	public void produce(final int x, final int y) {
+		edit(new Consumer<GameBoard>() {
+			public void accept(GameBoard board) {
+				board.produce(x, y);
+			}
+		});
+	}
+
+	/**
+	 * queue making a cell dead, as by edit
+	 * 
+	 * @param x
+	 *            x coordinate of the cell
+	 * @param y
+	 *            y coordinate of the cell
+	 */
+	public void kill(final int x, final int y) {
+		edit(new Consumer<GameBoard>() {
+			public void accept(GameBoard board) {
+				board.kill(x, y);
+			}
+		});
+	}
+
+	/**
+	 * queue copying a pattern onto the board, as by edit and
+	 * GameBoard.stamp
+	 * 
+	 * @param pattern
+	 *            board holding the pattern; it must not change after
+	 * @param x
+	 *            x coordinate of the pattern's west column
+	 * @param y
+	 *            y coordinate of the pattern's north row
+	 */
+	public void stamp(final GameBoard pattern, final int x, final int y) {
+		edit(new Consumer<GameBoard>() {
+			public void accept(GameBoard board) {
+				board.stamp(pattern, x, y);
+			}
+		});
+	}
+
+	/**
+	 * subscribe to the frames of this simulation, starting with the frame of
+	 * the current generation, sent right away on the calling thread
+	 * 
+	 * @param subscriber
+	 *            subscriber to add
+	 */
+	public synchronized void subscribe(Subscriber<ByteBuffer> subscriber) {
+		this.subscribers.add(subscriber);
+		subscriber.frame(this.current.frame().duplicate());
+	}
+
+	/**
+	 * stop sending frames to a subscriber
+	 * 
+	 * @param subscriber
+	 *            subscriber to remove
+	 */
+	public void unsubscribe(Subscriber<ByteBuffer> subscriber) {
+		this.subscribers.remove(subscriber);
+	}
+
+	/**
+	 * subscribe to the binary frames of this simulation, starting with the
+	 * frame of the current generation, sent right away on the calling thread
+	 * 
+	 * @param subscriber
+	 *            subscriber to add
+	 */
+	synchronized void subscribeDeltas(Subscriber<DeltaFrame> subscriber) {
+		this.deltaSubscribers.add(subscriber);
+		subscriber.frame(this.current.deltaFrame());
+	}
+
+	/**
+	 * stop sending binary frames to a subscriber
+	 * 
+	 * @param subscriber
+	 *            subscriber to remove
+	 */
+	void unsubscribeDeltas(Subscriber<DeltaFrame> subscriber) {
+		this.deltaSubscribers.remove(subscriber);
+	}
+
+	/**
+	 * stop stepping the board; the subscribers get no more frames, and edits
+	 * not yet applied are dropped. A closed simulation cannot make binary
+	 * frames, so it must not get delta subscribers.
+	 */
+	@Override
+	public void close() {
+		this.ticker.shutdownNow();
+		this.subscribers.clear();
+		this.deltaSubscribers.clear();
+		// a tick still running fails if it reaches a closed codec, which
+		// ends it like the shutdown would have
+		this.deltaCodec.close();
+		synchronized (this.keyframeCodec) {
+			this.keyframeCodec.close();
+		}
+	}
+
+	/**
+	 * apply the queued edits, if any, step the board once and publish the
+	 * new generation, recording the step in the metrics; run on the tick
+	 * thread, or by a caller that never started the simulation
+	 */
+	void tick() {
+		applyEdits();
+		if (!this.metrics.isEnabled()) {
+			this.board.updateBoard();
+			publish(render(!this.deltaSubscribers.isEmpty()));
+			return;
+		}
+		// counts what the tick thread allocates, not the stepping threads of
+		// a parallel board
+		long allocated = Metrics.allocatedBytes();
+		long start = System.nanoTime();
+		this.board.updateBoard();
+		this.metrics.step(System.nanoTime() - start);
+		publish(render(!this.deltaSubscribers.isEmpty()));
+		this.metrics.allocated(allocated < 0 ? -1 : Metrics.allocatedBytes() - allocated);
+	}
+
+	/**
+	 * helper method run on the tick thread to apply every edit queued so far
+	 * 
+	 * @return true iff there was an edit to apply
+	 */
+	private boolean applyEdits() {
+		List<Consumer<GameBoard>> batch = new ArrayList<>();
+		for (Consumer<GameBoard> edit = this.edits.poll(); edit != null; edit = this.edits.poll()) {
+			batch.add(edit);
+		}
+		for (Consumer<GameBoard> edit : batch) {
+			try {
+				edit.accept(this.board);
+			} catch (RuntimeException re) {
+				// a bad edit must not stop the ticks
+				re.printStackTrace();
+			}
+		}
+		return !batch.isEmpty();
+	}
+
+	/**
+	 * helper method to make the published state of the board as it is now,
+	 * with a delta against the current state if asked for; the text frame is
+	 * left to be rendered when needed. Requires being on the tick thread, or
+	 * in the constructor
+	 */
+	private Generation render(boolean delta) {
+		BoardSnapshot snapshot = this.board.snapshot();
+		if (this.metrics.isEnabled()) {
+			this.metrics.published(snapshot.generation(), snapshot.population());
+		}
+		Generation previous = this.current;
+		this.serial += 1;
+		DeltaFrame deltaFrame = null;
+		if (delta) {
+			DeltaFrame base = previous == null ? null : previous.deltaFrame();
+			deltaFrame = new DeltaFrame(this.serial, snapshot, base, this.deltaCodec, this.keyframeCodec);
+		}
+		return new Generation(snapshot, this.serial, deltaFrame);
+	}
+
+	/**
+	 * helper method to make a state current and send its frames to the
+	 * subscribers, rendering them only if there are any
+	 */
+	private synchronized void publish(Generation generation) {
+		this.current = generation;
+		if (!this.subscribers.isEmpty()) {
+			ByteBuffer frame = generation.frame();
+			for (Subscriber<ByteBuffer> subscriber : this.subscribers) {
+				subscriber.frame(frame.duplicate());
+			}
+		}
+		for (Subscriber<DeltaFrame> subscriber : this.deltaSubscribers) {
+			subscriber.frame(generation.deltaFrame());
+		}
+	}
+
+}
@@ -0,0 +1,181 @@
+package gol;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * writes BoardSnapshots to checkpoint files and restores GameBoards from
+ * them. A checkpoint is a 32 byte header followed by the board's bit-packed
+ * rows, all little endian:
+ * 
+ * <pre>
+ *      offset  bytes  field
+ *           0      4  "GOLS"
+ *           4      4  layout version, 1
+ *           8      4  rows
+ *          12      4  columns
+ *          16      8  generation
+ *          24      2  birth mask: bit n is set iff a dead cell with n live neighbours is born
+ *          26      2  survival mask: bit n is set iff a live cell with n live neighbours lives
+ *          28      1  topology, as Topology.ordinal()
+ *          29      3  zero
+ *          32         rows * ((columns + 63) / 64) longs, row by row, with
+ *                     column x of a row at bit (x % 64) of long (x / 64)
+ * </pre>
+ * 
+ * Both directions map the file with FileChannel.map, so the cells move
+ * straight between the page cache and the board's own words, with no buffer
+ * in between.
+ */
+public class SnapshotFile {
+
+	/** "GOLS" read as a little endian int */
+	private static final int MAGIC = 0x534C4F47;
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 32;
+	/** most words mapped at once, 1 GB, well under the 2 GB limit of a mapping */
+	private static final int MAX_CHUNK_WORDS = 1 << 27;
+
+	private SnapshotFile() {
+		// only static methods
+	}
+
+	/**
+	 * write a snapshot to a checkpoint file. The file is written beside
+	 * its final name and then moved into place, so a crash never leaves a
+	 * half written checkpoint behind.
+	 * 
+	 * @param snapshot
+	 *            snapshot to write
+	 * @param file
+	 *            checkpoint to write, replaced if it exists
+	 * @throws IOException
+	 *             if the checkpoint cannot be written
+	 */
+	public static void write(BoardSnapshot snapshot, File file) throws IOException {
+		Path target = file.toPath().toAbsolutePath();
+		Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+				header.order(ByteOrder.LITTLE_ENDIAN);
+				header.putInt(MAGIC).putInt(VERSION);
+				header.putInt(snapshot.numRows()).putInt(snapshot.numColumns());
+				header.putLong(snapshot.generation());
+				header.putShort((short) snapshot.rule().birth()).putShort((short) snapshot.rule().survival());
+				header.put((byte) snapshot.topology().ordinal());
+				header.force();
+
+				long[] words = snapshot.words();
+				for (int from = 0; from < words.length; from += MAX_CHUNK_WORDS) {
+					int length = Math.min(MAX_CHUNK_WORDS, words.length - from);
+					MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_WRITE,
+							HEADER_BYTES + (long) from * Long.BYTES, (long) length * Long.BYTES);
+					chunk.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().put(words, from, length);
+					chunk.force();
+				}
+			}
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * write a snapshot to a checkpoint file on another thread, as by write.
+	 * The board the snapshot was taken from can keep stepping meanwhile.
+	 * 
+	 * @param snapshot
+	 *            snapshot to write
+	 * @param file
+	 *            checkpoint to write, replaced if it exists
+	 * @param executor
+	 *            executor to write on
+	 * @return future completed once the checkpoint is in place, or
+	 *         exceptionally with an UncheckedIOException if it cannot be
+	 *         written
+	 */
+	public static CompletableFuture<Void> writeAsync(final BoardSnapshot snapshot, final File file,
+			Executor executor) {
+		return CompletableFuture.runAsync(new Runnable() {
+			public void run() {
+				try {
+					write(snapshot, file);
+				} catch (IOException ioe) {
+					throw new UncheckedIOException(ioe);
+				}
+			}
+		}, executor);
+	}
+
+	/**
+	 * restore a board from a checkpoint file
+	 * 
+	 * @param file
+	 *            checkpoint written by write
+	 * @return new board with the checkpoint's size, topology, rule, cells and
+	 *         generation
+	 * @throws IOException
+	 *             if the checkpoint cannot be read, is not a checkpoint, or
+	 *             has a rule that Rule does not support
+	 */
+	public static GameBoard read(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_BYTES) {
+				throw new IOException("not a board snapshot: " + file);
+			}
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+			header.order(ByteOrder.LITTLE_ENDIAN);
+			if (header.getInt() != MAGIC) {
+				throw new IOException("not a board snapshot: " + file);
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw new IOException("unsupported snapshot version " + version + ": " + file);
+			}
+			int rows = header.getInt();
+			int columns = header.getInt();
+			long generation = header.getLong();
+			short birth = header.getShort();
+			short survival = header.getShort();
+			int topology = header.get();
+			Rule rule;
+			try {
+				rule = Rule.of(birth & 0xFFFF, survival & 0xFFFF);
+			} catch (IllegalArgumentException iae) {
+				throw new IOException("unsupported rule in snapshot: " + file, iae);
+			}
+			if (topology < 0 || topology >= Topology.values().length) {
+				throw new IOException("unknown topology " + topology + " in snapshot: " + file);
+			}
+			long words = rows < 0 || columns < 0 ? -1 : (long) rows * ((columns + 63) >>> 6);
+			if (words < 0 || words > Integer.MAX_VALUE - 8
+					|| channel.size() != HEADER_BYTES + words * Long.BYTES) {
+				throw new IOException("corrupt or truncated snapshot: " + file);
+			}
+
+			GameBoard board = new GameBoard(rows, columns, false, Topology.values()[topology]);
+			board.setRule(rule);
+			for (int from = 0; from < words; from += MAX_CHUNK_WORDS) {
+				int length = (int) Math.min(MAX_CHUNK_WORDS, words - from);
+				MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY,
+						HEADER_BYTES + (long) from * Long.BYTES, (long) length * Long.BYTES);
+				board.putWords(from, chunk.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer());
+			}
+			board.setGeneration(generation);
+			return board;
+		}
+	}
+
+}
@@ -0,0 +1,257 @@
+package gol;
+
+/**
+ * a mutable data type representing an unbounded Game of Life universe that
+ * stores only its live cells, for sparse patterns in a huge area. Each step
+ * visits only the live cells and their neighbours, so its cost follows the
+ * population rather than the area.
+ * 
+ * <p>
+ * Coordinates are ints; the universe wraps around at the int range.
+ */
+public class SparseLife {
+
+	private LongHashSet live;
+	private LongHashSet nextLive;
+	private final LongIntHashMap counts;
+	private long generation;
+
+	/*
+	 * AF(live, generation) = the universe whose live cells are the cells
+	 * (x, y) with pack(x, y) in live, after generation steps from the seed
+	 * 
+	 * rep invariant: live != nextLive; nextLive and counts are only scratch
+	 * space for updateBoard and are empty between calls
+	 */
+
+	/**
+	 * make an empty universe
+	 */
+	public SparseLife() {
+		this.live = new LongHashSet();
+		this.nextLive = new LongHashSet();
+		this.counts = new LongIntHashMap();
+		this.generation = 0;
+	}
+
+	/**
+	 * make a universe seeded with the live cells of a board, with the board's
+	 * cell (x, y) at the universe's cell (x, y)
+	 * 
+	 * @param seed
+	 *            board to copy the live cells from
+	 */
+	public SparseLife(GameBoard seed) {
+		this();
+		for (int i = 0; i < seed.numRows(); ++i) {
+			for (int j = 0; j < seed.numColumns(); ++j) {
+				if (seed.isAlive(j, i)) {
+					produce(j, i);
+				}
+			}
+		}
+	}
+
+	/**
+	 * helper method to pack a cell's coordinates into one key
+	 */
+	static long pack(int x, int y) {
+		return ((long) y << 32) | (x & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * helper method to get x back out of a key
+	 */
+	static int unpackX(long key) {
+		return (int) key;
+	}
+
+	/**
+	 * helper method to get y back out of a key
+	 */
+	static int unpackY(long key) {
+		return (int) (key >> 32);
+	}
+
+	/**
+	 * number of generations the universe has been stepped
+	 * 
+	 * @return generations since the seed
+	 */
+	public long generation() {
+		return this.generation;
+	}
+
+	/**
+	 * number of live cells in the universe
+	 * 
+	 * @return live cell count
+	 */
+	public int population() {
+		return this.live.size();
+	}
+
+	/**
+	 * whether the given cell is alive
+	 * 
+	 * @param x
+	 *            x coordinate of the cell
+	 * @param y
+	 *            y coordinate of the cell
+	 * @return true iff the cell at (x, y) is alive
+	 */
+	public boolean isAlive(int x, int y) {
+		return this.live.contains(pack(x, y));
+	}
+
+	/**
+	 * make the given cell alive
+	 * 
+	 * @param x
+	 *            x coordinate of the cell
+	 * @param y
+	 *            y coordinate of the cell
+	 */
+	public void produce(int x, int y) {
+		this.live.add(pack(x, y));
+	}
+
+	/**
+	 * kill the given cell
+	 * 
+	 * @param x
+	 *            x coordinate of the cell
+	 * @param y
+	 *            y coordinate of the cell
+	 */
+	public void kill(int x, int y) {
+		this.live.remove(pack(x, y));
+	}
+
+	/**
+	 * update the entire universe, following the rules of GameBoard.cellUpdate
+	 */
+	public void updateBoard() {
+		LongHashSet live = this.live;
+		LongIntHashMap counts = this.counts;
+
+		for (int slot = 0; slot < live.capacity(); ++slot) {
+			if (live.isUsed(slot)) {
+				long key = live.keyAt(slot);
+				int x = unpackX(key);
+				int y = unpackY(key);
+				for (int dy = -1; dy <= 1; ++dy) {
+					for (int dx = -1; dx <= 1; ++dx) {
+						if (dx != 0 || dy != 0) {
+							counts.increment(pack(x + dx, y + dy));
+						}
+					}
+				}
+			}
+		}
+
+		LongHashSet next = this.nextLive;
+		for (int slot = 0; slot < counts.capacity(); ++slot) {
+			if (counts.isUsed(slot)) {
+				int count = counts.valueAt(slot);
+				long key = counts.keyAt(slot);
+				if (count == 3 || (count == 2 && live.contains(key))) {
+					next.add(key);
+				}
+			}
+		}
+
+		counts.clear();
+		live.clear();
+		this.nextLive = live;
+		this.live = next;
+		this.generation += 1;
+	}
+
+	/**
+	 * smallest rectangle holding every live cell
+	 * 
+	 * @return { minX, minY, maxX, maxY } of the live cells, inclusive, or null
+	 *         if no cell is alive
+	 */
+	public int[] boundingBox() {
+		if (this.live.size() == 0) {
+			return null;
+		}
+		int minX = Integer.MAX_VALUE;
+		int minY = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE;
+		int maxY = Integer.MIN_VALUE;
+		for (int slot = 0; slot < this.live.capacity(); ++slot) {
+			if (this.live.isUsed(slot)) {
+				long key = this.live.keyAt(slot);
+				minX = Math.min(minX, unpackX(key));
+				minY = Math.min(minY, unpackY(key));
+				maxX = Math.max(maxX, unpackX(key));
+				maxY = Math.max(maxY, unpackY(key));
+			}
+		}
+		return new int[] { minX, minY, maxX, maxY };
+	}
+
+	/**
+	 * copy a window of the universe onto a new GameBoard
+	 * 
+	 * @param x
+	 *            x coordinate of the window's top left cell
+	 * @param y
+	 *            y coordinate of the window's top left cell
+	 * @param rows
+	 *            height of the window
+	 * @param columns
+	 *            width of the window
+	 * @return board whose cell (j, i) is the universe's cell (x + j, y + i)
+	 */
+	public GameBoard toGameBoard(int x, int y, int rows, int columns) {
+		GameBoard board = new GameBoard(rows, columns, false);
+		for (int slot = 0; slot < this.live.capacity(); ++slot) {
+			if (this.live.isUsed(slot)) {
+				long key = this.live.keyAt(slot);
+				long j = (long) unpackX(key) - x;
+				long i = (long) unpackY(key) - y;
+				if (j >= 0 && i >= 0 && j < columns && i < rows) {
+					board.produce((int) j, (int) i);
+				}
+			}
+		}
+		return board;
+	}
+
+	/**
+	 * return a viewable representation of a window of the universe, in the
+	 * format of GameBoard.look()
+	 * 
+	 * @param x
+	 *            x coordinate of the window's top left cell
+	 * @param y
+	 *            y coordinate of the window's top left cell
+	 * @param rows
+	 *            height of the window
+	 * @param columns
+	 *            width of the window
+	 * @return view of the window
+	 */
+	public String look(int x, int y, int rows, int columns) {
+		return toGameBoard(x, y, rows, columns).look();
+	}
+
+	/**
+	 * return a viewable representation of the bounding box of the live cells,
+	 * in the format of GameBoard.look()
+	 * 
+	 * @return view of the live part of the universe, "" if no cell is alive
+	 */
+	public String look() {
+		int[] box = boundingBox();
+		if (box == null) {
+			return "";
+		}
+		return look(box[0], box[1], box[3] - box[1] + 1, box[2] - box[0] + 1);
+	}
+
+}
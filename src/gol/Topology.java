@@ -0,0 +1,41 @@
+package gol;
+
+/**
+ * an immutable data type representing what lies past the edges of a GameBoard
+ */
+public enum Topology {
+
+	/** every cell past an edge is dead */
+	DEAD,
+
+	/** the board wraps around, so opposite edges are adjacent */
+	TORUS,
+
+	/** every cell past an edge has the state of the edge cell it touches */
+	MIRROR;
+
+	/**
+	 * map a coordinate along one axis of the board onto the board
+	 * 
+	 * @param coordinate
+	 *            row or column index, possibly off the board
+	 * @param size
+	 *            number of rows or columns along that axis, requires size > 0
+	 * @return the index on the board whose cell stands in for coordinate, or
+	 *         -1 if the cell at coordinate is dead by definition
+	 */
+	public int neighbour(int coordinate, int size) {
+		if (coordinate >= 0 && coordinate < size) {
+			return coordinate;
+		}
+		switch (this) {
+		case TORUS:
+			return Math.floorMod(coordinate, size);
+		case MIRROR:
+			return coordinate < 0 ? 0 : size - 1;
+		default:
+			return -1;
+		}
+	}
+
+}
@@ -0,0 +1,282 @@
+package gol;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.zip.DataFormatException;
+
+/**
+ * a client of the binary watch stream of a game server: it asks to watch,
+ * then rebuilds the board from the keyframes and deltas the server sends,
+ * as laid out by DeltaFrame. It checks that no delta goes back a
+ * generation, and counts the bytes it reads.
+ */
+public class WatchClient implements Closeable {
+
+	private static final String DEFAULT_HOST = "localhost";
+	private static final int DEFAULT_PORT = 4444;
+
+	private final Socket socket;
+	private final DataInputStream in;
+	private final WordCodec codec = new WordCodec();
+	private byte[] payload = new byte[64];
+	private long[] words;
+	private int numRows;
+	private int numColumns;
+	private long generation = -1;
+	private boolean keyframe;
+	private int messageBytes;
+	private long totalBytes;
+	private long messages;
+	private long keyframes;
+
+	/*
+	 * AF(words, numRows, numColumns, generation) = generation number
+	 * generation of a numRows by numColumns board whose cells are words, as
+	 * laid out in GameBoard's rep, or no board yet if generation is -1;
+	 * keyframe and messageBytes describe the last message read, and
+	 * totalBytes, messages and keyframes count all of them
+	 */
+
+	/**
+	 * connect to a game server and ask to watch its binary stream
+	 * 
+	 * @param host
+	 *            host of the server
+	 * @param port
+	 *            port of the server
+	 * @throws IOException
+	 *             if the server cannot be reached
+	 */
+	public WatchClient(String host, int port) throws IOException {
+		this.socket = new Socket(host, port);
+		this.in = new DataInputStream(new BufferedInputStream(this.socket.getInputStream()));
+		// the welcome line
+		for (int c = this.in.read(); c != '\n'; c = this.in.read()) {
+			if (c < 0) {
+				throw new EOFException("server closed the connection");
+			}
+		}
+		OutputStream out = this.socket.getOutputStream();
+		out.write("watch binary\n".getBytes(StandardCharsets.US_ASCII));
+		out.flush();
+	}
+
+	/**
+	 * read the next message and apply it to the board
+	 * 
+	 * @return false if the server closed the stream, true otherwise
+	 * @throws IOException
+	 *             if the stream cannot be read, or holds a malformed message
+	 *             or a delta older than the current generation
+	 */
+	public boolean next() throws IOException {
+		int type = this.in.read();
+		if (type < 0) {
+			return false;
+		}
+		long generation = this.in.readLong();
+		int rows = this.in.readInt();
+		int columns = this.in.readInt();
+		int length = this.in.readInt();
+		if (rows < 0 || columns < 0 || length < 0) {
+			throw new IOException("malformed message for generation " + generation);
+		}
+		if (this.payload.length < length) {
+			this.payload = new byte[Math.max(length, 2 * this.payload.length)];
+		}
+		this.in.readFully(this.payload, 0, length);
+
+		if (type == DeltaFrame.KEYFRAME) {
+			long wordCount = (long) rows * ((columns + 63) >>> 6);
+			if (wordCount > Integer.MAX_VALUE - 8) {
+				throw new IOException("board too large: " + rows + " by " + columns);
+			}
+			if (this.words == null || this.words.length != wordCount) {
+				this.words = new long[(int) wordCount];
+			}
+			this.numRows = rows;
+			this.numColumns = columns;
+			this.keyframes += 1;
+		} else if (type == DeltaFrame.DELTA) {
+			if (generation < this.generation || this.generation < 0 || rows != this.numRows
+					|| columns != this.numColumns) {
+				throw new IOException("delta for generation " + generation + " after generation " + this.generation);
+			}
+		} else {
+			throw new IOException("unknown message type " + type);
+		}
+		try {
+			this.codec.inflate(this.payload, 0, length, this.words, type == DeltaFrame.DELTA);
+		} catch (DataFormatException dfe) {
+			throw new IOException("corrupt message for generation " + generation, dfe);
+		}
+		this.generation = generation;
+		this.keyframe = type == DeltaFrame.KEYFRAME;
+		this.messageBytes = DeltaFrame.HEADER_BYTES + length;
+		this.totalBytes += this.messageBytes;
+		this.messages += 1;
+		return true;
+	}
+
+	/**
+	 * generation of the board, as of the last message read
+	 * 
+	 * @return generation, or -1 before the first message
+	 */
+	public long generation() {
+		return this.generation;
+	}
+
+	/**
+	 * whether the last message read was a keyframe
+	 * 
+	 * @return true iff it was a keyframe, false if it was a delta
+	 */
+	public boolean keyframe() {
+		return this.keyframe;
+	}
+
+	/**
+	 * size of the last message read
+	 * 
+	 * @return bytes of the last message, header included
+	 */
+	public int messageBytes() {
+		return this.messageBytes;
+	}
+
+	/**
+	 * bytes of all messages read
+	 * 
+	 * @return total bytes read, headers included
+	 */
+	public long totalBytes() {
+		return this.totalBytes;
+	}
+
+	/**
+	 * number of messages read
+	 * 
+	 * @return messages read, keyframes included
+	 */
+	public long messages() {
+		return this.messages;
+	}
+
+	/**
+	 * number of keyframes read
+	 * 
+	 * @return keyframes read
+	 */
+	public long keyframes() {
+		return this.keyframes;
+	}
+
+	/**
+	 * make a board of the current generation
+	 * 
+	 * @return new board with the cells and generation rebuilt so far,
+	 *         requires generation() >= 0
+	 */
+	public GameBoard board() {
+		GameBoard board = new GameBoard(this.numRows, this.numColumns, false);
+		board.putWords(0, LongBuffer.wrap(this.words));
+		board.setGeneration(this.generation);
+		return board;
+	}
+
+	/**
+	 * disconnect from the server
+	 * 
+	 * @throws IOException
+	 *             if the socket cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			this.socket.close();
+		} finally {
+			this.codec.close();
+		}
+	}
+
+	/**
+	 * watch a game server and report the bytes it sends per generation
+	 * 
+	 * <pre>
+	 *      gol.WatchClient [--host HOST] [--port PORT] [--generations N] [--print]
+	 * </pre>
+	 * 
+	 * Prints a line per message, with the view of the board after it if
+	 * --print is given, and then the mean bytes per generation against the
+	 * bytes of a text frame. By default it watches localhost:4444 for 100
+	 * generations.
+	 * 
+	 * @param args
+	 *            arguments as described
+	 */
+	public static void main(String[] args) {
+		String host = DEFAULT_HOST;
+		int port = DEFAULT_PORT;
+		long generations = 100;
+		boolean print = false;
+
+		Queue<String> arguments = new LinkedList<>(Arrays.asList(args));
+		try {
+			while (!arguments.isEmpty()) {
+				String flag = arguments.remove();
+				try {
+					if (flag.equals("--host")) {
+						host = arguments.remove();
+					} else if (flag.equals("--port")) {
+						port = Integer.parseInt(arguments.remove());
+					} else if (flag.equals("--generations")) {
+						generations = Long.parseLong(arguments.remove());
+					} else if (flag.equals("--print")) {
+						print = true;
+					} else {
+						throw new IllegalArgumentException("unknown option: \"" + flag + "\"");
+					}
+				} catch (NoSuchElementException nsee) {
+					throw new IllegalArgumentException("missing argument for " + flag);
+				} catch (NumberFormatException nfe) {
+					throw new IllegalArgumentException("unable to parse number for " + flag);
+				}
+			}
+		} catch (IllegalArgumentException iae) {
+			System.err.println(iae.getMessage());
+			System.err.println("usage: WatchClient [--host HOST] [--port PORT] [--generations N] [--print]");
+			return;
+		}
+
+		try (WatchClient client = new WatchClient(host, port)) {
+			while (client.messages() < generations && client.next()) {
+				System.out.println("generation " + client.generation() + (client.keyframe() ? " keyframe " : " delta ")
+						+ client.messageBytes() + " bytes");
+				if (print) {
+					System.out.print(client.board().look());
+				}
+			}
+			if (client.messages() > 0) {
+				System.out.println(String.format("%d messages, %d keyframes, %.1f bytes per generation, "
+						+ "%d bytes per text frame", client.messages(), client.keyframes(),
+						(double) client.totalBytes() / client.messages(),
+						GameBoard.viewLength(client.numRows, client.numColumns)));
+			}
+		} catch (IOException ioe) {
+			throw new RuntimeException(ioe);
+		}
+	}
+
+}
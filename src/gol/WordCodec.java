@@ -0,0 +1,130 @@
+package gol;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * compresses bit-packed board words, whole or as the XOR against an earlier
+ * generation. Between nearby generations few cells flip, so the XOR is
+ * mostly zero words and deflates to a small fraction of the board.
+ * 
+ * <p>
+ * A codec keeps its buffers from call to call, so it is not thread-safe. Its
+ * Deflater and Inflater hold native memory until the codec is closed.
+ */
+class WordCodec implements Closeable {
+
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+	private final Inflater inflater = new Inflater();
+	private byte[] raw = new byte[0];
+	private ByteBuffer rawBuffer = ByteBuffer.wrap(this.raw).order(ByteOrder.LITTLE_ENDIAN);
+	private byte[] compressed = new byte[64];
+
+	/**
+	 * compress words, or words XOR base
+	 * 
+	 * @param words
+	 *            words to compress
+	 * @param base
+	 *            words of the same length to XOR words with first, or null to
+	 *            compress words as they are
+	 * @return number of bytes of output() holding the compressed words
+	 */
+	int deflate(long[] words, long[] base) {
+		ByteBuffer buffer = rawBuffer(words.length);
+		for (int i = 0; i < words.length; ++i) {
+			buffer.putLong(i * Long.BYTES, base == null ? words[i] : words[i] ^ base[i]);
+		}
+		this.deflater.reset();
+		this.deflater.setInput(this.raw, 0, words.length * Long.BYTES);
+		this.deflater.finish();
+		int length = 0;
+		while (!this.deflater.finished()) {
+			if (length == this.compressed.length) {
+				this.compressed = Arrays.copyOf(this.compressed, 2 * this.compressed.length);
+			}
+			length += this.deflater.deflate(this.compressed, length, this.compressed.length - length);
+		}
+		return length;
+	}
+
+	/**
+	 * the output of the last deflate
+	 * 
+	 * @return buffer starting with the compressed words; it is overwritten by
+	 *         the next deflate
+	 */
+	byte[] output() {
+		return this.compressed;
+	}
+
+	/**
+	 * decompress words compressed by deflate
+	 * 
+	 * @param data
+	 *            buffer holding the compressed words
+	 * @param offset
+	 *            index of the first compressed byte in data
+	 * @param length
+	 *            number of compressed bytes
+	 * @param words
+	 *            words to decompress into, as many as were compressed
+	 * @param xor
+	 *            true to XOR the decompressed words into words, as for a
+	 *            deflate against a base equal to words; false to overwrite
+	 *            words
+	 * @throws DataFormatException
+	 *             if data does not hold words.length compressed words
+	 */
+	void inflate(byte[] data, int offset, int length, long[] words, boolean xor) throws DataFormatException {
+		int size = words.length * Long.BYTES;
+		ByteBuffer buffer = rawBuffer(words.length);
+		if (size == 0) {
+			return;
+		}
+		this.inflater.reset();
+		this.inflater.setInput(data, offset, length);
+		int inflated = 0;
+		while (inflated < size && !this.inflater.finished()) {
+			int n = this.inflater.inflate(this.raw, inflated, size - inflated);
+			if (n == 0 && (this.inflater.needsInput() || this.inflater.needsDictionary())) {
+				break;
+			}
+			inflated += n;
+		}
+		if (inflated != size || !this.inflater.finished()) {
+			throw new DataFormatException("expected " + words.length + " compressed words");
+		}
+		for (int i = 0; i < words.length; ++i) {
+			long word = buffer.getLong(i * Long.BYTES);
+			words[i] = xor ? words[i] ^ word : word;
+		}
+	}
+
+	/**
+	 * free the native memory of the codec; it must not be used after
+	 */
+	@Override
+	public void close() {
+		this.deflater.end();
+		this.inflater.end();
+	}
+
+	/**
+	 * helper method to get the raw buffer, grown to hold at least the given
+	 * number of words
+	 */
+	private ByteBuffer rawBuffer(int words) {
+		if (this.raw.length < words * Long.BYTES) {
+			this.raw = new byte[words * Long.BYTES];
+			this.rawBuffer = ByteBuffer.wrap(this.raw).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		return this.rawBuffer;
+	}
+
+}
@@ -0,0 +1,65 @@
+package gol;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class batchRunnerTest {
+
+	@Test
+	public void stopConditions() throws IOException {
+		// a blinker, and a lone cell that dies in the first step
+		GameBoard board = new GameBoard(20, 20, false);
+		board.fill(5, 4, 1, 3, true);
+		board.produce(15, 15);
+		BatchRunner.Result result = BatchRunner.run(board, 100, BatchRunner.Until.STABLE, 1, null);
+		assertEquals(BatchRunner.Until.STABLE, result.stopped());
+		assertEquals(1, result.stableGeneration());
+		assertEquals(2, result.period());
+		assertEquals(3, result.generations());
+		assertEquals(3, result.population());
+
+		// a glider on a closed board ends as a block in a corner
+		board = new GameBoard(12, 12, false);
+		board.produceAll(new long[] { GameBoard.pack(1, 0), GameBoard.pack(2, 1), GameBoard.pack(0, 2),
+				GameBoard.pack(1, 2), GameBoard.pack(2, 2) });
+		result = BatchRunner.run(board, 1000, BatchRunner.Until.STABLE, 1, null);
+		assertEquals(BatchRunner.Until.STABLE, result.stopped());
+		assertEquals(1, result.period());
+		assertEquals(4, result.population());
+		assertEquals(result.stableGeneration() + 1, result.generations());
+
+		board = new GameBoard(12, 12, false);
+		board.fill(3, 3, 1, 2, true);
+		result = BatchRunner.run(board, 1000, BatchRunner.Until.EXTINCT, 1, null);
+		assertEquals(BatchRunner.Until.EXTINCT, result.stopped());
+		assertEquals(1, result.stableGeneration());
+		assertEquals(1, result.generations());
+
+		// a blinker never dies out, so runs to the limit
+		board = new GameBoard(12, 12, false);
+		board.fill(3, 3, 1, 3, true);
+		result = BatchRunner.run(board, 50, BatchRunner.Until.EXTINCT, 1, null);
+		assertEquals(BatchRunner.Until.LIMIT, result.stopped());
+		assertEquals(50, result.generations());
+		assertEquals(-1, result.stableGeneration());
+		assertEquals("seed,50,3,limit,-1,0,", BatchRunner.statsLine("seed", result).substring(0, 21));
+	}
+
+	@Test
+	public void everyKthFrame() throws IOException {
+		GameBoard board = new GameBoard(5, 5, false);
+		board.fill(1, 2, 1, 3, true);
+		ByteArrayOutputStream frames = new ByteArrayOutputStream();
+		BatchRunner.run(board, 6, BatchRunner.Until.LIMIT, 3, frames);
+		String horizontal = "     \n     \n ### \n     \n     \n";
+		String vertical = "     \n  #  \n  #  \n  #  \n     \n";
+		assertEquals("generation 0\n" + horizontal + "generation 3\n" + vertical + "generation 6\n" + horizontal,
+				new String(frames.toByteArray(), StandardCharsets.US_ASCII));
+	}
+
+}
@@ -0,0 +1,93 @@
+package gol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class boardLoaderTest {
+
+	/**
+	 * helper method to load a seed held in a string
+	 */
+	private static GameBoard load(String seed) throws IOException {
+		return BoardLoader.load(new ByteArrayInputStream(seed.getBytes(StandardCharsets.US_ASCII)));
+	}
+
+	@Test
+	public void loadSeedFiles() throws IOException {
+		// X and Y on lines of their own
+		GameBoard gun = BoardLoader.load(new File("src/board/gliderGun.txt"));
+		assertEquals(100, gun.numColumns());
+		assertEquals(20, gun.numRows());
+		assertEquals(36, gun.look().replace(" ", "").replace("\n", "").length());
+
+		// X and Y on one line, and rows without spaces between the values
+		GameBoard simple = load("3 3\n0 1 0\n011\n1 1 1\n");
+		assertEquals(" # \n ##\n###\n", simple.look());
+	}
+
+	@Test
+	public void loadRle() throws IOException {
+		GameBoard glider = load("#N Glider\n#C a comment\nx = 5, y = 4, rule = B3/S23\nbo$2bo$3o!\n");
+		assertEquals(5, glider.numColumns());
+		assertEquals(4, glider.numRows());
+		assertEquals(" #   \n  #  \n###  \n     \n", glider.look());
+
+		// runs may wrap across lines and skip several rows at once
+		GameBoard wrapped = load("x = 3, y = 4\n3\no2$\nobo!");
+		assertEquals("###\n   \n# #\n   \n", wrapped.look());
+	}
+
+	@Test
+	public void loadPattern() throws IOException {
+		GameBoard glider = BoardLoader.pattern("bo$2bo$3o!", 10, 10);
+		assertEquals(" # \n  #\n###\n", glider.look());
+
+		// only live cells count toward the size
+		assertEquals("   \n  #\n", BoardLoader.pattern("5b$2bo3b!", 10, 10).look());
+		try {
+			BoardLoader.pattern("11o", 10, 10);
+			fail("pattern larger than the limit");
+		} catch (IOException ioe) {
+			// expected
+		}
+	}
+
+	@Test
+	public void roundTrip() throws IOException {
+		for (int columns : new int[] { 1, 63, 64, 65, 200 }) {
+			GameBoard board = new GameBoard(37, columns, true);
+			for (BoardLoader.Format format : BoardLoader.Format.values()) {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				BoardLoader.write(board, out, format);
+				GameBoard loaded = BoardLoader.load(new ByteArrayInputStream(out.toByteArray()));
+				assertEquals(format + " " + columns, board.look(), loaded.look());
+				loaded = BoardLoader.load(new ByteArrayInputStream(out.toByteArray()), format);
+				assertEquals(format + " " + columns, board.look(), loaded.look());
+			}
+		}
+	}
+
+	@Test
+	public void malformedSeeds() {
+		String[] seeds = { "", "3 3\n0 1 0\n0 2 0\n0 0 0\n", "3 3\n0 1 0\n", "x = 2, y = 2\n3o!",
+				"x = 2, y = 2, rule = B036/S23\no!", "0 5\n" };
+		for (String seed : seeds) {
+			try {
+				load(seed);
+				throw new AssertionError("loaded \"" + seed + "\"");
+			} catch (IOException ioe) {
+				assertTrue(ioe.getMessage(), ioe.getMessage().length() > 0);
+			}
+		}
+	}
+
+}
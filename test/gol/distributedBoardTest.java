@@ -0,0 +1,100 @@
+package gol;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class distributedBoardTest {
+
+	/**
+	 * helper method to start workers serving on threads of this JVM
+	 */
+	private static DistributedWorker[] startWorkers(int count) throws IOException {
+		DistributedWorker[] workers = new DistributedWorker[count];
+		for (int i = 0; i < count; ++i) {
+			final DistributedWorker worker = new DistributedWorker();
+			workers[i] = worker;
+			Thread thread = new Thread(new Runnable() {
+				public void run() {
+					try {
+						worker.serve();
+					} catch (IOException ioe) {
+						// the coordinator sees the failure
+					}
+				}
+			});
+			thread.setDaemon(true);
+			thread.start();
+		}
+		return workers;
+	}
+
+	@Test
+	public void stripsMatchOneBoard() throws IOException {
+		Random random = new Random(21);
+		Rule highLife = Rule.parse("B36/S23");
+		for (Topology topology : Topology.values()) {
+			for (int count = 1; count <= 3; ++count) {
+				GameBoard board = new GameBoard(150, 130, false, topology);
+				board.setRule(highLife);
+				for (int i = 0; i < 150; ++i) {
+					for (int j = 0; j < 130; ++j) {
+						if (random.nextInt(3) == 0) {
+							board.produce(j, i);
+						}
+					}
+				}
+				DistributedWorker[] workers = startWorkers(count);
+				int[] ports = new int[count];
+				for (int i = 0; i < count; ++i) {
+					ports[i] = workers[i].port();
+				}
+				String message = topology + " " + count + " workers";
+				try (DistributedBoard distributed = new DistributedBoard(ports, 150, 130, topology, highLife)) {
+					distributed.put(board);
+					assertEquals(message, board.look(), distributed.look());
+					for (int generation = 1; generation <= 12; generation += 3) {
+						for (int i = 0; i < 3; ++i) {
+							board.updateBoard();
+						}
+						distributed.step(3);
+						assertEquals(message, board.generation(), distributed.generation());
+						assertEquals(message, board.look(), distributed.look());
+						assertEquals(message, board.look(-5, 40, 70, 60), distributed.look(-5, 40, 70, 60));
+					}
+					assertEquals(message, board.look(0, 140, 20, 10), distributed.look(0, 140, 20, 10));
+				} finally {
+					for (DistributedWorker worker : workers) {
+						worker.close();
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void workerProcesses() throws IOException {
+		// strips of 50 rows cut the 64 row bands of the random fill
+		GameBoard board = new GameBoard(100, 70, Topology.TORUS, 0.3, 7);
+		try (DistributedBoard distributed = DistributedBoard.launch(100, 70, Topology.TORUS, Rule.CONWAY, 2)) {
+			distributed.randomize(7, 0.3);
+			assertEquals(board.look(), distributed.look());
+			distributed.step(20);
+			for (int i = 0; i < 20; ++i) {
+				board.updateBoard();
+			}
+			assertEquals(board.look(), distributed.look());
+		}
+
+		// the same seed gives the same board on any number of workers
+		try (DistributedBoard one = DistributedBoard.launch(100, 70, Topology.TORUS, Rule.CONWAY, 1)) {
+			one.randomize(7, 0.3);
+			one.step(20);
+			assertEquals(board.look(), one.look());
+		}
+	}
+
+}
@@ -0,0 +1,67 @@
+package gol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Test;
+
+public class ensembleRunnerTest {
+
+	/**
+	 * helper method to run an ensemble and get its summary lines, without
+	 * their wall times, in seed order
+	 */
+	private static List<String> summaries(int threads, EnsembleRunner.Format format) throws IOException {
+		StringWriter sink = new StringWriter();
+		EnsembleRunner ensemble = new EnsembleRunner(24, 40, 0.3, 500, Optional.<Rule> empty(), format, sink);
+		ensemble.run(100, 12, threads);
+		List<String> lines = new ArrayList<>(Arrays.asList(sink.toString().split("\n")));
+		if (format == EnsembleRunner.Format.CSV) {
+			assertEquals(EnsembleRunner.CSV_HEADER, lines.remove(0));
+		}
+		List<String> summaries = new ArrayList<>();
+		for (String line : lines) {
+			summaries.add(line.substring(0, line.lastIndexOf(format == EnsembleRunner.Format.CSV ? ',' : ':')));
+		}
+		Collections.sort(summaries);
+		return summaries;
+	}
+
+	@Test
+	public void reproducibleOnAnyThreads() throws IOException {
+		List<String> serial = summaries(1, EnsembleRunner.Format.CSV);
+		assertEquals(12, serial.size());
+		assertEquals(serial, summaries(4, EnsembleRunner.Format.CSV));
+		assertTrue(serial.get(0), serial.get(0).startsWith("100,24,40,0.3,"));
+
+		// every run either settled or ran out of generations
+		for (String line : serial) {
+			String[] columns = line.split(",");
+			if (columns[6].equals("limit")) {
+				assertEquals("500", columns[4]);
+				assertEquals("0", columns[8]);
+			} else {
+				assertTrue(line, Integer.parseInt(columns[8]) >= 1);
+				assertEquals(line, Long.parseLong(columns[4]),
+						Long.parseLong(columns[7]) + Integer.parseInt(columns[8]));
+			}
+		}
+
+		// the same seed gives the same board
+		GameBoard board = EnsembleRunner.randomBoard(24, 40, 0.3, 100);
+		assertEquals(board.look(), EnsembleRunner.randomBoard(24, 40, 0.3, 100).look());
+
+		List<String> json = summaries(3, EnsembleRunner.Format.JSONL);
+		assertEquals(12, json.size());
+		assertTrue(json.get(0), json.get(0).startsWith("{\"seed\":100,\"rows\":24,\"columns\":40,"));
+	}
+
+}
@@ -1,6 +1,16 @@
 package gol;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -32,6 +42,22 @@ public class gameBoardTest {
 		System.out.println("alive cells: " + alive);
 	}
 
+	@Test
+	public void createBoardSeeded() {
+		// 600 x 7000 is filled in parallel, and its rows end mid-word
+		GameBoard board = new GameBoard(600, 7000, Topology.DEAD, 0.3, 42);
+		assertEquals(board.look(), new GameBoard(600, 7000, Topology.DEAD, 0.3, 42).look());
+		assertFalse(board.look().equals(new GameBoard(600, 7000, Topology.DEAD, 0.3, 43).look()));
+		double density = board.population() / (600.0 * 7000);
+		assertTrue("density " + density, Math.abs(density - 0.3) < 0.005);
+		for (int y = 0; y < board.numRows(); ++y) {
+			assertEquals(0, board.getWord(y, board.wordsPerRow() - 1) >>> (7000 - 64 * (board.wordsPerRow() - 1)));
+		}
+
+		assertEquals(0, new GameBoard(30, 70, Topology.DEAD, 0, 1).population());
+		assertEquals(30 * 70, new GameBoard(30, 70, Topology.DEAD, 1, 1).population());
+	}
+
 	@Test
 	public void produceCell() {
 		GameBoard board = new GameBoard(10, 10, false);
@@ -84,4 +110,330 @@ public class gameBoardTest {
 
 	}
 
+	@Test
+	public void blinkerOscillates() {
+		GameBoard board = new GameBoard(5, 5, false);
+		board.produce(1, 2);
+		board.produce(2, 2);
+		board.produce(3, 2);
+		board.updateBoard();
+		assertEquals(false, board.isAlive(1, 2));
+		assertEquals(true, board.isAlive(2, 1));
+		assertEquals(true, board.isAlive(2, 2));
+		assertEquals(true, board.isAlive(2, 3));
+		board.updateBoard();
+		assertEquals(true, board.isAlive(1, 2));
+		assertEquals(true, board.isAlive(3, 2));
+		assertEquals(false, board.isAlive(2, 1));
+	}
+
+	@Test
+	public void lookWindow() {
+		GameBoard board = new GameBoard(3, 130, false);
+		board.produce(0, 0);
+		board.produce(64, 1);
+		board.produce(129, 2);
+		String full = board.look();
+		assertEquals(GameBoard.viewLength(3, 130), full.length());
+		assertEquals("#", full.substring(0, 1));
+		assertEquals("#\n", full.substring(2 * 131 + 129));
+		for (int i = 0; i < 3; ++i) {
+			for (int j = 0; j < 130; ++j) {
+				assertEquals(board.isAlive(j, i) ? '#' : ' ', full.charAt(i * 131 + j));
+			}
+		}
+
+		// the window hangs over the west and south edges
+		assertEquals("  # \n    \n", board.look(-2, 0, 2, 4));
+		assertEquals("  # \n    \n", board.look(62, 1, 2, 4));
+		assertEquals(" #\n  \n", board.look(128, 2, 2, 2));
+		assertEquals("", board.look(0, 0, 0, 5));
+
+		byte[] buffer = new byte[20];
+		assertEquals(6, board.render(63, 0, 2, 2, buffer, 10));
+		assertEquals("  \n #\n", new String(buffer, 10, 6, StandardCharsets.ISO_8859_1));
+	}
+
+	@Test
+	public void lookCachedPerGeneration() throws IOException {
+		GameBoard board = new GameBoard(5, 5, false);
+		board.produce(1, 2);
+		board.produce(2, 2);
+		board.produce(3, 2);
+		String view = board.look();
+		assertSame(view, board.look());
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		board.writeTo(out);
+		assertEquals(view, out.toString("ISO-8859-1"));
+
+		board.updateBoard();
+		assertEquals(1, board.generation());
+		String stepped = board.look();
+		assertNotSame(view, stepped);
+		assertEquals("     \n  #  \n  #  \n  #  \n     \n", stepped);
+		board.kill(2, 1);
+		assertEquals("     \n     \n  #  \n  #  \n     \n", board.look());
+	}
+
+	@Test
+	public void updateBoardMatchesCellUpdate() {
+		// widths on both sides of a 64-bit word boundary
+		int[] widths = { 1, 2, 3, 63, 64, 65, 130 };
+		for (Topology topology : Topology.values()) {
+			for (int columns : widths) {
+				GameBoard board = new GameBoard(17, columns, true, topology);
+				for (int generation = 0; generation < 5; ++generation) {
+					boolean[][] expected = new boolean[board.numRows()][columns];
+					for (int i = 0; i < board.numRows(); ++i) {
+						for (int j = 0; j < columns; ++j) {
+							expected[i][j] = board.cellUpdate(board.getCell(j, i));
+						}
+					}
+					board.updateBoard();
+					for (int i = 0; i < board.numRows(); ++i) {
+						for (int j = 0; j < columns; ++j) {
+							assertEquals(topology + " " + columns, expected[i][j], board.isAlive(j, i));
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void countAliveAdjacentTopology() {
+		GameBoard dead = new GameBoard(4, 4, false, Topology.DEAD);
+		GameBoard torus = new GameBoard(4, 4, false, Topology.TORUS);
+		GameBoard mirror = new GameBoard(4, 4, false, Topology.MIRROR);
+		for (GameBoard board : new GameBoard[] { dead, torus, mirror }) {
+			board.produce(0, 0);
+			board.produce(3, 0);
+		}
+		assertEquals(0, dead.countAliveAdjacent(dead.getCell(0, 3)));
+		assertEquals(2, torus.countAliveAdjacent(torus.getCell(0, 3)));
+		assertEquals(0, mirror.countAliveAdjacent(mirror.getCell(0, 3)));
+		// (0, 0) sees itself three times past the corner when mirrored
+		assertEquals(3, mirror.countAliveAdjacent(mirror.getCell(0, 0)));
+		assertEquals(1, torus.countAliveAdjacent(torus.getCell(0, 0)));
+	}
+
+	@Test
+	public void gliderCrossesTorus() {
+		GameBoard board = new GameBoard(8, 70, false, Topology.TORUS);
+		board.produce(1, 0);
+		board.produce(2, 1);
+		board.produce(0, 2);
+		board.produce(1, 2);
+		board.produce(2, 2);
+		String start = board.look();
+
+		// a glider moves one cell diagonally every 4 generations, so after
+		// 4 * lcm(8, 70) generations it is back where it started
+		for (int i = 0; i < 4 * 280; ++i) {
+			board.updateBoard();
+		}
+		assertEquals(start, board.look());
+	}
+
+	@Test
+	public void updateBoardAllocatesNothing() {
+		com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		GameBoard board = new GameBoard(256, 256, true);
+
+		// warm up so that the step is compiled before measuring
+		for (int i = 0; i < 2000; ++i) {
+			board.updateBoard();
+		}
+		threads.getThreadAllocatedBytes(threadId);
+
+		int generations = 1000;
+		long before = threads.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < generations; ++i) {
+			board.updateBoard();
+		}
+		long after = threads.getThreadAllocatedBytes(threadId);
+
+		// a few bytes may come from the measurement itself, but not one
+		// allocation per generation
+		assertTrue((after - before) + " bytes allocated in " + generations + " generations",
+				after - before < 1024);
+	}
+
+	@Test
+	public void parallelMatchesSerial() {
+		GameBoard serial = new GameBoard(301, 150, true, Topology.TORUS);
+		GameBoard parallel = new GameBoard(301, 150, false, Topology.TORUS);
+		for (int i = 0; i < serial.numRows(); ++i) {
+			for (int j = 0; j < serial.numColumns(); ++j) {
+				if (serial.isAlive(j, i)) {
+					parallel.produce(j, i);
+				}
+			}
+		}
+		parallel.setParallelism(4);
+		assertEquals(4, parallel.parallelism());
+
+		for (int generation = 0; generation < 50; ++generation) {
+			serial.updateBoard();
+			parallel.updateBoard();
+			assertEquals(serial.look(), parallel.look());
+		}
+		parallel.setParallelism(1);
+	}
+
+	@Test
+	public void kernelsMatch() {
+		int[] widths = { 1, 65, 130, 511, 512, 513, 700 };
+		// Conway's, HighLife, and Diamoeba, which has counts of eight
+		Rule[] rules = { Rule.CONWAY, Rule.parse("B36/S23"), Rule.parse("B35678/S5678") };
+		Random random = new Random(9);
+		for (Topology topology : Topology.values()) {
+			for (int columns : widths) {
+				Rule rule = rules[columns % rules.length];
+				GameBoard scalar = new GameBoard(130, columns, false, topology);
+				GameBoard vector = new GameBoard(130, columns, false, topology);
+				// only the west part is seeded, so that the runs of active
+				// tiles in a row end before the east edge
+				for (int i = 0; i < 130; ++i) {
+					for (int j = 0; j < columns / 3; ++j) {
+						if (random.nextInt(3) == 0) {
+							scalar.produce(j, i);
+							vector.produce(j, i);
+						}
+					}
+				}
+				scalar.setKernel(Kernel.SCALAR);
+				vector.setKernel(Kernel.VECTOR);
+				assertEquals(Kernel.VECTOR.isAvailable() ? Kernel.VECTOR : Kernel.SCALAR, vector.kernel());
+				scalar.setRule(rule);
+				vector.setRule(rule);
+				if (columns == 700) {
+					vector.setParallelism(3);
+				}
+
+				String message = topology + " " + columns + " " + rule;
+				for (int generation = 0; generation < 40; ++generation) {
+					scalar.updateBoard();
+					vector.updateBoard();
+					assertEquals(message, scalar.activeTiles(), vector.activeTiles());
+					for (int i = 0; i < 130; ++i) {
+						for (int j = 0; j < columns; ++j) {
+							if (scalar.isAlive(j, i) != vector.isAlive(j, i)) {
+								assertEquals(message + " (" + j + ", " + i + ")", scalar.isAlive(j, i), vector.isAlive(j, i));
+							}
+						}
+					}
+				}
+				vector.setParallelism(1);
+			}
+		}
+	}
+
+	@Test
+	public void activeTilesSkipStableRegions() {
+		GameBoard board = new GameBoard(256, 256, false);
+		assertEquals(16, board.numTiles());
+		// a blinker and a block, both settled from the start
+		board.produce(10, 10);
+		board.produce(11, 10);
+		board.produce(12, 10);
+		board.produce(200, 200);
+		board.produce(201, 200);
+		board.produce(200, 201);
+		board.produce(201, 201);
+		for (int i = 0; i < 4; ++i) {
+			board.updateBoard();
+		}
+		assertEquals(0, board.activeTiles());
+		assertEquals(0.0, board.activeTileFraction(), 0);
+		assertEquals(true, board.isAlive(10, 10));
+
+		// a glider dropped next to the block wakes up only its own corner
+		board.produce(151, 150);
+		board.produce(152, 151);
+		board.produce(150, 152);
+		board.produce(151, 152);
+		board.produce(152, 152);
+		for (int generation = 0; generation < 100; ++generation) {
+			boolean[][] expected = new boolean[256][256];
+			for (int i = 0; i < 256; ++i) {
+				for (int j = 0; j < 256; ++j) {
+					expected[i][j] = board.cellUpdate(board.getCell(j, i));
+				}
+			}
+			board.updateBoard();
+			assertEquals(true, board.activeTiles() <= 9);
+			for (int i = 0; i < 256; ++i) {
+				for (int j = 0; j < 256; ++j) {
+					assertEquals(expected[i][j], board.isAlive(j, i));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void batchEditsMatchCellEdits() {
+		Random random = new Random(19);
+		GameBoard batch = new GameBoard(150, 200, true, Topology.TORUS);
+		GameBoard cells = new GameBoard(150, 200, false, Topology.TORUS);
+		cells.stamp(batch, 0, 0);
+		for (int round = 0; round < 30; ++round) {
+			int x = random.nextInt(300) - 100;
+			int y = random.nextInt(250) - 50;
+			if (round % 3 == 0) {
+				GameBoard pattern = new GameBoard(1 + random.nextInt(100), 1 + random.nextInt(150), true);
+				batch.stamp(pattern, x, y);
+				for (int i = 0; i < pattern.numRows(); ++i) {
+					for (int j = 0; j < pattern.numColumns(); ++j) {
+						if (pattern.isAlive(j, i)) {
+							cells.produce(x + j, y + i);
+						} else {
+							cells.kill(x + j, y + i);
+						}
+					}
+				}
+			} else if (round % 3 == 1) {
+				int rows = random.nextInt(100);
+				int columns = random.nextInt(150);
+				boolean alive = random.nextBoolean();
+				batch.fill(x, y, rows, columns, alive);
+				for (int i = y; i < y + rows; ++i) {
+					for (int j = x; j < x + columns; ++j) {
+						if (alive) {
+							cells.produce(j, i);
+						} else {
+							cells.kill(j, i);
+						}
+					}
+				}
+			} else {
+				long[] coordinates = new long[500];
+				for (int k = 0; k < coordinates.length; ++k) {
+					coordinates[k] = GameBoard.pack(random.nextInt(220) - 10, random.nextInt(170) - 10);
+				}
+				boolean alive = random.nextBoolean();
+				if (alive) {
+					batch.produceAll(coordinates);
+				} else {
+					batch.killAll(coordinates);
+				}
+				for (long packed : coordinates) {
+					if (alive) {
+						cells.produce((int) packed, (int) (packed >> 32));
+					} else {
+						cells.kill((int) packed, (int) (packed >> 32));
+					}
+				}
+			}
+			assertEquals(cells.look(), batch.look());
+
+			// the edited tiles are stepped like every other
+			batch.updateBoard();
+			cells.updateBoard();
+			assertEquals(cells.look(), batch.look());
+		}
+	}
+
 }
@@ -0,0 +1,145 @@
+package gol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class gameServerTest {
+
+	/**
+	 * helper method to start a server of board on a free port
+	 */
+	private static GameServer start(GameBoard board, GameServer.Mode mode, int maxConnections) throws IOException {
+		final GameServer server = new GameServer(0, board, mode, maxConnections);
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					server.serve();
+				} catch (IOException ioe) {
+					ioe.printStackTrace();
+				}
+			}
+		});
+		thread.setDaemon(true);
+		thread.start();
+		return server;
+	}
+
+	/**
+	 * helper method to read from a client socket
+	 */
+	private static BufferedReader reader(Socket socket) throws IOException {
+		return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+	}
+
+	@Test
+	public void connectionCap() throws IOException {
+		GameBoard board = new GameBoard(10, 10, true);
+		try (GameServer server = start(board, GameServer.Mode.VIRTUAL, 1);
+				Socket first = new Socket("localhost", server.port());
+				Socket second = new Socket("localhost", server.port())) {
+			BufferedReader firstIn = reader(first);
+			BufferedReader secondIn = reader(second);
+			assertTrue(firstIn.readLine().startsWith("Welcome"));
+
+			// the second client waits for the first to leave
+			second.setSoTimeout(200);
+			try {
+				secondIn.readLine();
+				fail("second client served while the first was connected");
+			} catch (SocketTimeoutException ste) {
+				// expected
+			}
+			first.getOutputStream().write("bye\n".getBytes(StandardCharsets.US_ASCII));
+			second.setSoTimeout(5000);
+			assertTrue(secondIn.readLine().startsWith("Welcome"));
+		}
+	}
+
+	@Test
+	public void closeDisconnectsClients() throws Exception {
+		GameBoard board = new GameBoard(10, 10, true);
+		final GameServer server = new GameServer(0, board, GameServer.Mode.THREADS, 10);
+		Thread serving = new Thread(new Runnable() {
+			public void run() {
+				try {
+					server.serve();
+				} catch (IOException ioe) {
+					ioe.printStackTrace();
+				}
+			}
+		});
+		serving.setDaemon(true);
+		serving.start();
+		try (Socket socket = new Socket("localhost", server.port())) {
+			BufferedReader in = reader(socket);
+			assertTrue(in.readLine().startsWith("Welcome"));
+			server.close();
+			assertEquals(null, in.readLine());
+
+			// the freed port may be taken by another socket at once, so
+			// check that serve() stopped accepting rather than connecting
+			serving.join(5000);
+			assertFalse("still serving after close", serving.isAlive());
+		}
+	}
+
+	@Test
+	public void slowWatcherSkipsFrames() throws Exception {
+		// a frame of this board is far bigger than the socket buffers
+		GameBoard board = new GameBoard(2048, 2048, true, Topology.TORUS);
+		Simulation simulation = new Simulation(board);
+		final GameServer server = new GameServer(0, simulation, GameServer.Mode.THREADS, 10);
+		new Thread(new Runnable() {
+			public void run() {
+				try {
+					server.serve();
+				} catch (IOException ioe) {
+					ioe.printStackTrace();
+				}
+			}
+		}).start();
+		try (Socket socket = new Socket("localhost", server.port())) {
+			BufferedReader in = reader(socket);
+			in.readLine();
+			socket.getOutputStream().write("watch\n".getBytes(StandardCharsets.US_ASCII));
+			simulation.start(1);
+
+			// the ticks go on while the client reads nothing
+			long deadline = System.currentTimeMillis() + 10000;
+			long generation = 0;
+			while (generation < 20 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+				generation = simulation.generation();
+			}
+			assertTrue("ticks stalled at " + generation, generation >= 20);
+
+			long last = -1;
+			char[] view = new char[GameBoard.viewLength(2048, 2048)];
+			for (int i = 0; i < 3; ++i) {
+				String header = in.readLine();
+				long frame = Long.parseLong(header.substring("generation ".length()));
+				assertTrue(frame > last);
+				last = frame;
+				for (int read = 0; read < view.length;) {
+					read += in.read(view, read, view.length - read);
+				}
+			}
+			assertTrue("no frames were skipped", last > 3);
+		} finally {
+			simulation.close();
+			server.close();
+		}
+	}
+
+}
@@ -0,0 +1,160 @@
+package gol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class generationJournalTest {
+
+	/**
+	 * helper method to make a temporary file deleted when the tests end
+	 */
+	private static File tempFile() throws IOException {
+		File file = File.createTempFile("journal-", ".golj");
+		file.deleteOnExit();
+		return file;
+	}
+
+	@Test
+	public void timeTravel() throws IOException {
+		GameBoard board = new GameBoard(80, 100, true, Topology.TORUS);
+		List<String> views = new ArrayList<>();
+		File file = tempFile();
+		try (GenerationJournal journal = GenerationJournal.create(file, board, 16)) {
+			views.add(board.look());
+			for (int generation = 1; generation <= 200; ++generation) {
+				board.updateBoard();
+				journal.record(board);
+				views.add(board.look());
+			}
+			assertEquals(0, journal.firstGeneration());
+			assertEquals(200, journal.lastGeneration());
+			assertTrue(journal.keyframes() >= 200 / 16);
+
+			for (int generation : new int[] { 0, 1, 15, 16, 17, 99, 200 }) {
+				GameBoard past = journal.boardAt(generation);
+				assertEquals(generation, past.generation());
+				assertEquals(views.get(generation), past.look());
+				assertTrue(journal.lastReplayDeltas() < journal.keyframeInterval());
+			}
+			// deltas between nearby generations are much smaller than boards
+			assertTrue(journal.bytesPerGeneration() < 80 * 100 / 8);
+		}
+	}
+
+	@Test
+	public void reopenAndRecord() throws IOException {
+		GameBoard board = new GameBoard(40, 40, true);
+		File file = tempFile();
+		try (GenerationJournal journal = GenerationJournal.create(file, board, 8)) {
+			for (int generation = 0; generation < 20; ++generation) {
+				board.updateBoard();
+				journal.record(board);
+			}
+		}
+		// a record torn off by a crash
+		try (FileOutputStream out = new FileOutputStream(file, true)) {
+			out.write(new byte[] { 1, 0, 0, 0, 0, 0, 0, 0, 21, 0, 0, 1, 0 });
+		}
+
+		try (GenerationJournal journal = GenerationJournal.open(file)) {
+			assertEquals(20, journal.lastGeneration());
+			assertEquals(board.look(), journal.boardAt(20).look());
+			board.updateBoard();
+			journal.record(board);
+			assertEquals(board.look(), journal.boardAt(21).look());
+		}
+	}
+
+	@Test
+	public void reopenDropsCorruptRecord() throws IOException {
+		GameBoard board = new GameBoard(40, 40, true);
+		File file = tempFile();
+		String before;
+		try (GenerationJournal journal = GenerationJournal.create(file, board, 8)) {
+			for (int generation = 0; generation < 20; ++generation) {
+				board.updateBoard();
+				journal.record(board);
+			}
+			before = journal.boardAt(19).look();
+		}
+		// a whole last record, with a byte of its payload flipped
+		try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+			out.seek(out.length() - 1);
+			int last = out.read();
+			out.seek(out.length() - 1);
+			out.write(last ^ 0xFF);
+		}
+
+		long length = file.length();
+		try (GenerationJournal journal = GenerationJournal.open(file)) {
+			assertEquals(19, journal.lastGeneration());
+			assertTrue(journal.bytesWritten() < length);
+			assertEquals(before, journal.boardAt(19).look());
+			journal.record(board);
+			assertEquals(board.look(), journal.boardAt(20).look());
+		}
+	}
+
+	@Test
+	public void keepsTheRule() throws IOException {
+		GameBoard board = new GameBoard(40, 50, true);
+		Rule highLife = Rule.parse("B36/S23");
+		board.setRule(highLife);
+		File file = tempFile();
+		try (GenerationJournal journal = GenerationJournal.create(file, board, 8)) {
+			for (int generation = 0; generation < 10; ++generation) {
+				board.updateBoard();
+				journal.record(board);
+			}
+		}
+
+		try (GenerationJournal journal = GenerationJournal.open(file)) {
+			assertEquals(highLife, journal.rule());
+			GameBoard past = journal.boardAt(5);
+			assertEquals(highLife, past.rule());
+			for (int generation = 6; generation <= 10; ++generation) {
+				past.updateBoard();
+				assertEquals(journal.boardAt(generation).look(), past.look());
+			}
+			GameBoard conway = journal.boardAt(10);
+			conway.setRule(Rule.CONWAY);
+			conway.updateBoard();
+			try {
+				journal.record(conway);
+				fail("recorded a board stepping by another rule");
+			} catch (IllegalArgumentException expected) {
+				// the journal holds HighLife
+			}
+		}
+
+		// B0, which Rule.of rejects
+		try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+			out.seek(24);
+			out.writeShort(1);
+		}
+		try {
+			GenerationJournal.open(file).close();
+			fail("opened a journal of an unsupported rule");
+		} catch (IOException expected) {
+			// the rule is rejected
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void generationOutOfRange() throws IOException {
+		try (GenerationJournal journal = GenerationJournal.create(tempFile(), new GameBoard(5, 5, false), 4)) {
+			journal.boardAt(1);
+		}
+	}
+
+}
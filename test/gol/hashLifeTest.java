@@ -0,0 +1,100 @@
+package gol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class hashLifeTest {
+
+	/**
+	 * helper method to make a board with a random soup of the given size in
+	 * its middle
+	 */
+	private static GameBoard soup(int size, int soupSize, long seed) {
+		GameBoard board = new GameBoard(size, size, false);
+		Random random = new Random(seed);
+		int start = (size - soupSize) / 2;
+		for (int i = start; i < start + soupSize; ++i) {
+			for (int j = start; j < start + soupSize; ++j) {
+				if (random.nextInt(3) == 0) {
+					board.produce(j, i);
+				}
+			}
+		}
+		return board;
+	}
+
+	@Test
+	public void matchesGameBoard() {
+		// the soup cannot reach the edges in 64 generations
+		GameBoard board = soup(200, 24, 1);
+		HashLife life = new HashLife(board);
+
+		for (int generation = 0; generation < 64; ++generation) {
+			board.updateBoard();
+		}
+		life.advance(64);
+
+		assertEquals(64, life.generation());
+		assertEquals(board.look(), life.look(0, 0, 200, 200));
+	}
+
+	@Test
+	public void oddJumpsMatchGameBoard() {
+		GameBoard board = soup(160, 16, 2);
+		HashLife life = new HashLife(board);
+
+		for (int generation = 0; generation < 45; ++generation) {
+			board.updateBoard();
+		}
+		life.advance(45);
+
+		GameBoard window = life.toGameBoard(0, 0, 160, 160);
+		assertEquals(board.look(), window.look());
+		int alive = 0;
+		for (int i = 0; i < 160; ++i) {
+			for (int j = 0; j < 160; ++j) {
+				assertEquals(board.isAlive(j, i), life.isAlive(j, i));
+				alive += board.isAlive(j, i) ? 1 : 0;
+			}
+		}
+		assertEquals(alive, life.population());
+	}
+
+	@Test
+	public void gliderAfterBillionGenerations() {
+		GameBoard board = new GameBoard(3, 3, false);
+		board.produce(1, 0);
+		board.produce(2, 1);
+		board.produce(0, 2);
+		board.produce(1, 2);
+		board.produce(2, 2);
+		HashLife life = new HashLife(board);
+
+		// a glider moves one cell down and to the right every 4 generations
+		life.advance(1000000000L);
+		long moved = 1000000000L / 4;
+		assertEquals(5, life.population());
+		assertEquals(board.look(), life.look(moved, moved, 3, 3));
+	}
+
+	@Test
+	public void boundedCache() {
+		GameBoard board = soup(200, 24, 3);
+		HashLife bounded = new HashLife(board, 2000);
+		HashLife unbounded = new HashLife(board);
+
+		for (int i = 0; i < 6; ++i) {
+			bounded.step(i);
+			unbounded.step(i);
+			assertTrue(bounded.cacheSize() <= 2000);
+		}
+		assertTrue(bounded.evictions() > 0);
+		assertEquals(unbounded.population(), bounded.population());
+		assertEquals(unbounded.look(-100, -100, 400, 400), bounded.look(-100, -100, 400, 400));
+	}
+
+}
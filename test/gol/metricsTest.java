@@ -0,0 +1,101 @@
+package gol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import org.junit.Test;
+
+public class metricsTest {
+
+	@Test
+	public void histogramPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.percentile(99));
+		for (long nanos = 1; nanos <= 100000; ++nanos) {
+			histogram.record(nanos * 1000);
+		}
+		assertEquals(100000, histogram.count());
+		assertEquals(50000500.0, histogram.mean(), 1e-3);
+		// within the 1 in 32 resolution of a bucket
+		assertEquals(50e6, histogram.percentile(50), 50e6 / 32);
+		assertEquals(99e6, histogram.percentile(99), 99e6 / 32);
+		assertEquals(100e6, histogram.max(), 100e6 / 32);
+		assertTrue(histogram.max() >= 100e6);
+
+		for (long value : new long[] { 0, 63, 64, 65, 1000, 1L << 40, Long.MAX_VALUE }) {
+			int index = LatencyHistogram.index(value);
+			assertTrue(value <= LatencyHistogram.highest(index));
+			assertTrue(index == 0 || value > LatencyHistogram.highest(index - 1));
+		}
+	}
+
+	@Test
+	public void serverMetrics() throws IOException, JMException {
+		// a blinker, and a cell that dies
+		GameBoard board = new GameBoard(20, 30, false);
+		board.fill(1, 1, 3, 1, true);
+		board.produce(20, 10);
+		Simulation simulation = new Simulation(board);
+		Metrics metrics = simulation.metrics();
+		GameServer.respond(simulation, "look");
+		GameServer.respond(simulation, "look");
+		GameServer.respond(simulation, "help");
+		GameServer.respond(simulation, "dance");
+		simulation.tick();
+
+		Map<String, Long> counts = metrics.getCommandCounts();
+		assertEquals(2, (long) counts.get("look"));
+		assertEquals(1, (long) counts.get("help"));
+		assertEquals(1, (long) counts.get("other"));
+		assertEquals(0, (long) counts.get("kill"));
+		assertEquals(1, metrics.getSteps());
+		assertEquals(1, metrics.getGeneration());
+		assertEquals(3, metrics.getLiveCells());
+		assertEquals(-1, metrics.getPopulationDelta());
+
+		metrics.setEnabled(false);
+		GameServer.respond(simulation, "look");
+		assertEquals(2, (long) metrics.getCommandCounts().get("look"));
+		metrics.setEnabled(true);
+
+		ObjectName name = metrics.register("test");
+		try {
+			Object steps = ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Steps");
+			assertEquals(1L, steps);
+			TabularData commands = (TabularData) ManagementFactory.getPlatformMBeanServer().getAttribute(name,
+					"CommandCounts");
+			assertEquals(Metrics.Command.values().length, commands.size());
+		} finally {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+		}
+
+		try (MetricsEndpoint endpoint = new MetricsEndpoint(metrics, 0)) {
+			URL url = new URL("http://localhost:" + endpoint.port() + "/metrics");
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			try (InputStream in = url.openStream()) {
+				byte[] buffer = new byte[4096];
+				for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+					body.write(buffer, 0, n);
+				}
+			}
+			String text = new String(body.toByteArray(), StandardCharsets.US_ASCII);
+			assertTrue(text, text.contains("gol_generation 1\n"));
+			assertTrue(text, text.contains("gol_live_cells 3\n"));
+			assertTrue(text, text.contains("gol_command_seconds_count{command=\"look\"} 2\n"));
+		}
+		simulation.close();
+	}
+
+}
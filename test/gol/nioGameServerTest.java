@@ -0,0 +1,182 @@
+package gol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class nioGameServerTest {
+
+	/**
+	 * helper method to start a server of board on a free port
+	 */
+	private static NioGameServer start(GameBoard board, int eventLoops) throws IOException {
+		final NioGameServer server = new NioGameServer(0, board, eventLoops);
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					server.serve();
+				} catch (IOException ioe) {
+					ioe.printStackTrace();
+				}
+			}
+		});
+		thread.setDaemon(true);
+		thread.start();
+		return server;
+	}
+
+	/**
+	 * helper method to read n characters from a client's input
+	 */
+	private static String read(BufferedReader in, int n) throws IOException {
+		char[] chars = new char[n];
+		for (int read = 0; read < n;) {
+			int count = in.read(chars, read, n - read);
+			if (count < 0) {
+				throw new IOException("closed after " + read + " of " + n + " characters");
+			}
+			read += count;
+		}
+		return new String(chars);
+	}
+
+	@Test
+	public void lookHelpBye() throws IOException {
+		GameBoard board = new GameBoard(20, 30, true, Topology.TORUS);
+		String view = board.look();
+		try (NioGameServer server = start(board, 1);
+				Socket socket = new Socket("localhost", server.port())) {
+			BufferedReader in = new BufferedReader(
+					new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+			OutputStream out = socket.getOutputStream();
+			assertTrue(in.readLine().startsWith("Welcome"));
+
+			out.write("look\r\nhelp\nlook\nbye\n".getBytes(StandardCharsets.US_ASCII));
+			out.flush();
+			assertEquals(view, read(in, view.length()));
+			assertEquals("commands: look, watch [binary], produce X Y, kill X Y, stamp X Y RLE, help, bye", in.readLine());
+			assertEquals(view, read(in, view.length()));
+			assertEquals(-1, in.read());
+		}
+	}
+
+	@Test
+	public void stampLongLine() throws IOException, InterruptedException {
+		GameBoard board = new GameBoard(2000, 8, false);
+		// a column of 2000 cells, far past the initial read buffer of a
+		// connection
+		StringBuilder stamp = new StringBuilder("stamp 3 0 ");
+		for (int i = 0; i < 2000; ++i) {
+			stamp.append("o$");
+		}
+		stamp.append("!\n");
+		try (NioGameServer server = start(board, 1);
+				Socket socket = new Socket("localhost", server.port())) {
+			BufferedReader in = new BufferedReader(
+					new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+			OutputStream out = socket.getOutputStream();
+			assertTrue(in.readLine().startsWith("Welcome"));
+
+			out.write(stamp.toString().getBytes(StandardCharsets.US_ASCII));
+			out.flush();
+			assertEquals("ok", in.readLine());
+
+			int length = GameBoard.viewLength(2000, 8);
+			String row = "   #    ";
+			String view = "";
+			for (int tries = 0; tries < 1000 && !view.startsWith(row + "\n" + row); ++tries) {
+				out.write("look\n".getBytes(StandardCharsets.US_ASCII));
+				out.flush();
+				view = read(in, length);
+				Thread.sleep(1);
+			}
+			assertEquals(2000, view.length() - view.replace("#", "").length());
+			out.write("help\n".getBytes(StandardCharsets.US_ASCII));
+			out.flush();
+			assertTrue(in.readLine().startsWith("commands:"));
+		}
+	}
+
+	@Test
+	public void manyClients() throws IOException {
+		GameBoard board = new GameBoard(64, 64, true, Topology.TORUS);
+		String view = board.look();
+		try (NioGameServer server = start(board, 2)) {
+			List<Socket> sockets = new ArrayList<>();
+			try {
+				for (int i = 0; i < 50; ++i) {
+					Socket socket = new Socket("localhost", server.port());
+					sockets.add(socket);
+					// each client asks for more than fits the socket buffers at
+					// once, so the server has to wait for it to read
+					StringBuilder requests = new StringBuilder();
+					for (int j = 0; j < 200; ++j) {
+						requests.append("look\n");
+					}
+					socket.getOutputStream().write(requests.toString().getBytes(StandardCharsets.US_ASCII));
+				}
+				for (Socket socket : sockets) {
+					BufferedReader in = new BufferedReader(
+							new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+					assertTrue(in.readLine().startsWith("Welcome"));
+					for (int j = 0; j < 200; ++j) {
+						assertEquals(view, read(in, view.length()));
+					}
+				}
+			} finally {
+				for (Socket socket : sockets) {
+					socket.close();
+				}
+			}
+		}
+	}
+
+	@Test
+	public void watchStreamsGenerations() throws IOException {
+		GameBoard board = new GameBoard(16, 16, true, Topology.TORUS);
+		Simulation simulation = new Simulation(board);
+		final NioGameServer server = new NioGameServer(0, simulation, 1);
+		new Thread(new Runnable() {
+			public void run() {
+				try {
+					server.serve();
+				} catch (IOException ioe) {
+					ioe.printStackTrace();
+				}
+			}
+		}).start();
+		try (Socket socket = new Socket("localhost", server.port())) {
+			BufferedReader in = new BufferedReader(
+					new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+			in.readLine();
+			socket.getOutputStream().write("watch\n".getBytes(StandardCharsets.US_ASCII));
+			assertEquals("generation 0", in.readLine());
+			read(in, GameBoard.viewLength(16, 16));
+
+			simulation.start(5);
+			long last = 0;
+			for (int i = 0; i < 5; ++i) {
+				String header = in.readLine();
+				assertTrue(header, header.startsWith("generation "));
+				long generation = Long.parseLong(header.substring("generation ".length()));
+				assertTrue(generation > last);
+				last = generation;
+				read(in, GameBoard.viewLength(16, 16));
+			}
+		} finally {
+			simulation.close();
+			server.close();
+		}
+	}
+
+}
@@ -0,0 +1,103 @@
+package gol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ruleTest {
+
+	@Test
+	public void parseRules() {
+		assertSame(Rule.CONWAY, Rule.parse("B3/S23"));
+		assertSame(Rule.CONWAY, Rule.parse("23/3"));
+		assertSame(Rule.CONWAY, Rule.parse("s23/b3"));
+		Rule highLife = Rule.parse("B36/S23");
+		assertEquals("B36/S23", highLife.toString());
+		assertEquals(highLife, Rule.parse(highLife.toString()));
+		assertEquals((1 << 3) | (1 << 6), highLife.birth());
+		assertEquals("B2/S", Rule.parse("B2/S").toString());
+
+		for (String rule : new String[] { "", "B3", "B3/S23/X", "B39/S23", "B3/T23", "B03/S23" }) {
+			try {
+				Rule.parse(rule);
+				fail("parsed \"" + rule + "\"");
+			} catch (IllegalArgumentException iae) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void kernelsMatchCellUpdate() {
+		// HighLife, Day & Night, Seeds, and a rule where a count of 8 matters
+		String[] rules = { "B36/S23", "B3678/S34678", "B2/S", "B38/S1238" };
+		Random random = new Random(20);
+		for (String name : rules) {
+			Rule rule = Rule.parse(name);
+			for (Topology topology : Topology.values()) {
+				for (Kernel kernel : Kernel.values()) {
+					GameBoard board = new GameBoard(100, 600, false, topology);
+					for (int i = 0; i < 100; ++i) {
+						for (int j = 0; j < 600; ++j) {
+							if (random.nextInt(3) == 0) {
+								board.produce(j, i);
+							}
+						}
+					}
+					board.setKernel(kernel);
+					board.setRule(rule);
+					String message = name + " " + topology + " " + kernel;
+					for (int generation = 0; generation < 10; ++generation) {
+						boolean[][] expected = new boolean[100][600];
+						for (int i = 0; i < 100; ++i) {
+							for (int j = 0; j < 600; ++j) {
+								expected[i][j] = board.cellUpdate(board.getCell(j, i));
+							}
+						}
+						board.updateBoard();
+						for (int i = 0; i < 100; ++i) {
+							for (int j = 0; j < 600; ++j) {
+								if (expected[i][j] != board.isAlive(j, i)) {
+									assertEquals(message + " (" + j + ", " + i + ")", expected[i][j],
+											board.isAlive(j, i));
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void filesKeepTheRule() throws IOException {
+		GameBoard board = new GameBoard(30, 40, true);
+		board.setRule(Rule.parse("B36/S23"));
+
+		ByteArrayOutputStream rle = new ByteArrayOutputStream();
+		BoardLoader.write(board, rle, BoardLoader.Format.RLE);
+		GameBoard loaded = BoardLoader.load(new ByteArrayInputStream(rle.toByteArray()));
+		assertEquals(board.rule(), loaded.rule());
+
+		File file = File.createTempFile("rule-", ".gols");
+		try {
+			SnapshotFile.write(board.snapshot(), file);
+			GameBoard restored = SnapshotFile.read(file);
+			assertEquals(board.rule(), restored.rule());
+			board.updateBoard();
+			restored.updateBoard();
+			assertEquals(board.look(), restored.look());
+		} finally {
+			file.delete();
+		}
+	}
+
+}
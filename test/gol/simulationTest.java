@@ -0,0 +1,153 @@
+package gol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+
+public class simulationTest {
+
+	/**
+	 * helper method to make an edit setting every cell of a board alive or
+	 * dead
+	 */
+	private static Consumer<GameBoard> fill(final boolean alive) {
+		return new Consumer<GameBoard>() {
+			public void accept(GameBoard board) {
+				for (int y = 0; y < board.numRows(); ++y) {
+					for (int x = 0; x < board.numColumns(); ++x) {
+						if (alive) {
+							board.produce(x, y);
+						} else {
+							board.kill(x, y);
+						}
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * helper method to check that a view shows every cell alive, or every
+	 * cell dead
+	 * 
+	 * @return the cell character of the view
+	 */
+	private static byte uniform(ByteBuffer view) {
+		byte cell = 0;
+		while (view.hasRemaining()) {
+			byte c = view.get();
+			if (c == '\n') {
+				continue;
+			}
+			if (cell == 0) {
+				cell = c;
+			} else if (c != cell) {
+				throw new AssertionError("torn view: '" + (char) cell + "' and '" + (char) c + "'");
+			}
+		}
+		return cell;
+	}
+
+	@Test
+	public void readersNeverSeeTornStates() throws Exception {
+		// a full torus dies in one step and an empty one stays empty, so every
+		// state published is uniform unless a reader sees half of a fill or a
+		// step
+		final int size = 96;
+		final Simulation simulation = new Simulation(new GameBoard(size, size, false, Topology.TORUS));
+		final AtomicBoolean done = new AtomicBoolean();
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		List<Thread> threads = new ArrayList<>();
+		threads.add(new Thread(new Runnable() {
+			public void run() {
+				for (boolean alive = true; !done.get(); alive = !alive) {
+					simulation.edit(fill(alive));
+					Thread.yield();
+				}
+			}
+		}));
+		final int[] alive = new int[1];
+		for (int r = 0; r < 4; ++r) {
+			threads.add(new Thread(new Runnable() {
+				public void run() {
+					try {
+						long generation = -1;
+						while (!done.get()) {
+							BoardSnapshot snapshot = simulation.snapshot();
+							assertTrue(snapshot.generation() >= generation);
+							generation = snapshot.generation();
+							boolean first = snapshot.isAlive(0, 0);
+							for (int y = 0; y < size; ++y) {
+								for (int x = 0; x < size; ++x) {
+									assertEquals(first, snapshot.isAlive(x, y));
+								}
+							}
+							if (uniform(simulation.view()) == '#') {
+								synchronized (alive) {
+									alive[0] += 1;
+								}
+							}
+						}
+					} catch (Throwable t) {
+						failure.compareAndSet(null, t);
+					}
+				}
+			}));
+		}
+		try {
+			simulation.start(1);
+			for (Thread thread : threads) {
+				thread.start();
+			}
+			Thread.sleep(1000);
+		} finally {
+			done.set(true);
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			simulation.close();
+		}
+		if (failure.get() != null) {
+			throw new AssertionError(failure.get());
+		}
+		assertTrue("the readers never saw an edit", alive[0] > 0);
+		assertTrue("the board never stepped", simulation.generation() > 0);
+	}
+
+	@Test
+	public void editsShowInNextState() throws Exception {
+		Simulation simulation = new Simulation(new GameBoard(8, 8, false, Topology.TORUS));
+		try {
+			// one edit, so the tick thread cannot publish part of it; separate
+			// edits may be split across two batches
+			simulation.edit(new Consumer<GameBoard>() {
+				public void accept(GameBoard board) {
+					board.produce(3, 4);
+					board.produce(5, 1);
+					board.kill(5, 1);
+				}
+			});
+			long deadline = System.currentTimeMillis() + 10000;
+			while (!simulation.snapshot().isAlive(3, 4)) {
+				if (System.currentTimeMillis() > deadline) {
+					fail("edit never showed");
+				}
+				Thread.sleep(1);
+			}
+			assertEquals(0, simulation.generation());
+			assertTrue(!simulation.snapshot().isAlive(5, 1));
+		} finally {
+			simulation.close();
+		}
+	}
+
+}
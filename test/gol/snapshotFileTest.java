@@ -0,0 +1,83 @@
+package gol;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class snapshotFileTest {
+
+	/**
+	 * helper method to make a temporary file deleted when the tests end
+	 */
+	private static File tempFile() throws IOException {
+		File file = File.createTempFile("snapshot-", ".gols");
+		file.deleteOnExit();
+		return file;
+	}
+
+	@Test
+	public void restoreStepsOn() throws IOException {
+		for (Topology topology : Topology.values()) {
+			for (int columns : new int[] { 1, 64, 100 }) {
+				GameBoard board = new GameBoard(70, columns, true, topology);
+				for (int i = 0; i < 5; ++i) {
+					board.updateBoard();
+				}
+				File file = tempFile();
+				SnapshotFile.write(board.snapshot(), file);
+				GameBoard restored = SnapshotFile.read(file);
+				assertEquals(topology, restored.topology());
+				assertEquals(5, restored.generation());
+				assertEquals(board.look(), restored.look());
+
+				for (int i = 0; i < 10; ++i) {
+					board.updateBoard();
+					restored.updateBoard();
+				}
+				assertEquals(board.look(), restored.look());
+				assertEquals(15, restored.generation());
+			}
+		}
+	}
+
+	@Test
+	public void writeWhileStepping() throws Exception {
+		GameBoard board = new GameBoard(300, 300, true, Topology.TORUS);
+		BoardSnapshot snapshot = board.snapshot();
+		String view = board.look();
+		File file = tempFile();
+
+		ExecutorService writer = Executors.newSingleThreadExecutor();
+		try {
+			Future<Void> written = SnapshotFile.writeAsync(snapshot, file, writer);
+			for (int i = 0; i < 20; ++i) {
+				board.updateBoard();
+			}
+			written.get();
+		} finally {
+			writer.shutdown();
+		}
+		GameBoard restored = SnapshotFile.read(file);
+		assertEquals(0, restored.generation());
+		assertEquals(view, restored.look());
+		assertEquals(view, snapshot.toGameBoard().look());
+	}
+
+	@Test(expected = IOException.class)
+	public void notASnapshot() throws IOException {
+		File file = tempFile();
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write("3 3\n0 1 0\n0 1 0\n0 1 0\n".getBytes("US-ASCII"));
+			out.write(new byte[40]);
+		}
+		SnapshotFile.read(file);
+	}
+
+}
@@ -0,0 +1,76 @@
+package gol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class sparseLifeTest {
+
+	@Test
+	public void matchesGameBoard() {
+		GameBoard board = new GameBoard(150, 150, false);
+		Random random = new Random(7);
+		for (int i = 55; i < 95; ++i) {
+			for (int j = 55; j < 95; ++j) {
+				if (random.nextInt(3) == 0) {
+					board.produce(j, i);
+				}
+			}
+		}
+		SparseLife life = new SparseLife(board);
+
+		// the soup cannot reach the edges in 50 generations
+		for (int generation = 0; generation < 50; ++generation) {
+			board.updateBoard();
+			life.updateBoard();
+			assertEquals(board.look(), life.look(0, 0, 150, 150));
+		}
+		assertEquals(50, life.generation());
+	}
+
+	@Test
+	public void gliderFarFromOrigin() {
+		SparseLife life = new SparseLife();
+		int x = 2000000000;
+		int y = -2000000000;
+		life.produce(x + 1, y);
+		life.produce(x + 2, y + 1);
+		life.produce(x, y + 2);
+		life.produce(x + 1, y + 2);
+		life.produce(x + 2, y + 2);
+		String glider = life.look();
+
+		for (int generation = 0; generation < 400; ++generation) {
+			life.updateBoard();
+		}
+		assertEquals(5, life.population());
+		int[] box = life.boundingBox();
+		assertEquals(x + 100, box[0]);
+		assertEquals(y + 100, box[1]);
+		assertEquals(glider, life.look());
+	}
+
+	@Test
+	public void produceAndKill() {
+		SparseLife life = new SparseLife();
+		for (int i = 0; i < 1000; ++i) {
+			life.produce(i * 7, -i);
+		}
+		for (int i = 0; i < 1000; i += 2) {
+			life.kill(i * 7, -i);
+		}
+		assertEquals(500, life.population());
+		for (int i = 0; i < 1000; ++i) {
+			assertEquals(i % 2 == 1, life.isAlive(i * 7, -i));
+		}
+		for (int i = 1; i < 1000; i += 2) {
+			life.kill(i * 7, -i);
+		}
+		assertNull(life.boundingBox());
+		assertEquals("", life.look());
+	}
+
+}
@@ -0,0 +1,97 @@
+package gol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.LongBuffer;
+
+import org.junit.Test;
+
+public class watchClientTest {
+
+	/**
+	 * helper method to copy a board's cells, topology and generation
+	 */
+	private static GameBoard copy(GameBoard board) {
+		GameBoard copy = new GameBoard(board.numRows(), board.numColumns(), false, board.topology());
+		long[] words = new long[board.numRows() * board.wordsPerRow()];
+		board.getWords(words);
+		copy.putWords(0, LongBuffer.wrap(words));
+		copy.setGeneration(board.generation());
+		return copy;
+	}
+
+	/**
+	 * helper method to serve a simulation in the given mode on a free port
+	 */
+	private static int serve(Simulation simulation, GameServer.Mode mode, Closeable[] server) throws IOException {
+		final int port;
+		final Runnable serve;
+		if (mode == GameServer.Mode.NIO) {
+			final NioGameServer nio = new NioGameServer(0, simulation, 1);
+			server[0] = nio;
+			port = nio.port();
+			serve = new Runnable() {
+				public void run() {
+					try {
+						nio.serve();
+					} catch (IOException ioe) {
+						ioe.printStackTrace();
+					}
+				}
+			};
+		} else {
+			final GameServer threads = new GameServer(0, simulation, mode, 10);
+			server[0] = threads;
+			port = threads.port();
+			serve = new Runnable() {
+				public void run() {
+					try {
+						threads.serve();
+					} catch (IOException ioe) {
+						ioe.printStackTrace();
+					}
+				}
+			};
+		}
+		Thread thread = new Thread(serve);
+		thread.setDaemon(true);
+		thread.start();
+		return port;
+	}
+
+	@Test
+	public void rebuildsEveryGeneration() throws IOException {
+		for (GameServer.Mode mode : new GameServer.Mode[] { GameServer.Mode.THREADS, GameServer.Mode.NIO }) {
+			GameBoard board = new GameBoard(100, 130, true, Topology.TORUS);
+			GameBoard replica = copy(board);
+			Simulation simulation = new Simulation(board);
+			Closeable[] server = new Closeable[1];
+			int port = serve(simulation, mode, server);
+			try (WatchClient client = new WatchClient("localhost", port)) {
+				assertTrue(client.next());
+				assertTrue(client.keyframe());
+				assertEquals(0, client.generation());
+				assertEquals(replica.look(), client.board().look());
+
+				simulation.start(5);
+				int deltas = 0;
+				for (int i = 0; i < 100; ++i) {
+					assertTrue(client.next());
+					deltas += client.keyframe() ? 0 : 1;
+					while (replica.generation() < client.generation()) {
+						replica.updateBoard();
+					}
+					assertEquals(mode + " generation " + client.generation(), replica.look(), client.board().look());
+				}
+				assertTrue(mode + ": no deltas", deltas > 0);
+			} finally {
+				simulation.close();
+				server[0].close();
+			}
+		}
+	}
+
+}
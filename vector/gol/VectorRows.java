@@ -0,0 +1,118 @@
+package gol;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * the RowStepper of the VECTOR kernel, stepping as many words at once as
+ * the host's widest vectors hold with the Vector API. It is compiled for
+ * Java 17 against the jdk.incubator.vector module, and Kernel loads it only
+ * when the JVM runs with --add-modules jdk.incubator.vector.
+ */
+final class VectorRows implements RowStepper {
+
+	private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+	@Override
+	public int step(long[] masks, long[] aboveSrc, int above, long[] src, int here, long[] belowSrc, int below,
+			long[] dst, long[] diff, int from, int to) {
+		int length = SPECIES.length();
+		int w = from;
+		for (; w + length <= to; w += length) {
+			LongVector aboveCur = LongVector.fromArray(SPECIES, aboveSrc, above + w);
+			LongVector hereCur = LongVector.fromArray(SPECIES, src, here + w);
+			LongVector belowCur = LongVector.fromArray(SPECIES, belowSrc, below + w);
+			LongVector aW = west(aboveCur, aboveSrc, above + w);
+			LongVector aE = east(aboveCur, aboveSrc, above + w);
+			LongVector west = west(hereCur, src, here + w);
+			LongVector east = east(hereCur, src, here + w);
+			LongVector bW = west(belowCur, belowSrc, below + w);
+			LongVector bE = east(belowCur, belowSrc, below + w);
+
+			// the same full adders as GameBoard.stepWord, a lane per word
+			LongVector aboveXor = aW.lanewise(VectorOperators.XOR, aboveCur);
+			LongVector aboveOnes = aboveXor.lanewise(VectorOperators.XOR, aE);
+			LongVector aboveTwos = aW.and(aboveCur).or(aE.and(aboveXor));
+			LongVector belowXor = bW.lanewise(VectorOperators.XOR, belowCur);
+			LongVector belowOnes = belowXor.lanewise(VectorOperators.XOR, bE);
+			LongVector belowTwos = bW.and(belowCur).or(bE.and(belowXor));
+			LongVector sideOnes = west.lanewise(VectorOperators.XOR, east);
+			LongVector sideTwos = west.and(east);
+
+			LongVector onesXor = aboveOnes.lanewise(VectorOperators.XOR, belowOnes);
+			LongVector ones = onesXor.lanewise(VectorOperators.XOR, sideOnes);
+			LongVector onesCarry = aboveOnes.and(belowOnes).or(sideOnes.and(onesXor));
+			LongVector twosXor = aboveTwos.lanewise(VectorOperators.XOR, belowTwos);
+			LongVector twosSum = twosXor.lanewise(VectorOperators.XOR, sideTwos);
+			LongVector twosCarry = aboveTwos.and(belowTwos).or(sideTwos.and(twosXor));
+
+			LongVector next;
+			if (masks == null) {
+				LongVector exactlyOneTwo = twosSum.lanewise(VectorOperators.XOR, onesCarry)
+						.lanewise(VectorOperators.AND_NOT, twosCarry);
+				next = exactlyOneTwo.and(ones.or(hereCur));
+			} else {
+				LongVector twos = twosSum.lanewise(VectorOperators.XOR, onesCarry);
+				LongVector foursCarry = twosSum.and(onesCarry);
+				LongVector fours = twosCarry.lanewise(VectorOperators.XOR, foursCarry);
+				LongVector eights = twosCarry.and(foursCarry);
+				next = next(masks, hereCur, ones, twos, fours, eights);
+			}
+
+			LongVector old = LongVector.fromArray(SPECIES, dst, here + w);
+			LongVector.fromArray(SPECIES, diff, w).or(next.lanewise(VectorOperators.XOR, old)).intoArray(diff, w);
+			next.intoArray(dst, here + w);
+		}
+		return w;
+	}
+
+	/**
+	 * helper method to get the west neighbours of the cells of the words
+	 * starting at index, lined up bit for bit with them
+	 */
+	private static LongVector west(LongVector cur, long[] src, int index) {
+		LongVector prev = LongVector.fromArray(SPECIES, src, index - 1);
+		return cur.lanewise(VectorOperators.LSHL, 1).or(prev.lanewise(VectorOperators.LSHR, 63));
+	}
+
+	/**
+	 * helper method to get the east neighbours of the cells of the words
+	 * starting at index, lined up bit for bit with them
+	 */
+	private static LongVector east(LongVector cur, long[] src, int index) {
+		LongVector next = LongVector.fromArray(SPECIES, src, index + 1);
+		return cur.lanewise(VectorOperators.LSHR, 1).or(next.lanewise(VectorOperators.LSHL, 63));
+	}
+
+	/**
+	 * helper method to compute the next states of the cells of the words, as
+	 * Rule.next does, from the rule's masks
+	 */
+	private static LongVector next(long[] m, LongVector alive, LongVector ones, LongVector twos, LongVector fours,
+			LongVector eights) {
+		LongVector dead = select(fours,
+				select(twos, select(ones, m[7], m[6]), select(ones, m[5], m[4])),
+				select(twos, select(ones, m[3], m[2]), select(ones, m[1], m[0])));
+		LongVector live = select(fours,
+				select(twos, select(ones, m[16], m[15]), select(ones, m[14], m[13])),
+				select(twos, select(ones, m[12], m[11]), select(ones, m[10], m[9])));
+		return select(eights, select(alive, m[17], m[8]), select(alive, live, dead));
+	}
+
+	/**
+	 * helper method to take the bits of ifSet where which is set, and of
+	 * ifClear elsewhere
+	 */
+	private static LongVector select(LongVector which, LongVector ifSet, LongVector ifClear) {
+		return which.and(ifSet).or(ifClear.lanewise(VectorOperators.AND_NOT, which));
+	}
+
+	/**
+	 * helper method to select between two masks, each the same in every lane
+	 */
+	private static LongVector select(LongVector which, long ifSet, long ifClear) {
+		return which.and(ifSet).or(which.not().and(ifClear));
+	}
+
+}